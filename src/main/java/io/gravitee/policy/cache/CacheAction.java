@@ -18,4 +18,5 @@ package io.gravitee.policy.cache;
 public enum CacheAction {
     REFRESH,
     BY_PASS,
+    PURGE,
 }
@@ -25,10 +25,18 @@ public class CacheControl {
     private boolean noStore;
     private boolean noTransform;
     private boolean mustRevalidate;
+    private boolean proxyRevalidate;
+    private boolean mustUnderstand;
+    private boolean onlyIfCached;
+    private boolean immutable;
     private boolean isPrivate;
     private boolean isPublic;
     private long maxAge = -1;
     private long sMaxAge = -1;
+    private long maxStale = -1;
+    private long minFresh = -1;
+    private long staleWhileRevalidate = -1;
+    private long staleIfError = -1;
 
     public boolean isPrivate() {
         return isPrivate;
@@ -93,4 +101,78 @@ public class CacheControl {
     public void setSMaxAge(long sMaxAge) {
         this.sMaxAge = sMaxAge;
     }
+
+    public long getStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    public void setStaleWhileRevalidate(long staleWhileRevalidate) {
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    public long getStaleIfError() {
+        return staleIfError;
+    }
+
+    public void setStaleIfError(long staleIfError) {
+        this.staleIfError = staleIfError;
+    }
+
+    public boolean isProxyRevalidate() {
+        return proxyRevalidate;
+    }
+
+    public void setProxyRevalidate(boolean proxyRevalidate) {
+        this.proxyRevalidate = proxyRevalidate;
+    }
+
+    public boolean isMustUnderstand() {
+        return mustUnderstand;
+    }
+
+    public void setMustUnderstand(boolean mustUnderstand) {
+        this.mustUnderstand = mustUnderstand;
+    }
+
+    public boolean isOnlyIfCached() {
+        return onlyIfCached;
+    }
+
+    public void setOnlyIfCached(boolean onlyIfCached) {
+        this.onlyIfCached = onlyIfCached;
+    }
+
+    public boolean isImmutable() {
+        return immutable;
+    }
+
+    public void setImmutable(boolean immutable) {
+        this.immutable = immutable;
+    }
+
+    /**
+     * @return the max-stale request directive, {@link Long#MAX_VALUE} when it has no value, -1 when absent.
+     */
+    public long getMaxStale() {
+        return maxStale;
+    }
+
+    public void setMaxStale(long maxStale) {
+        this.maxStale = maxStale;
+    }
+
+    public long getMinFresh() {
+        return minFresh;
+    }
+
+    public void setMinFresh(long minFresh) {
+        this.minFresh = minFresh;
+    }
+
+    /**
+     * @return {@code false} if a shared cache must not store the response ({@code no-store} or {@code private}).
+     */
+    public boolean isStorable() {
+        return !noStore && !isPrivate;
+    }
 }
@@ -17,6 +17,7 @@ package io.gravitee.policy.cache;
 
 import io.gravitee.common.http.HttpStatusCode;
 import io.gravitee.gateway.reactive.api.ExecutionFailure;
+import io.gravitee.gateway.reactive.api.context.ContextAttributes;
 import io.gravitee.gateway.reactive.api.context.HttpExecutionContext;
 import io.gravitee.gateway.reactive.api.context.HttpRequest;
 import io.gravitee.gateway.reactive.api.context.InternalContextAttributes;
@@ -25,11 +26,16 @@ import io.gravitee.gateway.reactive.api.invoker.Invoker;
 import io.gravitee.gateway.reactive.api.policy.Policy;
 import io.gravitee.policy.cache.configuration.CachePolicyConfiguration;
 import io.gravitee.policy.cache.invoker.CacheInvoker;
+import io.gravitee.policy.cache.near.NearCache;
+import io.gravitee.policy.cache.tag.TagIndex;
+import io.gravitee.policy.cache.tag.TagInvalidator;
 import io.gravitee.policy.v3.cache.CachePolicyV3;
 import io.gravitee.resource.api.ResourceManager;
 import io.gravitee.resource.cache.api.Cache;
 import io.gravitee.resource.cache.api.CacheResource;
 import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Single;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -37,8 +43,12 @@ public class CachePolicy extends CachePolicyV3 implements Policy {
 
     public static final String PLUGIN_ID = "cache";
 
+    // Shared by the policy instances of the same configuration, resolved once rather than on each request
+    private final NearCache nearCache;
+
     public CachePolicy(CachePolicyConfiguration cachePolicyConfiguration) {
         super(cachePolicyConfiguration);
+        this.nearCache = cachePolicyConfiguration.isNearCacheEnabled() ? NearCache.of(cachePolicyConfiguration) : null;
     }
 
     @Override
@@ -54,10 +64,14 @@ public class CachePolicy extends CachePolicyV3 implements Policy {
             log.debug("REFRESH action is disabled by policy configuration, ignoring for request {}", ctx.request().id());
             action = null;
         }
+        if (action == CacheAction.PURGE && !cachePolicyConfiguration.isAllowPurgeAction()) {
+            log.debug("PURGE action is disabled by policy configuration, ignoring for request {}", ctx.request().id());
+            action = null;
+        }
 
         if (action != CacheAction.BY_PASS) {
-            if (isCachedMethod(ctx.request().method())) {
-                String cacheName = cachePolicyConfiguration.getCacheName();
+            if (action == CacheAction.PURGE || isCachedMethod(ctx.request().method())) {
+                String cacheName = plan().cacheName();
                 CacheResource<?> cacheResource = ctx.getComponent(ResourceManager.class).getResource(cacheName, CacheResource.class);
 
                 if (cacheResource == null) {
@@ -77,11 +91,16 @@ public class CachePolicy extends CachePolicyV3 implements Policy {
                     );
                 }
 
+                plan().resolveKeySeparator(cacheResource);
+                if (action == CacheAction.PURGE) {
+                    return purge(ctx, cache, plan().keySeparator(() -> cacheResource));
+                }
+
                 // Override the invoker
                 Invoker defaultInvoker = ctx.getInternalAttribute(InternalContextAttributes.ATTR_INTERNAL_INVOKER);
                 ctx.setInternalAttribute(
                     InternalContextAttributes.ATTR_INTERNAL_INVOKER,
-                    new CacheInvoker(defaultInvoker, cache, action, cachePolicyConfiguration)
+                    new CacheInvoker(defaultInvoker, cache, action, cachePolicyConfiguration, plan(), nearCache, errorKeyBudget)
                 );
             } else {
                 log.debug("Request {} is not a cached request, disable caching for it.", ctx.request().id());
@@ -91,6 +110,35 @@ public class CachePolicy extends CachePolicyV3 implements Policy {
         return Completable.complete();
     }
 
+    /**
+     * Evicts the elements of the tags listed by the request. The request then reaches the backend without the cache.
+     */
+    private Completable purge(HttpExecutionContext ctx, Cache cache, String keySeparator) {
+        List<String> tags = TagIndex.parseTags(ctx.request().headers().getAll(X_GRAVITEE_CACHE_TAGS));
+        // Do not propagate specific header
+        ctx.request().headers().remove(X_GRAVITEE_CACHE_TAGS);
+        if (tags.isEmpty()) {
+            log.debug("PURGE action without tags, nothing to evict for request {}", ctx.request().id());
+            return Completable.complete();
+        }
+
+        String prefix = ctx.getAttribute(ContextAttributes.ATTR_API) + keySeparator;
+        List<String> tagKeys = tags.stream().map(tag -> TagIndex.key(prefix, tag)).toList();
+        return Single.fromCompletionStage(
+            TagInvalidator.purge(cache, tagKeys, key -> {
+                if (nearCache != null) {
+                    nearCache.invalidate(key);
+                }
+            })
+        )
+            .doOnSuccess(count -> log.info("{} elements evicted from the cache {} for tags {}", count, cache.getName(), tags))
+            .ignoreElement()
+            .onErrorResumeNext(err -> {
+                log.warn("Cannot evict the elements of tags {} from the cache {}", tags, cache.getName(), err);
+                return Completable.complete();
+            });
+    }
+
     @Override
     public Completable onResponse(HttpExecutionContext ctx) {
         return Completable.error(new UnsupportedOperationException("onResponse method is not supported by cache policy"));
@@ -17,5 +17,24 @@ package io.gravitee.policy.cache;
 
 import io.gravitee.common.http.HttpHeaders;
 import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.policy.cache.frame.FrameMetadata;
 
-public record CachedResponse(int status, HttpHeaders headers, Buffer body) {}
+public record CachedResponse(int status, HttpHeaders headers, Buffer body, FrameMetadata metadata) {
+
+    public CachedResponse(int status, HttpHeaders headers, Buffer body) {
+        this(status, headers, body, null);
+    }
+
+    /**
+     * @return the response to a {@code HEAD} request: the status and headers of this response, with the
+     * {@code Content-Length} of its body, but no body.
+     */
+    public CachedResponse withoutBody() {
+        if (body != null) {
+            headers.remove(HttpHeaderNames.CONTENT_LENGTH);
+            headers.add(HttpHeaderNames.CONTENT_LENGTH, Integer.toString(body.length()));
+        }
+        return new CachedResponse(status, headers, null, metadata);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.coalescing;
+
+import io.vertx.core.Context;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the backend calls currently in flight for a cache key, so that concurrent misses on the same key
+ * are served by a single backend call (single-flight).
+ * <p>
+ * The first caller for a key becomes the leader and is expected to {@link Flight#complete(byte[])} its flight with the
+ * cache frame it produced, or with {@code null} when the response is not cacheable. Every other caller joining while the
+ * flight is open is a follower and waits for the leader's frame. A flight is always released after the given timeout,
+ * even if the leader never completes it, so a lost leader can not block a key forever.
+ */
+public final class RequestCoalescer {
+
+    private static final ConcurrentMap<String, CompletableFuture<byte[]>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private RequestCoalescer() {}
+
+    public static Flight join(String key, long timeoutMillis) {
+        CompletableFuture<byte[]> created = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = IN_FLIGHT.putIfAbsent(key, created);
+        if (existing != null) {
+            return new Flight(existing, false);
+        }
+
+        created.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((frame, err) -> IN_FLIGHT.remove(key, created));
+        return new Flight(created, true);
+    }
+
+    public static final class Flight {
+
+        private final CompletableFuture<byte[]> frame;
+        private final boolean leader;
+
+        private Flight(CompletableFuture<byte[]> frame, boolean leader) {
+            this.frame = frame;
+            this.leader = leader;
+        }
+
+        public boolean isLeader() {
+            return leader;
+        }
+
+        /**
+         * The frame produced by the leader. Completes with {@code null} if the leader's response was not cacheable, and
+         * exceptionally if the leader failed or did not complete in time.
+         */
+        public CompletionStage<byte[]> frame() {
+            return frame.minimalCompletionStage();
+        }
+
+        /**
+         * Same as {@link #frame()}, but completes on the given Vert.x context, if any, rather than on the thread that
+         * completed the flight: the leader's event loop, or the timer thread when the flight times out. Followers must
+         * not write their response from outside their own context.
+         */
+        public CompletionStage<byte[]> frame(Context context) {
+            if (context == null) {
+                return frame();
+            }
+            CompletableFuture<byte[]> resumed = new CompletableFuture<>();
+            frame.whenComplete((value, err) ->
+                context.runOnContext(ignored -> {
+                    if (err != null) {
+                        resumed.completeExceptionally(err);
+                    } else {
+                        resumed.complete(value);
+                    }
+                })
+            );
+            return resumed.minimalCompletionStage();
+        }
+
+        public void complete(byte[] value) {
+            if (leader) {
+                frame.complete(value);
+            }
+        }
+
+        public void fail(Throwable throwable) {
+            if (leader) {
+                frame.completeExceptionally(throwable);
+            }
+        }
+    }
+}
@@ -18,6 +18,7 @@ package io.gravitee.policy.cache.configuration;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.gravitee.common.http.HttpMethod;
 import io.gravitee.policy.api.PolicyConfiguration;
+import io.gravitee.policy.cache.frame.BodyEncoding;
 import java.util.List;
 
 /**
@@ -41,10 +42,71 @@ public class CachePolicyConfiguration implements PolicyConfiguration {
     // Default to 10 minutes
     private long timeToLiveSeconds = 600;
 
+    private long staleWhileRevalidateSeconds = 0;
+
+    private long staleIfErrorSeconds = 0;
+
     private boolean useResponseCacheHeaders = false;
 
     private boolean allowRefreshAction = true;
 
+    private boolean coalesceRequests = false;
+
+    // Default to 5 seconds
+    private long coalesceTimeoutMillis = 5000;
+
+    private boolean nearCacheEnabled = false;
+
+    // Default to 16 MB
+    private long nearCacheMaxSizeBytes = 16 * 1024 * 1024;
+
+    // Default to 5 seconds
+    private long nearCacheTimeToLiveSeconds = 5;
+
+    // 0 means no limit
+    private long maxBodySizeBytes = 0;
+
+    private boolean streamResponseBody = false;
+
+    private BodyEncoding compression = BodyEncoding.NONE;
+
+    private int compressionLevel = 6;
+
+    // Default to 1 KB
+    private long compressionMinSizeBytes = 1024;
+
+    private List<String> keyIncludeParams;
+
+    private List<String> keyExcludeParams;
+
+    private List<String> keyHeaders;
+
+    private boolean keyIgnorePathCase = false;
+
+    private boolean keyIgnoreTrailingSlash = false;
+
+    private boolean keyNormalizePercentEncoding = false;
+
+    private List<CacheableStatus> cacheableStatuses;
+
+    // 0 means 4xx responses are not cached as errors
+    private long clientErrorTimeToLiveSeconds = 0;
+
+    // 0 means 5xx responses are not cached as errors
+    private long serverErrorTimeToLiveSeconds = 0;
+
+    private List<Integer> errorStatuses;
+
+    private int maxErrorKeys = 1000;
+
+    private boolean fillOnHeadMiss = false;
+
+    private int maxVariants = 8;
+
+    private String tagHeader;
+
+    private boolean allowPurgeAction = false;
+
     public String getCacheName() {
         return cacheName;
     }
@@ -77,6 +139,22 @@ public class CachePolicyConfiguration implements PolicyConfiguration {
         this.timeToLiveSeconds = timeToLiveSeconds;
     }
 
+    public long getStaleWhileRevalidateSeconds() {
+        return staleWhileRevalidateSeconds;
+    }
+
+    public void setStaleWhileRevalidateSeconds(long staleWhileRevalidateSeconds) {
+        this.staleWhileRevalidateSeconds = staleWhileRevalidateSeconds;
+    }
+
+    public long getStaleIfErrorSeconds() {
+        return staleIfErrorSeconds;
+    }
+
+    public void setStaleIfErrorSeconds(long staleIfErrorSeconds) {
+        this.staleIfErrorSeconds = staleIfErrorSeconds;
+    }
+
     public boolean isUseResponseCacheHeaders() {
         return useResponseCacheHeaders;
     }
@@ -108,4 +186,204 @@ public class CachePolicyConfiguration implements PolicyConfiguration {
     public void setAllowRefreshAction(boolean allowRefreshAction) {
         this.allowRefreshAction = allowRefreshAction;
     }
+
+    public boolean isCoalesceRequests() {
+        return coalesceRequests;
+    }
+
+    public void setCoalesceRequests(boolean coalesceRequests) {
+        this.coalesceRequests = coalesceRequests;
+    }
+
+    public long getCoalesceTimeoutMillis() {
+        return coalesceTimeoutMillis;
+    }
+
+    public void setCoalesceTimeoutMillis(long coalesceTimeoutMillis) {
+        this.coalesceTimeoutMillis = coalesceTimeoutMillis;
+    }
+
+    public boolean isNearCacheEnabled() {
+        return nearCacheEnabled;
+    }
+
+    public void setNearCacheEnabled(boolean nearCacheEnabled) {
+        this.nearCacheEnabled = nearCacheEnabled;
+    }
+
+    public long getNearCacheMaxSizeBytes() {
+        return nearCacheMaxSizeBytes;
+    }
+
+    public void setNearCacheMaxSizeBytes(long nearCacheMaxSizeBytes) {
+        this.nearCacheMaxSizeBytes = nearCacheMaxSizeBytes;
+    }
+
+    public long getNearCacheTimeToLiveSeconds() {
+        return nearCacheTimeToLiveSeconds;
+    }
+
+    public void setNearCacheTimeToLiveSeconds(long nearCacheTimeToLiveSeconds) {
+        this.nearCacheTimeToLiveSeconds = nearCacheTimeToLiveSeconds;
+    }
+
+    public long getMaxBodySizeBytes() {
+        return maxBodySizeBytes;
+    }
+
+    public void setMaxBodySizeBytes(long maxBodySizeBytes) {
+        this.maxBodySizeBytes = maxBodySizeBytes;
+    }
+
+    public boolean isStreamResponseBody() {
+        return streamResponseBody;
+    }
+
+    public void setStreamResponseBody(boolean streamResponseBody) {
+        this.streamResponseBody = streamResponseBody;
+    }
+
+    public BodyEncoding getCompression() {
+        return compression;
+    }
+
+    public void setCompression(BodyEncoding compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public long getCompressionMinSizeBytes() {
+        return compressionMinSizeBytes;
+    }
+
+    public void setCompressionMinSizeBytes(long compressionMinSizeBytes) {
+        this.compressionMinSizeBytes = compressionMinSizeBytes;
+    }
+
+    public List<String> getKeyIncludeParams() {
+        return keyIncludeParams;
+    }
+
+    public void setKeyIncludeParams(List<String> keyIncludeParams) {
+        this.keyIncludeParams = keyIncludeParams;
+    }
+
+    public List<String> getKeyExcludeParams() {
+        return keyExcludeParams;
+    }
+
+    public void setKeyExcludeParams(List<String> keyExcludeParams) {
+        this.keyExcludeParams = keyExcludeParams;
+    }
+
+    public List<String> getKeyHeaders() {
+        return keyHeaders;
+    }
+
+    public void setKeyHeaders(List<String> keyHeaders) {
+        this.keyHeaders = keyHeaders;
+    }
+
+    public boolean isKeyIgnorePathCase() {
+        return keyIgnorePathCase;
+    }
+
+    public void setKeyIgnorePathCase(boolean keyIgnorePathCase) {
+        this.keyIgnorePathCase = keyIgnorePathCase;
+    }
+
+    public boolean isKeyIgnoreTrailingSlash() {
+        return keyIgnoreTrailingSlash;
+    }
+
+    public void setKeyIgnoreTrailingSlash(boolean keyIgnoreTrailingSlash) {
+        this.keyIgnoreTrailingSlash = keyIgnoreTrailingSlash;
+    }
+
+    public boolean isKeyNormalizePercentEncoding() {
+        return keyNormalizePercentEncoding;
+    }
+
+    public void setKeyNormalizePercentEncoding(boolean keyNormalizePercentEncoding) {
+        this.keyNormalizePercentEncoding = keyNormalizePercentEncoding;
+    }
+
+    public List<CacheableStatus> getCacheableStatuses() {
+        return cacheableStatuses;
+    }
+
+    public void setCacheableStatuses(List<CacheableStatus> cacheableStatuses) {
+        this.cacheableStatuses = cacheableStatuses;
+    }
+
+    public long getClientErrorTimeToLiveSeconds() {
+        return clientErrorTimeToLiveSeconds;
+    }
+
+    public void setClientErrorTimeToLiveSeconds(long clientErrorTimeToLiveSeconds) {
+        this.clientErrorTimeToLiveSeconds = clientErrorTimeToLiveSeconds;
+    }
+
+    public long getServerErrorTimeToLiveSeconds() {
+        return serverErrorTimeToLiveSeconds;
+    }
+
+    public void setServerErrorTimeToLiveSeconds(long serverErrorTimeToLiveSeconds) {
+        this.serverErrorTimeToLiveSeconds = serverErrorTimeToLiveSeconds;
+    }
+
+    public List<Integer> getErrorStatuses() {
+        return errorStatuses;
+    }
+
+    public void setErrorStatuses(List<Integer> errorStatuses) {
+        this.errorStatuses = errorStatuses;
+    }
+
+    public int getMaxErrorKeys() {
+        return maxErrorKeys;
+    }
+
+    public void setMaxErrorKeys(int maxErrorKeys) {
+        this.maxErrorKeys = maxErrorKeys;
+    }
+
+    public boolean isFillOnHeadMiss() {
+        return fillOnHeadMiss;
+    }
+
+    public void setFillOnHeadMiss(boolean fillOnHeadMiss) {
+        this.fillOnHeadMiss = fillOnHeadMiss;
+    }
+
+    public int getMaxVariants() {
+        return maxVariants;
+    }
+
+    public void setMaxVariants(int maxVariants) {
+        this.maxVariants = maxVariants;
+    }
+
+    public String getTagHeader() {
+        return tagHeader;
+    }
+
+    public void setTagHeader(String tagHeader) {
+        this.tagHeader = tagHeader;
+    }
+
+    public boolean isAllowPurgeAction() {
+        return allowPurgeAction;
+    }
+
+    public void setAllowPurgeAction(boolean allowPurgeAction) {
+        this.allowPurgeAction = allowPurgeAction;
+    }
 }
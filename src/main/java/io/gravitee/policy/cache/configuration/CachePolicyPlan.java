@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.configuration;
+
+import io.gravitee.common.http.HttpMethod;
+import io.gravitee.policy.cache.key.CacheKeyRules;
+import io.gravitee.policy.cache.key.KeyTemplate;
+import io.gravitee.resource.cache.api.CacheResource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The parts of a {@link CachePolicyConfiguration} that never change between requests, compiled once per policy instance
+ * so that the request path only runs the dynamic parts: the cached methods as a bitmask, the cacheable statuses and the
+ * error statuses as tables indexed by status, the custom key split into literal and Expression Language segments, the key rules, and the
+ * key separator of the cache resource once known.
+ */
+public final class CachePolicyPlan {
+
+    private static final long DEFAULT_METHODS = bit(HttpMethod.GET) | bit(HttpMethod.OPTIONS) | bit(HttpMethod.HEAD);
+
+    private static final int MIN_STATUS = 100;
+    private static final int MAX_STATUS = 599;
+    private static final long NOT_CACHEABLE = -1;
+
+    private final String cacheName;
+    private final CacheScope scope;
+    private final long methods;
+    // Time to live of each cacheable status (0 for the policy one), NOT_CACHEABLE for the others; null if not configured
+    private final long[] statusTimeToLives;
+    // Time to live of each error status cached as an error, 0 for the others; null if error caching is disabled
+    private final long[] errorTimeToLives;
+    private final KeyTemplate key;
+    private final String responseCondition;
+    private final CacheKeyRules keyRules;
+    private volatile String keySeparator;
+
+    public CachePolicyPlan(CachePolicyConfiguration configuration) {
+        this.cacheName = configuration.getCacheName();
+        this.scope = configuration.getScope();
+        this.methods = methods(configuration.getMethods());
+        this.statusTimeToLives = statusTimeToLives(configuration.getCacheableStatuses());
+        this.errorTimeToLives = errorTimeToLives(
+            configuration.getClientErrorTimeToLiveSeconds(),
+            configuration.getServerErrorTimeToLiveSeconds(),
+            configuration.getErrorStatuses()
+        );
+        this.key = KeyTemplate.parse(configuration.getKey());
+        this.responseCondition = configuration.getResponseCondition();
+        this.keyRules = CacheKeyRules.from(configuration);
+    }
+
+    public String cacheName() {
+        return cacheName;
+    }
+
+    public CacheScope scope() {
+        return scope;
+    }
+
+    public boolean isCachedMethod(HttpMethod method) {
+        return method != null && (methods & bit(method)) != 0;
+    }
+
+    /**
+     * @return {@code true} if the cacheable statuses are configured, in which case they replace the 2xx default.
+     */
+    public boolean hasCacheableStatuses() {
+        return statusTimeToLives != null;
+    }
+
+    public boolean isCacheableStatus(int status) {
+        return statusTimeToLives != null && status >= MIN_STATUS && status <= MAX_STATUS && statusTimeToLives[status] != NOT_CACHEABLE;
+    }
+
+    /**
+     * @return the time to live configured for the status, or {@code defaultTimeToLive} if there is none.
+     */
+    public long timeToLive(int status, long defaultTimeToLive) {
+        if (statusTimeToLives == null || status < MIN_STATUS || status > MAX_STATUS || statusTimeToLives[status] <= 0) {
+            return defaultTimeToLive;
+        }
+        return statusTimeToLives[status];
+    }
+
+    public boolean isErrorCachingEnabled() {
+        return errorTimeToLives != null;
+    }
+
+    /**
+     * @return how long a response with this status is cached as an error, 0 if it is not.
+     */
+    public long errorTimeToLive(int status) {
+        if (errorTimeToLives == null || status < MIN_STATUS || status > MAX_STATUS) {
+            return 0;
+        }
+        return errorTimeToLives[status];
+    }
+
+    public KeyTemplate key() {
+        return key;
+    }
+
+    public String responseCondition() {
+        return responseCondition;
+    }
+
+    public CacheKeyRules keyRules() {
+        return keyRules;
+    }
+
+    /**
+     * Remembers the key separator of the cache resource, so that building keys does not look the resource up again.
+     */
+    public void resolveKeySeparator(CacheResource<?> cacheResource) {
+        if (keySeparator == null) {
+            keySeparator = cacheResource.keySeparator();
+        }
+    }
+
+    /**
+     * @return the key separator of the cache resource, looking the resource up only if it is not known yet.
+     */
+    public String keySeparator(Supplier<CacheResource<?>> cacheResource) {
+        String separator = keySeparator;
+        if (separator == null) {
+            separator = cacheResource.get().keySeparator();
+            keySeparator = separator;
+        }
+        return separator;
+    }
+
+    private static long methods(List<HttpMethod> methods) {
+        if (methods == null || methods.isEmpty()) {
+            return DEFAULT_METHODS;
+        }
+        long mask = 0;
+        for (HttpMethod method : methods) {
+            if (method != null) {
+                mask |= bit(method);
+            }
+        }
+        return mask;
+    }
+
+    private static long[] statusTimeToLives(List<CacheableStatus> cacheableStatuses) {
+        if (cacheableStatuses == null || cacheableStatuses.isEmpty()) {
+            return null;
+        }
+        long[] timeToLives = new long[MAX_STATUS + 1];
+        Arrays.fill(timeToLives, NOT_CACHEABLE);
+        for (CacheableStatus cacheableStatus : cacheableStatuses) {
+            if (cacheableStatus != null && cacheableStatus.getStatus() >= MIN_STATUS && cacheableStatus.getStatus() <= MAX_STATUS) {
+                timeToLives[cacheableStatus.getStatus()] = Math.max(cacheableStatus.getTimeToLiveSeconds(), 0);
+            }
+        }
+        return timeToLives;
+    }
+
+    private static long[] errorTimeToLives(long clientErrorTimeToLive, long serverErrorTimeToLive, List<Integer> errorStatuses) {
+        if (clientErrorTimeToLive <= 0 && serverErrorTimeToLive <= 0) {
+            return null;
+        }
+        long[] timeToLives = new long[MAX_STATUS + 1];
+        for (int status = 400; status <= MAX_STATUS; status++) {
+            if (errorStatuses == null || errorStatuses.isEmpty() || errorStatuses.contains(status)) {
+                timeToLives[status] = Math.max(status < 500 ? clientErrorTimeToLive : serverErrorTimeToLive, 0);
+            }
+        }
+        return timeToLives;
+    }
+
+    private static long bit(HttpMethod method) {
+        return 1L << method.ordinal();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.frame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encoding of the body bytes stored in a frame. Both compressed encodings produce the exact payload of the matching
+ * HTTP {@code Content-Encoding}, so a stored body can also be sent as is to clients accepting that encoding.
+ */
+public enum BodyEncoding {
+    NONE((byte) 0x00, null),
+    GZIP((byte) 0x01, "gzip"),
+    DEFLATE((byte) 0x02, "deflate");
+
+    private final byte id;
+    private final String contentEncoding;
+
+    BodyEncoding(byte id, String contentEncoding) {
+        this.id = id;
+        this.contentEncoding = contentEncoding;
+    }
+
+    byte id() {
+        return id;
+    }
+
+    /**
+     * The HTTP {@code Content-Encoding} token of this encoding, {@code null} for {@link #NONE}.
+     */
+    public String contentEncoding() {
+        return contentEncoding;
+    }
+
+    static BodyEncoding fromId(byte id) {
+        for (BodyEncoding encoding : values()) {
+            if (encoding.id == id) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compresses the given bytes. {@link Deflater#DEFAULT_COMPRESSION} is kept as is, other levels are bounded to the
+     * {@link Deflater#NO_COMPRESSION} - {@link Deflater#BEST_COMPRESSION} range.
+     */
+    public byte[] compress(byte[] body, int offset, int length, int level) {
+        if (this == NONE) {
+            return Arrays.copyOfRange(body, offset, offset + length);
+        }
+
+        int compressionLevel = level == Deflater.DEFAULT_COMPRESSION
+            ? level
+            : Math.max(Deflater.NO_COMPRESSION, Math.min(level, Deflater.BEST_COMPRESSION));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+        if (this == GZIP) {
+            try (GZIPOutputStream compressor = new LeveledGzipOutputStream(out, compressionLevel)) {
+                compressor.write(body, offset, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            Deflater deflater = new Deflater(compressionLevel);
+            try (DeflaterOutputStream compressor = new DeflaterOutputStream(out, deflater)) {
+                compressor.write(body, offset, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                deflater.end();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public byte[] decompress(byte[] body, int offset, int length) {
+        if (this == NONE) {
+            return Arrays.copyOfRange(body, offset, offset + length);
+        }
+
+        InputStream source = new ByteArrayInputStream(body, offset, length);
+        try (InputStream decompressor = this == GZIP ? new GZIPInputStream(source) : new InflaterInputStream(source)) {
+            return decompressor.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * {@link GZIPOutputStream} has no constructor taking a compression level; setting it before anything is written
+     * applies it to the whole stream.
+     */
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+
+        LeveledGzipOutputStream(ByteArrayOutputStream out, int level) throws IOException {
+            super(out);
+            def.setLevel(level);
+        }
+    }
+}
@@ -22,7 +22,9 @@ import io.gravitee.common.http.HttpHeaders;
 import io.gravitee.gateway.api.buffer.Buffer;
 import io.gravitee.gateway.api.http.HttpHeaderNames;
 import io.gravitee.policy.cache.CachedResponse;
+import io.gravitee.policy.cache.util.AcceptEncodingUtil;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
@@ -30,10 +32,27 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
 
 public final class CacheFrame {
 
     static final byte FRAME_VERSION_1 = 0x01;
+    static final byte FRAME_VERSION_2 = 0x02;
+
+    static final byte METADATA_STORED_AT = 0x01;
+    static final byte METADATA_SOFT_TTL = 0x02;
+    static final byte METADATA_HARD_TTL = 0x03;
+    static final byte METADATA_STALE_WHILE_REVALIDATE = 0x04;
+    static final byte METADATA_STALE_IF_ERROR = 0x05;
+    static final byte METADATA_ETAG = 0x06;
+    static final byte METADATA_BODY_CHECKSUM = 0x07;
+    static final byte METADATA_BODY_ENCODING = 0x08;
+    static final byte METADATA_LAST_MODIFIED = 0x09;
+    static final byte METADATA_GENERATED_ETAG = 0x0A;
+
+    // Minimal frame: version, status, headers length and header count
+    private static final int MIN_FRAME_LENGTH = 1 + 2 + 4 + 2;
 
     private static final ObjectMapper LEGACY_MAPPER = createLegacyMapper();
 
@@ -56,58 +75,132 @@ public final class CacheFrame {
     }
 
     public static boolean isLegacyFormat(byte[] frame) {
-        return frame == null || frame.length < 1 || frame[0] != FRAME_VERSION_1;
+        return frame == null || frame.length < 1 || (frame[0] != FRAME_VERSION_1 && frame[0] != FRAME_VERSION_2);
     }
 
+    /**
+     * Encodes the response as a binary frame. Responses carrying {@link FrameMetadata} are encoded as
+     * {@link #FRAME_VERSION_2} frames, others as {@link #FRAME_VERSION_1} frames.
+     * <p>
+     * The frame size is computed up front so that the status, metadata, headers and body are written straight into the
+     * resulting array: the body is copied exactly once and no intermediate buffer or per-header array is allocated.
+     */
     public static byte[] encode(CachedResponse response) {
-        ByteBuf prefix = Unpooled.buffer();
-        prefix.writeByte(FRAME_VERSION_1);
-        prefix.writeShort(response.status());
+        return encode(response, BodyEncoding.NONE, Deflater.DEFAULT_COMPRESSION, 0);
+    }
+
+    /**
+     * Encodes the response as a binary frame, storing the body compressed with the given encoding when it is at least
+     * {@code minSize} bytes long. Only frames carrying {@link FrameMetadata} can record a compressed body. Bodies
+     * already encoded by the backend, or that do not shrink, are stored as is.
+     */
+    public static byte[] encode(CachedResponse response, BodyEncoding compression, int level, long minSize) {
+        FrameMetadata metadata = response.metadata();
+        HttpHeaders headers = response.headers();
+        Buffer body = response.body();
+        int bodyLen = body == null ? 0 : body.length();
+        int headersLen = headersSize(headers);
 
-        int headersLenPos = prefix.writerIndex();
-        prefix.writeInt(0);
-        int headersStart = prefix.writerIndex();
-        prefix.writeShort(0);
+        byte[] compressedBody = null;
+        if (
+            metadata != null &&
+            compression != null &&
+            compression != BodyEncoding.NONE &&
+            bodyLen > 0 &&
+            bodyLen >= minSize &&
+            !isContentEncoded(headers)
+        ) {
+            byte[] compressed = compress(body.getNativeBuffer(), bodyLen, compression, level);
+            if (compressed.length < bodyLen) {
+                compressedBody = compressed;
+            }
+        }
+        BodyEncoding bodyEncoding = compressedBody == null ? BodyEncoding.NONE : compression;
+        int storedBodyLen = compressedBody == null ? bodyLen : compressedBody.length;
+
+        byte[] result = new byte[1 + 2 + metadataSize(metadata, bodyEncoding) + 4 + headersLen + storedBodyLen];
+        ByteBuf frame = Unpooled.wrappedBuffer(result);
+        frame.writerIndex(0);
+
+        frame.writeByte(metadata == null ? FRAME_VERSION_1 : FRAME_VERSION_2);
+        frame.writeShort(response.status());
+        int checksumPos = -1;
+        if (metadata != null) {
+            checksumPos = writeMetadata(frame, metadata, bodyEncoding);
+        }
+
+        writeHeaders(frame, headers, headersLen);
+
+        int bodyStart = frame.writerIndex();
+        if (compressedBody != null) {
+            frame.writeBytes(compressedBody);
+        } else if (bodyLen > 0) {
+            ByteBuf nativeBody = body.getNativeBuffer();
+            frame.writeBytes(nativeBody, nativeBody.readerIndex(), bodyLen);
+        }
+        if (checksumPos != -1) {
+            frame.setInt(checksumPos, (int) checksum(result, bodyStart));
+        }
+        return result;
+    }
 
+    private static byte[] compress(ByteBuf body, int bodyLen, BodyEncoding compression, int level) {
+        if (body.hasArray()) {
+            return compression.compress(body.array(), body.arrayOffset() + body.readerIndex(), bodyLen, level);
+        }
+        return compression.compress(ByteBufUtil.getBytes(body, body.readerIndex(), bodyLen), 0, bodyLen, level);
+    }
+
+    private static boolean containsToken(String value, String token) {
+        for (String part : value.split(",")) {
+            String trimmed = part.trim();
+            if (trimmed.equals("*") || trimmed.equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isContentEncoded(HttpHeaders headers) {
+        if (headers == null) {
+            return false;
+        }
+        List<String> contentEncoding = headers.get(HttpHeaderNames.CONTENT_ENCODING);
+        return contentEncoding != null && contentEncoding.stream().anyMatch(value -> !"identity".equalsIgnoreCase(value.trim()));
+    }
+
+    /**
+     * Headers section of a frame:
+     * <pre>
+     * [4B headersLen][2B count] then repeated [2B nameLen][name][4B valueLen][value]
+     * </pre>
+     */
+    private static void writeHeaders(ByteBuf frame, HttpHeaders headers, int headersLen) {
+        frame.writeInt(headersLen);
+        int countPos = frame.writerIndex();
+        frame.writeShort(0);
         int count = 0;
-        HttpHeaders headers = response.headers();
         if (headers != null) {
             for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
-                byte[] nameBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                String name = entry.getKey();
+                int nameLen = ByteBufUtil.utf8Bytes(name);
                 for (String value : entry.getValue()) {
-                    byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
-                    prefix.writeShort(nameBytes.length);
-                    prefix.writeBytes(nameBytes);
-                    prefix.writeInt(valueBytes.length);
-                    prefix.writeBytes(valueBytes);
+                    frame.writeShort(nameLen);
+                    ByteBufUtil.reserveAndWriteUtf8(frame, name, nameLen);
+                    int valueLen = ByteBufUtil.utf8Bytes(value);
+                    frame.writeInt(valueLen);
+                    ByteBufUtil.reserveAndWriteUtf8(frame, value, valueLen);
                     count++;
                 }
             }
         }
-        int headersEnd = prefix.writerIndex();
-        prefix.setShort(headersStart, count);
-        prefix.setInt(headersLenPos, headersEnd - headersStart);
-
-        int prefixLen = prefix.readableBytes();
-        Buffer body = response.body();
-        int bodyLen = body == null ? 0 : body.length();
-        byte[] result = new byte[prefixLen + bodyLen];
-        prefix.getBytes(0, result, 0, prefixLen);
-        if (bodyLen > 0) {
-            body.getNativeBuffer().getBytes(0, result, prefixLen, bodyLen);
-        }
-        return result;
+        frame.setShort(countPos, count);
     }
 
-    public static CachedResponse decode(byte[] frame) {
-        ByteBuf buf = Unpooled.wrappedBuffer(frame);
-        int offset = 1;
-        int status = buf.getUnsignedShort(offset);
-        offset += 2;
-        int headersLen = buf.getInt(offset);
-        offset += 4;
-        int headersEnd = offset + headersLen;
-
+    /**
+     * Reads the headers section starting at {@code offset}, past its length.
+     */
+    private static HttpHeaders readHeaders(ByteBuf buf, int offset) {
         HttpHeaders headers = new HttpHeaders();
         int headerCount = buf.getUnsignedShort(offset);
         offset += 2;
@@ -122,12 +215,357 @@ public final class CacheFrame {
             offset += valueLen;
             headers.add(name, value);
         }
+        return headers;
+    }
+
+    /**
+     * Size of the headers section, header count included.
+     */
+    private static int headersSize(HttpHeaders headers) {
+        int size = 2;
+        if (headers != null) {
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                int entrySize = 2 + ByteBufUtil.utf8Bytes(entry.getKey()) + 4;
+                for (String value : entry.getValue()) {
+                    size += entrySize + ByteBufUtil.utf8Bytes(value);
+                }
+            }
+        }
+        return size;
+    }
+
+    public static CachedResponse decode(byte[] frame) {
+        return decode(frame, false);
+    }
+
+    /**
+     * Decodes the frame for a client sending the given {@code Accept-Encoding}. A body stored compressed with an
+     * encoding the client accepts is returned as stored, with the matching {@code Content-Encoding} and
+     * {@code Content-Length} headers, so that it is not inflated on every hit, and its upstream {@code ETag} is made
+     * weak as it identifies the uncompressed representation. Otherwise the body is inflated. In both cases,
+     * {@code Vary: Accept-Encoding} is added as the response depends on that header.
+     */
+    public static CachedResponse decodeFor(byte[] frame, String acceptEncoding) {
+        FrameMetadata stored = decodeMetadata(frame);
+        if (stored == null || stored.getBodyEncoding() == BodyEncoding.NONE) {
+            return decode(frame, false);
+        }
+
+        String contentEncoding = stored.getBodyEncoding().contentEncoding();
+        boolean accepted = AcceptEncodingUtil.accepts(acceptEncoding, contentEncoding);
+        CachedResponse cached = decode(frame, accepted);
+        HttpHeaders headers = cached.headers();
+        if (accepted) {
+            headers.remove(HttpHeaderNames.CONTENT_ENCODING);
+            headers.add(HttpHeaderNames.CONTENT_ENCODING, contentEncoding);
+            headers.remove(HttpHeaderNames.CONTENT_LENGTH);
+            headers.add(HttpHeaderNames.CONTENT_LENGTH, Integer.toString(cached.body().length()));
+            List<String> etag = headers.get(HttpHeaderNames.ETAG);
+            if (etag != null && !etag.isEmpty() && !etag.get(0).startsWith("W/")) {
+                headers.remove(HttpHeaderNames.ETAG);
+                headers.add(HttpHeaderNames.ETAG, "W/" + etag.get(0));
+            }
+        }
+        List<String> vary = headers.get(HttpHeaderNames.VARY);
+        if (vary == null || vary.stream().noneMatch(value -> containsToken(value, HttpHeaderNames.ACCEPT_ENCODING))) {
+            headers.add(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+        }
+        return cached;
+    }
+
+    /**
+     * @param keepEncoding whether a compressed body is returned as stored rather than inflated, in which case the
+     * returned metadata tells its encoding.
+     */
+    private static CachedResponse decode(byte[] frame, boolean keepEncoding) {
+        ByteBuf buf = Unpooled.wrappedBuffer(frame);
+        int offset = 1;
+        int status = buf.getUnsignedShort(offset);
+        offset += 2;
+
+        FrameMetadata metadata = null;
+        if (frame[0] == FRAME_VERSION_2) {
+            int metadataLen = buf.getUnsignedShort(offset);
+            offset += 2;
+            metadata = readMetadata(buf, offset, offset + metadataLen);
+            offset += metadataLen;
+        }
+
+        int headersLen = buf.getInt(offset);
+        offset += 4;
+        int headersEnd = offset + headersLen;
+
+        HttpHeaders headers = readHeaders(buf, offset);
+
+        Buffer body;
+        if (frame.length <= headersEnd) {
+            body = Buffer.buffer();
+        } else if (!keepEncoding && metadata != null && metadata.getBodyEncoding() != BodyEncoding.NONE) {
+            body = Buffer.buffer(metadata.getBodyEncoding().decompress(frame, headersEnd, frame.length - headersEnd));
+        } else {
+            body = Buffer.buffer(Unpooled.wrappedBuffer(frame, headersEnd, frame.length - headersEnd));
+        }
+
+        return new CachedResponse(status, headers, body, metadata);
+    }
+
+    /**
+     * Cheaply checks that a binary frame is well formed: every section fits in the frame and, when the frame carries a
+     * body checksum, the body matches it. This lets callers discard corrupted entries without going through a failed
+     * {@link #decode(byte[])}.
+     */
+    public static boolean isValid(byte[] frame) {
+        if (frame == null || frame.length < MIN_FRAME_LENGTH) {
+            return false;
+        }
 
-        Buffer body = frame.length > headersEnd
-            ? Buffer.buffer(Unpooled.wrappedBuffer(frame, headersEnd, frame.length - headersEnd))
-            : Buffer.buffer();
+        ByteBuf buf = Unpooled.wrappedBuffer(frame);
+        long offset = 3;
+        long checksum = -1;
+        if (frame[0] == FRAME_VERSION_2) {
+            long metadataEnd = offset + 2 + buf.getUnsignedShort((int) offset);
+            offset += 2;
+            if (metadataEnd > frame.length) {
+                return false;
+            }
+            while (offset < metadataEnd) {
+                if (offset + 3 > metadataEnd) {
+                    return false;
+                }
+                byte tag = buf.getByte((int) offset);
+                int valueLen = buf.getUnsignedShort((int) offset + 1);
+                long valueOffset = offset + 3;
+                if (valueOffset + valueLen > metadataEnd) {
+                    return false;
+                }
+                if (tag == METADATA_BODY_CHECKSUM && valueLen == Integer.BYTES) {
+                    checksum = buf.getUnsignedInt((int) valueOffset);
+                } else if (tag == METADATA_BODY_ENCODING) {
+                    if (valueLen != 1 || BodyEncoding.fromId(buf.getByte((int) valueOffset)) == null) {
+                        return false;
+                    }
+                }
+                offset = valueOffset + valueLen;
+            }
+        } else if (frame[0] != FRAME_VERSION_1) {
+            return false;
+        }
+
+        if (offset + 4 > frame.length) {
+            return false;
+        }
+        long headersLen = buf.getUnsignedInt((int) offset);
+        offset += 4;
+        long headersEnd = offset + headersLen;
+        if (headersLen < 2 || headersEnd > frame.length) {
+            return false;
+        }
+        int headerCount = buf.getUnsignedShort((int) offset);
+        offset += 2;
+        for (int i = 0; i < headerCount; i++) {
+            if (offset + 2 > headersEnd) {
+                return false;
+            }
+            offset += 2 + buf.getUnsignedShort((int) offset);
+            if (offset + 4 > headersEnd) {
+                return false;
+            }
+            offset += 4 + buf.getUnsignedInt((int) offset);
+            if (offset > headersEnd) {
+                return false;
+            }
+        }
+        if (offset != headersEnd) {
+            return false;
+        }
+
+        return checksum == -1 || checksum == checksum(frame, (int) headersEnd);
+    }
+
+    /**
+     * Reads only the metadata of a frame, without decoding its headers and body.
+     *
+     * @return the metadata of a v2 frame, {@code null} for any other format.
+     */
+    public static FrameMetadata decodeMetadata(byte[] frame) {
+        if (frame == null || frame.length < 5 || frame[0] != FRAME_VERSION_2) {
+            return null;
+        }
+        ByteBuf buf = Unpooled.wrappedBuffer(frame);
+        int metadataLen = buf.getUnsignedShort(3);
+        return readMetadata(buf, 5, 5 + metadataLen);
+    }
+
+    /**
+     * Copies a v2 frame with new metadata, e.g. to extend its time to live once the backend confirmed it is still valid.
+     * The headers and body sections are copied as they are: the body is neither compressed nor checksummed again, so
+     * the body encoding and checksum of the frame are kept.
+     *
+     * @throws IllegalArgumentException if the frame is not a v2 frame.
+     */
+    public static byte[] withMetadata(byte[] frame, FrameMetadata metadata) {
+        FrameMetadata stored = decodeMetadata(frame);
+        if (stored == null) {
+            throw new IllegalArgumentException("Only frames carrying metadata can be updated");
+        }
+        metadata.setBodyEncoding(stored.getBodyEncoding());
+        metadata.setBodyChecksum(stored.getBodyChecksum());
+        int headersStart = 5 + Unpooled.wrappedBuffer(frame).getUnsignedShort(3);
+
+        byte[] result = new byte[1 + 2 + metadataSize(metadata, stored.getBodyEncoding()) + frame.length - headersStart];
+        ByteBuf buf = Unpooled.wrappedBuffer(result);
+        buf.writerIndex(0);
+        buf.writeBytes(frame, 0, 3);
+        int checksumPos = writeMetadata(buf, metadata, stored.getBodyEncoding());
+        buf.setInt(checksumPos, (int) stored.getBodyChecksum());
+        buf.writeBytes(frame, headersStart, frame.length - headersStart);
+        return result;
+    }
+
+    /**
+     * Reads only the headers of a binary frame, as stored: without the changes made by
+     * {@link #decodeFor(byte[], String)} for the encoding accepted by a client, and without decoding the body.
+     */
+    public static HttpHeaders decodeHeaders(byte[] frame) {
+        ByteBuf buf = Unpooled.wrappedBuffer(frame);
+        int headersStart = frame[0] == FRAME_VERSION_2 ? 5 + buf.getUnsignedShort(3) : 3;
+        return readHeaders(buf, headersStart + 4);
+    }
+
+    /**
+     * Copies a v2 frame with new metadata and headers, e.g. those updated by the {@code 304 Not Modified} response of
+     * the backend. The body section is copied as it is, like in {@link #withMetadata(byte[], FrameMetadata)}.
+     *
+     * @throws IllegalArgumentException if the frame is not a v2 frame.
+     */
+    public static byte[] withMetadata(byte[] frame, FrameMetadata metadata, HttpHeaders headers) {
+        FrameMetadata stored = decodeMetadata(frame);
+        if (stored == null) {
+            throw new IllegalArgumentException("Only frames carrying metadata can be updated");
+        }
+        metadata.setBodyEncoding(stored.getBodyEncoding());
+        metadata.setBodyChecksum(stored.getBodyChecksum());
+        ByteBuf source = Unpooled.wrappedBuffer(frame);
+        int headersStart = 5 + source.getUnsignedShort(3);
+        int bodyStart = headersStart + 4 + source.getInt(headersStart);
+        int headersLen = headersSize(headers);
+
+        byte[] result = new byte[1 + 2 + metadataSize(metadata, stored.getBodyEncoding()) + 4 + headersLen + frame.length - bodyStart];
+        ByteBuf buf = Unpooled.wrappedBuffer(result);
+        buf.writerIndex(0);
+        buf.writeBytes(frame, 0, 3);
+        int checksumPos = writeMetadata(buf, metadata, stored.getBodyEncoding());
+        buf.setInt(checksumPos, (int) stored.getBodyChecksum());
+        writeHeaders(buf, headers, headersLen);
+        buf.writeBytes(frame, bodyStart, frame.length - bodyStart);
+        return result;
+    }
+
+    /**
+     * Metadata section of a v2 frame:
+     * <pre>
+     * [2B metadataLen] then repeated [1B tag][2B valueLen][value]
+     * </pre>
+     * Unknown tags are skipped on decode, so new entries can be added without bumping the frame version.
+     */
+    private static int metadataSize(FrameMetadata metadata, BodyEncoding bodyEncoding) {
+        if (metadata == null) {
+            return 0;
+        }
+        int size = 2 + 5 * (1 + 2 + Long.BYTES) + 1 + 2 + Integer.BYTES;
+        if (bodyEncoding != BodyEncoding.NONE) {
+            size += 1 + 2 + 1;
+        }
+        int etagLen = etagSize(metadata.getEtag());
+        if (etagLen != -1) {
+            size += 1 + 2 + etagLen;
+        }
+        int generatedEtagLen = etagSize(metadata.getGeneratedEtag());
+        if (generatedEtagLen != -1) {
+            size += 1 + 2 + generatedEtagLen;
+        }
+        if (metadata.getLastModified() != -1) {
+            size += 1 + 2 + Long.BYTES;
+        }
+        return size;
+    }
+
+    private static int etagSize(String etag) {
+        if (etag == null) {
+            return -1;
+        }
+        int etagLen = ByteBufUtil.utf8Bytes(etag);
+        // A value longer than an entry can hold is not an entity tag worth keeping
+        return etagLen > 0xFFFF ? -1 : etagLen;
+    }
+
+    /**
+     * @return the position of the body checksum, written once the body is known.
+     */
+    private static int writeMetadata(ByteBuf buf, FrameMetadata metadata, BodyEncoding bodyEncoding) {
+        int metadataLenPos = buf.writerIndex();
+        buf.writeShort(0);
+        int metadataStart = buf.writerIndex();
+
+        buf.writeByte(METADATA_STORED_AT).writeShort(Long.BYTES).writeLong(metadata.getStoredAt());
+        buf.writeByte(METADATA_SOFT_TTL).writeShort(Long.BYTES).writeLong(metadata.getSoftTimeToLive());
+        buf.writeByte(METADATA_HARD_TTL).writeShort(Long.BYTES).writeLong(metadata.getHardTimeToLive());
+        buf.writeByte(METADATA_STALE_WHILE_REVALIDATE).writeShort(Long.BYTES).writeLong(metadata.getStaleWhileRevalidate());
+        buf.writeByte(METADATA_STALE_IF_ERROR).writeShort(Long.BYTES).writeLong(metadata.getStaleIfError());
+        int etagLen = etagSize(metadata.getEtag());
+        if (etagLen != -1) {
+            buf.writeByte(METADATA_ETAG).writeShort(etagLen);
+            ByteBufUtil.reserveAndWriteUtf8(buf, metadata.getEtag(), etagLen);
+        }
+        int generatedEtagLen = etagSize(metadata.getGeneratedEtag());
+        if (generatedEtagLen != -1) {
+            buf.writeByte(METADATA_GENERATED_ETAG).writeShort(generatedEtagLen);
+            ByteBufUtil.reserveAndWriteUtf8(buf, metadata.getGeneratedEtag(), generatedEtagLen);
+        }
+        if (metadata.getLastModified() != -1) {
+            buf.writeByte(METADATA_LAST_MODIFIED).writeShort(Long.BYTES).writeLong(metadata.getLastModified());
+        }
+        if (bodyEncoding != BodyEncoding.NONE) {
+            buf.writeByte(METADATA_BODY_ENCODING).writeShort(1).writeByte(bodyEncoding.id());
+        }
+        buf.writeByte(METADATA_BODY_CHECKSUM).writeShort(Integer.BYTES);
+        int checksumPos = buf.writerIndex();
+        buf.writeInt(0);
+
+        buf.setShort(metadataLenPos, buf.writerIndex() - metadataStart);
+        return checksumPos;
+    }
+
+    private static FrameMetadata readMetadata(ByteBuf buf, int offset, int end) {
+        FrameMetadata metadata = new FrameMetadata();
+        while (offset < end) {
+            byte tag = buf.getByte(offset);
+            int valueLen = buf.getUnsignedShort(offset + 1);
+            int valueOffset = offset + 3;
+            switch (tag) {
+                case METADATA_STORED_AT -> metadata.setStoredAt(buf.getLong(valueOffset));
+                case METADATA_SOFT_TTL -> metadata.setSoftTimeToLive(buf.getLong(valueOffset));
+                case METADATA_HARD_TTL -> metadata.setHardTimeToLive(buf.getLong(valueOffset));
+                case METADATA_STALE_WHILE_REVALIDATE -> metadata.setStaleWhileRevalidate(buf.getLong(valueOffset));
+                case METADATA_STALE_IF_ERROR -> metadata.setStaleIfError(buf.getLong(valueOffset));
+                case METADATA_ETAG -> metadata.setEtag(buf.toString(valueOffset, valueLen, StandardCharsets.UTF_8));
+                case METADATA_BODY_CHECKSUM -> metadata.setBodyChecksum(buf.getUnsignedInt(valueOffset));
+                case METADATA_BODY_ENCODING -> metadata.setBodyEncoding(BodyEncoding.fromId(buf.getByte(valueOffset)));
+                case METADATA_LAST_MODIFIED -> metadata.setLastModified(buf.getLong(valueOffset));
+                case METADATA_GENERATED_ETAG -> metadata.setGeneratedEtag(buf.toString(valueOffset, valueLen, StandardCharsets.UTF_8));
+                default -> {
+                    // Unknown entry written by a newer policy version, skip it.
+                }
+            }
+            offset = valueOffset + valueLen;
+        }
+        return metadata;
+    }
 
-        return new CachedResponse(status, headers, body);
+    private static long checksum(byte[] frame, int bodyStart) {
+        CRC32C crc = new CRC32C();
+        crc.update(frame, bodyStart, frame.length - bodyStart);
+        return crc.getValue();
     }
 
     /**
@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.frame;
+
+/**
+ * Metadata stored alongside a cached response in a {@link CacheFrame#FRAME_VERSION_2} frame.
+ * <p>
+ * The soft time to live is the freshness lifetime of the entry. The hard time to live is the lifetime of the entry in
+ * the cache resource; between the two, the entry is stale but can still be served, either while it is being revalidated
+ * (stale-while-revalidate window) or when the backend fails to refresh it (stale-if-error window).
+ */
+public class FrameMetadata {
+
+    private long storedAt;
+    private long softTimeToLive = -1;
+    private long hardTimeToLive = -1;
+    private long staleWhileRevalidate;
+    private long staleIfError;
+    private String etag;
+    private String generatedEtag;
+    private long lastModified = -1;
+    private long bodyChecksum = -1;
+    private BodyEncoding bodyEncoding = BodyEncoding.NONE;
+
+    public FrameMetadata() {}
+
+    public FrameMetadata(long storedAt, long softTimeToLive, long hardTimeToLive) {
+        this.storedAt = storedAt;
+        this.softTimeToLive = softTimeToLive;
+        this.hardTimeToLive = hardTimeToLive;
+    }
+
+    /**
+     * Epoch milliseconds at which the entry has been stored.
+     */
+    public long getStoredAt() {
+        return storedAt;
+    }
+
+    public void setStoredAt(long storedAt) {
+        this.storedAt = storedAt;
+    }
+
+    /**
+     * Freshness lifetime in seconds, {@code -1} if unknown.
+     */
+    public long getSoftTimeToLive() {
+        return softTimeToLive;
+    }
+
+    public void setSoftTimeToLive(long softTimeToLive) {
+        this.softTimeToLive = softTimeToLive;
+    }
+
+    /**
+     * Lifetime of the entry in the cache resource in seconds, {@code -1} if unknown.
+     */
+    public long getHardTimeToLive() {
+        return hardTimeToLive;
+    }
+
+    public void setHardTimeToLive(long hardTimeToLive) {
+        this.hardTimeToLive = hardTimeToLive;
+    }
+
+    /**
+     * Window in seconds, after the soft time to live, during which the entry is served while being revalidated.
+     */
+    public long getStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    public void setStaleWhileRevalidate(long staleWhileRevalidate) {
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    /**
+     * Window in seconds, after the soft time to live, during which the entry is served if the backend fails.
+     */
+    public long getStaleIfError() {
+        return staleIfError;
+    }
+
+    public void setStaleIfError(long staleIfError) {
+        this.staleIfError = staleIfError;
+    }
+
+    /**
+     * Entity tag sent by the backend with the response, {@code null} if none.
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    /**
+     * Strong {@code ETag} generated from the body for a response the backend sent without one, {@code null} if none.
+     * Unlike the upstream one, it is never sent to the backend.
+     */
+    public String getGeneratedEtag() {
+        return generatedEtag;
+    }
+
+    public void setGeneratedEtag(String generatedEtag) {
+        this.generatedEtag = generatedEtag;
+    }
+
+    /**
+     * @return the {@code ETag} clients know the response by: the upstream one, or else the generated one.
+     */
+    public String entityTag() {
+        return etag != null ? etag : generatedEtag;
+    }
+
+    /**
+     * {@code Last-Modified} date sent by the backend with the response, in epoch seconds, {@code -1} if none.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * CRC32C of the body, computed when the frame is encoded, {@code -1} if unknown.
+     */
+    public long getBodyChecksum() {
+        return bodyChecksum;
+    }
+
+    public void setBodyChecksum(long bodyChecksum) {
+        this.bodyChecksum = bodyChecksum;
+    }
+
+    /**
+     * Encoding of the body as stored in the frame. {@link CacheFrame#decode(byte[])} always gives back the original body.
+     */
+    public BodyEncoding getBodyEncoding() {
+        return bodyEncoding;
+    }
+
+    public void setBodyEncoding(BodyEncoding bodyEncoding) {
+        this.bodyEncoding = bodyEncoding;
+    }
+
+    public boolean isStale(long now) {
+        return softTimeToLive >= 0 && now >= storedAt + softTimeToLive * 1000;
+    }
+
+    public boolean isWithinStaleWhileRevalidate(long now) {
+        return softTimeToLive >= 0 && now < storedAt + (softTimeToLive + staleWhileRevalidate) * 1000;
+    }
+
+    public boolean isWithinStaleIfError(long now) {
+        return softTimeToLive >= 0 && now < storedAt + (softTimeToLive + staleIfError) * 1000;
+    }
+
+    /**
+     * @return whether the entry can be validated with the backend through a conditional request.
+     */
+    public boolean hasValidators() {
+        return etag != null || lastModified != -1;
+    }
+}
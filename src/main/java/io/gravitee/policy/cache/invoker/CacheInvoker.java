@@ -18,6 +18,7 @@ package io.gravitee.policy.cache.invoker;
 import static io.gravitee.policy.v3.cache.CachePolicyV3.UPSTREAM_RESPONSE;
 
 import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.common.http.HttpMethod;
 import io.gravitee.common.http.HttpStatusCode;
 import io.gravitee.gateway.api.buffer.Buffer;
 import io.gravitee.gateway.api.http.HttpHeaderNames;
@@ -26,22 +27,44 @@ import io.gravitee.gateway.reactive.api.invoker.Invoker;
 import io.gravitee.policy.cache.CacheAction;
 import io.gravitee.policy.cache.CacheControl;
 import io.gravitee.policy.cache.CachedResponse;
+import io.gravitee.policy.cache.StaleEntry;
+import io.gravitee.policy.cache.coalescing.RequestCoalescer;
 import io.gravitee.policy.cache.configuration.CachePolicyConfiguration;
+import io.gravitee.policy.cache.configuration.CachePolicyPlan;
+import io.gravitee.policy.cache.configuration.CacheScope;
 import io.gravitee.policy.cache.frame.CacheFrame;
+import io.gravitee.policy.cache.frame.FrameMetadata;
+import io.gravitee.policy.cache.key.CacheKeyBuilder;
+import io.gravitee.policy.cache.key.CacheKeyRules;
+import io.gravitee.policy.cache.metrics.CacheMetrics;
+import io.gravitee.policy.cache.near.NearCache;
+import io.gravitee.policy.cache.negative.ErrorKeyBudget;
 import io.gravitee.policy.cache.resource.CacheElement;
+import io.gravitee.policy.cache.tag.TagIndex;
+import io.gravitee.policy.cache.tag.TagInvalidator;
+import io.gravitee.policy.cache.util.BoundedBodyAccumulator;
 import io.gravitee.policy.cache.util.CacheControlUtil;
+import io.gravitee.policy.cache.util.ConditionalRequestUtil;
 import io.gravitee.policy.cache.util.ExpiresUtil;
+import io.gravitee.policy.cache.util.RangeUtil;
+import io.gravitee.policy.cache.vary.VariantIndex;
 import io.gravitee.resource.api.ResourceManager;
 import io.gravitee.resource.cache.api.Cache;
 import io.gravitee.resource.cache.api.CacheResource;
+import io.gravitee.resource.cache.api.Element;
 import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
 import java.time.Instant;
-import java.util.Collections;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.ToLongFunction;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -49,16 +72,75 @@ public class CacheInvoker implements Invoker {
 
     public static final String CACHE_ENDPOINT_INVOKER_ID = "cache-endpoint-invoker";
 
+    private static final String REVALIDATION_PREFIX = "revalidate:";
+
     private final CachePolicyConfiguration cachePolicyConfiguration;
     private final Invoker delegateInvoker;
     private final Cache cache;
     private final CacheAction action;
+    private final NearCache nearCache;
+    private CachePolicyPlan plan;
+    private ErrorKeyBudget errorKeyBudget;
+    // Key of the request, and the variant index found under it with the variant of the request when the backend varies its responses
+    private String baseKey;
+    private VariantIndex variantIndex;
+    private String variant;
+    private String variantKey;
+    // Variant index to put in cache once the variant of the response is stored
+    private VariantIndex pendingVariantIndex;
+    // Prefix of the tag index keys, when the backend tags its responses
+    private String tagPrefix;
+    // Vert.x context of the request, on which a coalesced request resumes
+    private Context context;
+    // Range headers removed from the request to fetch the whole body, answered from it if it is not put in cache
+    private io.gravitee.gateway.api.http.HttpHeaders range;
 
     public CacheInvoker(Invoker delegateInvoker, Cache cache, CacheAction action, CachePolicyConfiguration configuration) {
+        this(
+            delegateInvoker,
+            cache,
+            action,
+            configuration,
+            null,
+            configuration.isNearCacheEnabled() ? NearCache.of(configuration) : null,
+            null
+        );
+    }
+
+    /**
+     * @param nearCache the near cache of the policy, {@code null} if it is disabled.
+     * @param errorKeyBudget the error key budget of the policy, {@code null} if error caching is disabled.
+     */
+    public CacheInvoker(
+        Invoker delegateInvoker,
+        Cache cache,
+        CacheAction action,
+        CachePolicyConfiguration configuration,
+        CachePolicyPlan plan,
+        NearCache nearCache,
+        ErrorKeyBudget errorKeyBudget
+    ) {
         this.cachePolicyConfiguration = configuration;
+        this.plan = plan;
+        this.errorKeyBudget = errorKeyBudget;
         this.delegateInvoker = delegateInvoker;
         this.cache = cache;
         this.action = action;
+        this.nearCache = nearCache;
+    }
+
+    private CachePolicyPlan plan() {
+        if (plan == null) {
+            plan = new CachePolicyPlan(cachePolicyConfiguration);
+        }
+        return plan;
+    }
+
+    private ErrorKeyBudget errorKeyBudget() {
+        if (errorKeyBudget == null) {
+            errorKeyBudget = ErrorKeyBudget.of(cachePolicyConfiguration);
+        }
+        return errorKeyBudget;
     }
 
     @Override
@@ -68,98 +150,542 @@ public class CacheInvoker implements Invoker {
 
     @Override
     public Completable invoke(ExecutionContext executionContext) {
-        var cacheId = hash(executionContext);
-        log.debug("Looking for element in cache with the key {}", cacheId);
-
-        return Single.fromCompletionStage(cache.getBinaryAsync(cacheId).map(Optional::ofNullable).toCompletionStage()).flatMapCompletable(
-            optElt -> {
-                Response response = executionContext.response();
-                if (optElt.isEmpty() || action == CacheAction.REFRESH) {
-                    if (action == CacheAction.REFRESH) {
-                        log.info(
-                            "A refresh action has been received for key {}, invoke backend with invoker {}",
-                            cacheId,
-                            this.delegateInvoker.getClass().getName()
-                        );
-                    } else {
-                        log.debug(
-                            "No element for key {}, invoke backend with invoker {}",
-                            cacheId,
-                            this.delegateInvoker.getClass().getName()
-                        );
-                    }
+        context = Vertx.currentContext();
+        baseKey = hash(executionContext);
+        log.debug("Looking for element in cache with the key {}", baseKey);
+        if (cachePolicyConfiguration.getTagHeader() != null) {
+            tagPrefix = executionContext.getAttribute(ContextAttributes.ATTR_API) + keySeparator(executionContext);
+        }
 
-                    return this.delegateInvoker.invoke(executionContext).andThen(
-                        storeInCacheEvaluation(executionContext, cacheId, response)
+        return lookup(baseKey).flatMap(optElt -> lookupVariant(executionContext, optElt)).flatMapCompletable(optElt -> {
+            String cacheId = variantKey != null ? variantKey : baseKey;
+            Response response = executionContext.response();
+            if (optElt.isEmpty() || action == CacheAction.REFRESH) {
+                if (action == CacheAction.REFRESH) {
+                    log.info(
+                        "A refresh action has been received for key {}, invoke backend with invoker {}",
+                        cacheId,
+                        this.delegateInvoker.getClass().getName()
                     );
+                } else {
+                    log.debug("No element for key {}, invoke backend with invoker {}", cacheId, this.delegateInvoker.getClass().getName());
                 }
 
-                byte[] frame = CacheFrame.asFrame(optElt.get().value());
-                if (frame == null) {
-                    log.debug("Cache entry for key {} has unrecognized value type, evicting and refetching", cacheId);
+                return invokeBackend(executionContext, cacheId, response, null, null);
+            }
+
+            byte[] frame = CacheFrame.asFrame(optElt.get().value());
+            if (frame == null) {
+                log.debug("Cache entry for key {} has unrecognized value type, evicting and refetching", cacheId);
+                evictFromCache(cacheId);
+                return invokeBackend(executionContext, cacheId, response, null, null);
+            }
+
+            if (CacheFrame.isLegacyFormat(frame)) {
+                // During a rolling upgrade from gravitee-policy-cache <= 4.0.0-alpha.2, the cache
+                // may contain legacy JSON entries written by old gateway instances. Serve them as
+                // a regular cache hit (no evict, no rewrite) to avoid thundering-herd refetches
+                // against the backend. Entries naturally migrate to the binary format on TTL
+                // expiry. See APIM-13628.
+                try {
+                    CachedResponse cached = CacheFrame.decodeLegacy(frame);
+                    log.debug("Serving legacy-format cache entry for key {} (read-only; entry will not be rewritten)", cacheId);
+                    return serveCachedResponse(response, isHead(executionContext) ? cached.withoutBody() : cached);
+                } catch (Exception e) {
+                    log.warn("Cannot decode legacy cache entry for key {}, evicting and refetching", cacheId, e);
                     evictFromCache(cacheId);
-                    return this.delegateInvoker.invoke(executionContext).andThen(
-                        storeInCacheEvaluation(executionContext, cacheId, response)
-                    );
+                    return invokeBackend(executionContext, cacheId, response, null, null);
+                }
+            }
+
+            if (!CacheFrame.isValid(frame)) {
+                log.debug("Cache frame for key {} is corrupted, evicting and refetching", cacheId);
+                evictFromCache(cacheId);
+                return invokeBackend(executionContext, cacheId, response, null, null);
+            }
+
+            try {
+                CachedResponse cached = CacheFrame.decodeFor(frame, acceptEncoding(executionContext));
+                long now = System.currentTimeMillis();
+                if (cached.metadata() != null && cached.metadata().isStale(now)) {
+                    return revalidate(executionContext, cacheId, response, new StaleEntry(frame, cached), now);
+                }
+                Request request = executionContext.request();
+                if (ConditionalRequestUtil.isNotModified(request.method(), request.headers(), cached)) {
+                    log.debug("An element has been found for key {}, the initial client already holds it", cacheId);
+                    return serveCachedResponse(response, ConditionalRequestUtil.notModified(cached));
+                }
+                if (request.method() == HttpMethod.HEAD) {
+                    log.debug("An element has been found for key {}, returning its headers to the initial client", cacheId);
+                    return serveCachedResponse(response, cached.withoutBody());
+                }
+                CachedResponse partial = RangeUtil.partial(request.method(), request.headers(), cached);
+                if (partial != null) {
+                    log.debug("An element has been found for key {}, returning the requested ranges to the initial client", cacheId);
+                    return serveCachedResponse(response, partial);
                 }
+                log.debug("An element has been found for key {}, returning the cached response to the initial client", cacheId);
+                return serveCachedResponse(response, cached);
+            } catch (Exception e) {
+                log.warn("Cannot decode cache frame for key {}, evicting and refetching", cacheId, e);
+                evictFromCache(cacheId);
+                return invokeBackend(executionContext, cacheId, response, null, null);
+            }
+        });
+    }
+
+    /**
+     * Look for the element in the near cache first, if enabled, then in the cache resource. Elements found in the
+     * cache resource are kept in the near cache until its local time to live or their own expiration.
+     */
+    private Single<Optional<Element>> lookup(String cacheId) {
+        if (nearCache == null || action == CacheAction.REFRESH) {
+            return Single.fromCompletionStage(cache.getBinaryAsync(cacheId).map(Optional::ofNullable).toCompletionStage());
+        }
+
+        byte[] nearFrame = nearCache.get(cacheId, System.currentTimeMillis());
+        if (nearFrame != null) {
+            log.debug("Element for key {} found in near cache", cacheId);
+            return Single.just(Optional.of(new CacheElement(cacheId, nearFrame)));
+        }
+
+        return Single.fromCompletionStage(cache.getBinaryAsync(cacheId).map(Optional::ofNullable).toCompletionStage()).doOnSuccess(
+            optElt -> optElt.ifPresent(elt -> putInNearCache(cacheId, CacheFrame.asFrame(elt.value())))
+        );
+    }
+
+    /**
+     * When the element found under the base key is a variant index, look for the variant matching the request.
+     */
+    private Single<Optional<Element>> lookupVariant(ExecutionContext executionContext, Optional<Element> optElt) {
+        byte[] value = optElt.map(elt -> CacheFrame.asFrame(elt.value())).orElse(null);
+        if (!VariantIndex.isIndex(value)) {
+            return Single.just(optElt);
+        }
+
+        try {
+            variantIndex = VariantIndex.decode(value);
+        } catch (IllegalArgumentException e) {
+            log.warn("Cannot decode variant index for key {}, evicting and refetching", baseKey, e);
+            evictFromCache(baseKey);
+            return Single.just(Optional.empty());
+        }
+        variant = variantIndex.variant(executionContext.request().headers());
+        variantKey = VariantIndex.key(baseKey, keySeparator(executionContext), variant);
+        log.debug("Responses for key {} vary on {}, looking for the variant {}", baseKey, variantIndex.headers(), variantKey);
+        return lookup(variantKey);
+    }
+
+    private void putInNearCache(String cacheId, byte[] frame) {
+        if (nearCache == null || frame == null || CacheFrame.isLegacyFormat(frame) || VariantIndex.isIndex(frame)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        FrameMetadata metadata = CacheFrame.decodeMetadata(frame);
+        long expiresAt = metadata != null && metadata.getHardTimeToLive() > 0
+            ? metadata.getStoredAt() + metadata.getHardTimeToLive() * 1000
+            : Long.MAX_VALUE;
+        nearCache.put(cacheId, frame, now, expiresAt);
+    }
+
+    /**
+     * @return the encodings accepted by the client, or {@code null} for a range request: ranges apply to the identity
+     * body, as the cached one may be stored compressed.
+     */
+    private static String acceptEncoding(ExecutionContext executionContext) {
+        Request request = executionContext.request();
+        if (RangeUtil.isRangeRequest(request.method(), request.headers())) {
+            return null;
+        }
+        List<String> values = request.headers().getAll(HttpHeaderNames.ACCEPT_ENCODING);
+        return values == null || values.isEmpty() ? null : String.join(",", values);
+    }
+
+    private static boolean isHead(ExecutionContext executionContext) {
+        return executionContext.request().method() == HttpMethod.HEAD;
+    }
+
+    private Completable serveCachedResponse(Response response, CachedResponse cached) {
+        response.status(cached.status());
+        cached.headers().forEach((key, values) -> values.forEach(value -> response.headers().add(key, value)));
+        Maybe<Buffer> cachedBody = cached.body() == null ? Maybe.empty() : Maybe.just(cached.body());
+        return response.onBody(body -> body.ignoreElement().andThen(cachedBody));
+    }
+
+    /**
+     * Replace whatever the backend put in the response (error status, headers and body) by the stale cached response.
+     */
+    private Completable serveStaleResponse(Response response, CachedResponse stale) {
+        clearHeaders(response);
+        return serveCachedResponse(response, stale);
+    }
+
+    private static void clearHeaders(Response response) {
+        Set<String> upstreamHeaders = new HashSet<>();
+        response.headers().forEach(entry -> upstreamHeaders.add(entry.getKey()));
+        upstreamHeaders.forEach(name -> response.headers().remove(name));
+    }
+
+    /**
+     * The entry is past its soft time to live. Within its stale-while-revalidate window, a single request per key
+     * refreshes the entry through the backend and concurrent requests are served the stale copy without waiting.
+     * Past that window, the entry is refetched and only kept as a fallback for its stale-if-error window.
+     * <p>
+     * In both cases, an entry carrying validators is refetched with a conditional request: if the backend answers
+     * {@code 304 Not Modified}, its time to live is extended without its body being sent again.
+     */
+    private Completable revalidate(ExecutionContext executionContext, String cacheId, Response response, StaleEntry staleEntry, long now) {
+        CachedResponse stale = staleEntry.response();
+        CachedResponse fallback = stale.metadata().isWithinStaleIfError(now) ? stale : null;
+        if (!stale.metadata().isWithinStaleWhileRevalidate(now)) {
+            log.debug("Element for key {} is stale, invoke backend with invoker {}", cacheId, this.delegateInvoker.getClass().getName());
+            return invokeBackend(executionContext, cacheId, response, fallback, staleEntry);
+        }
+        if (isHead(executionContext)) {
+            log.debug("Element for key {} is stale, returning its headers without refreshing it for a HEAD request", cacheId);
+            return serveCachedResponse(response, stale.withoutBody());
+        }
+
+        RequestCoalescer.Flight revalidation = RequestCoalescer.join(
+            REVALIDATION_PREFIX + cache.getName() + cacheId,
+            cachePolicyConfiguration.getCoalesceTimeoutMillis()
+        );
+        if (revalidation.isLeader()) {
+            log.debug("Element for key {} is stale, invoke backend to refresh it", cacheId);
+            return fetchAndStore(executionContext, cacheId, response, revalidation, fallback, staleEntry);
+        }
+
+        log.debug("Element for key {} is stale and already being refreshed, returning the stale response", cacheId);
+        return serveCachedResponse(response, stale);
+    }
+
+    /**
+     * Invoke the backend for a missing (or unusable) cache entry. When request coalescing is enabled, only the first
+     * concurrent miss for a given key reaches the backend; the others wait for its frame and are served from it, or
+     * fall back to the backend themselves if the leader fails, times out or gets a non-cacheable response.
+     * <p>
+     * When a stale {@code fallback} is given, it is served instead of the backend response if the backend call fails or
+     * answers with a server error (stale-if-error). When a {@code staleEntry} is given, it is validated with the
+     * backend rather than refetched.
+     * <p>
+     * A {@code HEAD} request is either forwarded to the backend without its response being put in cache, as it has no
+     * body to serve {@code GET} requests from, or turned into a {@code GET} request filling the cache when enabled. The
+     * request is switched back to {@code HEAD} once the backend answered, and the client still gets no body, as the
+     * server never sends one in response to a {@code HEAD} request.
+     */
+    private Completable invokeBackend(
+        ExecutionContext executionContext,
+        String cacheId,
+        Response response,
+        CachedResponse fallback,
+        StaleEntry staleEntry
+    ) {
+        if (isHead(executionContext)) {
+            if (!cachePolicyConfiguration.isFillOnHeadMiss()) {
+                log.debug("No usable element for key {}, forward the HEAD request to the backend without caching", cacheId);
+                return this.delegateInvoker.invoke(executionContext);
+            }
+            executionContext.request().method(HttpMethod.GET);
+            return fetchOrJoin(executionContext, cacheId, response, fallback, staleEntry).doFinally(() ->
+                executionContext.request().method(HttpMethod.HEAD)
+            );
+        }
+        return fetchOrJoin(executionContext, cacheId, response, fallback, staleEntry);
+    }
+
+    /**
+     * Fetch the response from the backend, or wait for the in-flight backend call of the same key when coalescing.
+     */
+    private Completable fetchOrJoin(
+        ExecutionContext executionContext,
+        String cacheId,
+        Response response,
+        CachedResponse fallback,
+        StaleEntry staleEntry
+    ) {
+        if (!cachePolicyConfiguration.isCoalesceRequests() || action == CacheAction.REFRESH) {
+            return fetchAndStore(executionContext, cacheId, response, null, fallback, staleEntry);
+        }
+
+        RequestCoalescer.Flight flight = RequestCoalescer.join(
+            cache.getName() + cacheId,
+            cachePolicyConfiguration.getCoalesceTimeoutMillis()
+        );
+        if (flight.isLeader()) {
+            return fetchAndStore(executionContext, cacheId, response, flight, fallback, staleEntry);
+        }
 
-                if (CacheFrame.isLegacyFormat(frame)) {
-                    // During a rolling upgrade from gravitee-policy-cache <= 4.0.0-alpha.2, the cache
-                    // may contain legacy JSON entries written by old gateway instances. Serve them as
-                    // a regular cache hit (no evict, no rewrite) to avoid thundering-herd refetches
-                    // against the backend. Entries naturally migrate to the binary format on TTL
-                    // expiry. See APIM-13628.
+        log.debug("A backend call is already in flight for key {}, waiting for its response", cacheId);
+        return Maybe.fromCompletionStage(flight.frame(context))
+            .map(Optional::of)
+            .onErrorReturnItem(Optional.empty())
+            .defaultIfEmpty(Optional.empty())
+            .flatMapCompletable(optFrame -> {
+                if (optFrame.isPresent()) {
                     try {
-                        CachedResponse cached = CacheFrame.decodeLegacy(frame);
-                        response.status(cached.status());
-                        cached.headers().forEach((key, values) -> values.forEach(value -> response.headers().add(key, value)));
-                        log.debug("Serving legacy-format cache entry for key {} (read-only; entry will not be rewritten)", cacheId);
-                        return response.onBody(body -> body.ignoreElement().andThen(Maybe.just(cached.body())));
+                        CachedResponse cached = CacheFrame.decodeFor(optFrame.get(), acceptEncoding(executionContext));
+                        log.debug("Serving response of the in-flight backend call for key {}", cacheId);
+                        return serveCachedResponse(response, cached);
                     } catch (Exception e) {
-                        log.warn("Cannot decode legacy cache entry for key {}, evicting and refetching", cacheId, e);
-                        evictFromCache(cacheId);
-                        return this.delegateInvoker.invoke(executionContext).andThen(
-                            storeInCacheEvaluation(executionContext, cacheId, response)
-                        );
+                        log.warn("Cannot decode in-flight cache frame for key {}, invoke backend", cacheId, e);
                     }
                 }
+                log.debug("In-flight backend call for key {} did not produce a cacheable response, invoke backend", cacheId);
+                return fetchAndStore(executionContext, cacheId, response, null, fallback, staleEntry);
+            });
+    }
 
-                try {
-                    CachedResponse cached = CacheFrame.decode(frame);
-                    response.status(cached.status());
-                    cached.headers().forEach((key, values) -> values.forEach(value -> response.headers().add(key, value)));
-                    log.debug("An element has been found for key {}, returning the cached response to the initial client", cacheId);
-                    return response.onBody(body -> body.ignoreElement().andThen(Maybe.just(cached.body())));
-                } catch (Exception e) {
-                    log.warn("Cannot decode cache frame for key {}, evicting and refetching", cacheId, e);
-                    evictFromCache(cacheId);
-                    return this.delegateInvoker.invoke(executionContext).andThen(
-                        storeInCacheEvaluation(executionContext, cacheId, response)
-                    );
-                }
+    private Completable fetchAndStore(
+        ExecutionContext executionContext,
+        String cacheId,
+        Response response,
+        RequestCoalescer.Flight flight,
+        CachedResponse fallback,
+        StaleEntry staleEntry
+    ) {
+        // Fill the cache with the whole body, ranges are served from it. A body that may exceed the size limit is not
+        // fetched in full only to be dropped: the backend answers the range itself.
+        if (cachePolicyConfiguration.getMaxBodySizeBytes() <= 0) {
+            final var removed = RangeUtil.removeRange(executionContext.request().method(), executionContext.request().headers());
+            if (removed != null) {
+                range = removed;
             }
+        }
+        StaleEntry validated = makeConditional(executionContext, staleEntry);
+        Completable fetch = this.delegateInvoker.invoke(executionContext).andThen(
+            storeInCacheEvaluation(executionContext, cacheId, response, flight, fallback, validated)
         );
+        if (flight != null) {
+            fetch = fetch
+                .doOnError(flight::fail)
+                .doOnDispose(() -> flight.fail(new CancellationException("Backend call cancelled for key " + cacheId)));
+        }
+        if (fallback != null) {
+            fetch = fetch.onErrorResumeNext(err -> {
+                log.warn("Backend call failed for key {}, returning the stale response", cacheId, err);
+                return serveStaleResponse(response, fallback);
+            });
+        }
+        return fetch;
+    }
+
+    /**
+     * @return the stale entry if the backend request has been made conditional to validate it, {@code null} otherwise.
+     */
+    private static StaleEntry makeConditional(ExecutionContext executionContext, StaleEntry staleEntry) {
+        if (staleEntry == null) {
+            return null;
+        }
+        Request request = executionContext.request();
+        return ConditionalRequestUtil.addValidators(request.method(), request.headers(), staleEntry.response().metadata())
+            ? staleEntry
+            : null;
     }
 
-    private Completable storeInCacheEvaluation(ExecutionContext executionContext, String cacheId, Response response) {
+    private Completable storeInCacheEvaluation(
+        ExecutionContext executionContext,
+        String cacheId,
+        Response response,
+        RequestCoalescer.Flight flight,
+        CachedResponse fallback,
+        StaleEntry validated
+    ) {
         return Completable.defer(() -> {
-            if (evaluate(executionContext, response, cachePolicyConfiguration.getResponseCondition())) {
+            if (validated != null && response.status() == HttpStatusCode.NOT_MODIFIED_304) {
+                return refresh(executionContext, cacheId, response, validated, flight);
+            }
+            if (!isStorable(response.headers())) {
+                log.debug("Response for key {} not put in cache because of its Cache-Control or Vary headers", cacheId);
+                CacheMetrics.report(executionContext, CacheMetrics.Reason.NOT_STORABLE);
+                release(flight);
+                return forwardResponse(response);
+            }
+            final var status = response.status();
+            final var cacheable = evaluate(executionContext, response, plan().responseCondition());
+            // A stale entry kept for stale-if-error is served instead of being replaced by a server error
+            final var servesStale = !cacheable && fallback != null && isServerError(status);
+            final var errorTimeToLive = cacheable || servesStale ? 0 : errorTimeToLive(executionContext, cacheId, status);
+            if (cacheable && plan().isErrorCachingEnabled()) {
+                errorKeyBudget().release(cacheId);
+            }
+            if (cacheable || errorTimeToLive > 0) {
                 final var httpHeaders = new HttpHeaders();
                 response.headers().forEach(entry -> httpHeaders.add(entry.getKey(), entry.getValue()));
-                final var status = response.status();
-                return response.onBody(body -> body.doOnSuccess(buffer -> storeInCache(cacheId, httpHeaders, status, buffer)));
+                final var metadata = errorTimeToLive > 0 ? errorMetadata(errorTimeToLive) : resolveMetadata(httpHeaders, status);
+                final var maxBodySize = cachePolicyConfiguration.getMaxBodySizeBytes();
+                final var contentLength = response.headers().getFirst(HttpHeaderNames.CONTENT_LENGTH);
+                if (BoundedBodyAccumulator.exceedsMaxSize(contentLength, maxBodySize)) {
+                    log.debug("Response for key {} not put in cache because its body exceeds {} bytes", cacheId, maxBodySize);
+                    CacheMetrics.report(executionContext, CacheMetrics.Reason.BODY_TOO_LARGE);
+                    releaseErrorKey(cacheId, errorTimeToLive);
+                    release(flight);
+                    return forwardResponse(response);
+                }
+                final var storageKey = storageKey(executionContext, cacheId, response.headers(), metadata);
+                if (storageKey == null) {
+                    log.debug("Response for key {} not put in cache because it already has too many variants", cacheId);
+                    CacheMetrics.report(executionContext, CacheMetrics.Reason.TOO_MANY_VARIANTS);
+                    releaseErrorKey(cacheId, errorTimeToLive);
+                    release(flight);
+                    return forwardResponse(response);
+                }
+                // Requests waiting for this key can't be served a variant they may not match
+                final var storageFlight = storageKey.equals(cacheId) ? flight : null;
+                if (storageFlight == null) {
+                    release(flight);
+                }
+                // Without a known length, a size limit is enforced while the body streams so it is never fully buffered.
+                if (cachePolicyConfiguration.isStreamResponseBody() || (maxBodySize > 0 && contentLength == null)) {
+                    final var errorKey = errorTimeToLive > 0 ? cacheId : null;
+                    return response.onChunks(chunks ->
+                        teeChunks(executionContext, storageKey, errorKey, httpHeaders, status, metadata, chunks, storageFlight)
+                    );
+                }
+                return response.onBody(body ->
+                    body
+                        .doOnSuccess(buffer -> storeInCache(storageKey, httpHeaders, status, metadata, buffer, storageFlight))
+                        .doFinally(() -> release(storageFlight))
+                );
             } else {
                 log.debug(
                     "Response for key {} not put in cache because of the status code {} or the condition",
                     cacheId,
                     response.status()
                 );
-                return response.onBody(body -> body);
+                release(flight);
+                if (servesStale) {
+                    log.debug("Returning the stale response for key {} instead of the backend status {}", cacheId, response.status());
+                    return serveStaleResponse(response, fallback);
+                }
+                return forwardResponse(response);
             }
         });
     }
 
+    /**
+     * Forward the backend response, which is not put in cache, to the client. When the range requested by the client
+     * was removed to fetch the whole body, it is answered from that body.
+     */
+    private Completable forwardResponse(Response response) {
+        if (range == null) {
+            return response.onBody(body -> body);
+        }
+        return response.onBody(body ->
+            body.map(buffer -> {
+                final var httpHeaders = new HttpHeaders();
+                response.headers().forEach(entry -> httpHeaders.add(entry.getKey(), entry.getValue()));
+                CachedResponse partial = RangeUtil.partial(
+                    HttpMethod.GET,
+                    range,
+                    new CachedResponse(response.status(), httpHeaders, buffer)
+                );
+                if (partial == null) {
+                    return buffer;
+                }
+                response.status(partial.status());
+                clearHeaders(response);
+                partial.headers().forEach((key, values) -> values.forEach(value -> response.headers().add(key, value)));
+                return partial.body() == null ? Buffer.buffer() : partial.body();
+            })
+        );
+    }
+
+    /**
+     * The backend confirmed that the stale entry is still valid. Its headers are updated with those of the {@code 304}
+     * response, which take precedence over the stored ones, its time to live is extended from them, and it is stored
+     * again without its body being encoded again. The client, which did not send the validators itself, is served the
+     * updated entry.
+     */
+    private Completable refresh(
+        ExecutionContext executionContext,
+        String cacheId,
+        Response response,
+        StaleEntry validated,
+        RequestCoalescer.Flight flight
+    ) {
+        CachedResponse stale = validated.response();
+        // The headers as stored, rather than as served for the encoding of the request
+        final var httpHeaders = ConditionalRequestUtil.updateHeaders(CacheFrame.decodeHeaders(validated.frame()), response.headers());
+        FrameMetadata metadata = resolveMetadata(httpHeaders, stale.status());
+        metadata.setGeneratedEtag(stale.metadata().getGeneratedEtag());
+        if (metadata.getGeneratedEtag() != null && metadata.getGeneratedEtag().equals(metadata.getEtag())) {
+            // The generated validator is not one to send to the backend
+            metadata.setEtag(null);
+        }
+        byte[] frame = CacheFrame.withMetadata(validated.frame(), metadata, httpHeaders);
+        if (isStorable(response.headers())) {
+            log.debug("Element for key {} is still valid, extending its time to live to {}s", cacheId, metadata.getSoftTimeToLive());
+            putInCache(cacheId, frame, metadata, flight);
+            if (variant != null) {
+                // The index must not expire before the variant it now keeps longer
+                recordVariant(variantIndex, variant, metadata);
+                putVariantIndex();
+            }
+            recordTags(cacheId, httpHeaders, metadata);
+        } else {
+            log.debug("Element for key {} is still valid but its Cache-Control directives forbid to store it again", cacheId);
+            CacheMetrics.report(executionContext, CacheMetrics.Reason.NOT_STORABLE);
+            release(flight);
+        }
+        return serveStaleResponse(response, CacheFrame.decodeFor(frame, acceptEncoding(executionContext)));
+    }
+
+    /**
+     * Stream the chunks to the client as they come from the backend while copying them for the cache. The copy stops as
+     * soon as the body exceeds the configured maximum size. The element is only stored once the whole body went through
+     * within that size; a body that fails or is cancelled mid-stream is never stored.
+     * <p>
+     * {@code errorKey} is the key counted against the error budget for an error response, {@code null} otherwise.
+     */
+    private Flowable<Buffer> teeChunks(
+        ExecutionContext executionContext,
+        String cacheId,
+        String errorKey,
+        HttpHeaders httpHeaders,
+        int status,
+        FrameMetadata metadata,
+        Flowable<Buffer> chunks,
+        RequestCoalescer.Flight flight
+    ) {
+        return Flowable.defer(() -> {
+            BoundedBodyAccumulator accumulator = new BoundedBodyAccumulator(cachePolicyConfiguration.getMaxBodySizeBytes());
+            return chunks
+                .doOnNext(accumulator::append)
+                .doOnComplete(() -> {
+                    if (accumulator.isOverflowed()) {
+                        log.debug(
+                            "Response for key {} not put in cache because its body exceeds {} bytes",
+                            cacheId,
+                            cachePolicyConfiguration.getMaxBodySizeBytes()
+                        );
+                        CacheMetrics.report(executionContext, CacheMetrics.Reason.BODY_TOO_LARGE);
+                        if (errorKey != null) {
+                            errorKeyBudget().release(errorKey);
+                        }
+                    } else {
+                        storeInCache(cacheId, httpHeaders, status, metadata, accumulator.body(), flight);
+                    }
+                })
+                .doFinally(() -> release(flight));
+        });
+    }
+
+    private static void release(RequestCoalescer.Flight flight) {
+        if (flight != null) {
+            flight.complete(null);
+        }
+    }
+
     private boolean evaluate(final ExecutionContext context, final Response response, final String condition) {
+        if (response.status() == HttpStatusCode.PARTIAL_CONTENT_206) {
+            // A range the backend answered itself can't be served as the whole body
+            return false;
+        }
+        CachePolicyPlan plan = plan();
+        if (plan.hasCacheableStatuses() && !plan.isCacheableStatus(response.status())) {
+            return false;
+        }
         if (condition != null && !condition.isEmpty()) {
             try {
                 context.getTemplateEngine().getTemplateContext().setVariable(UPSTREAM_RESPONSE, response);
@@ -169,7 +695,122 @@ public class CacheInvoker implements Invoker {
                 return false;
             }
         }
-        return is2xx(response);
+        return plan.hasCacheableStatuses() || is2xx(response);
+    }
+
+    /**
+     * @return {@code false} if the upstream response forbids a shared cache to store it ({@code no-store} or
+     * {@code private}), or can never be served from cache ({@code Vary: *}). Upstream headers are only honored when
+     * response cache headers are used.
+     */
+    boolean isStorable(io.gravitee.gateway.api.http.HttpHeaders headers) {
+        if (!cachePolicyConfiguration.isUseResponseCacheHeaders()) {
+            return true;
+        }
+        if (VariantIndex.varyHeaders(headers.getAll(HttpHeaderNames.VARY)).contains(VariantIndex.ANY)) {
+            return false;
+        }
+        CacheControl cacheControl = CacheControlUtil.parseCacheControl(headers.getFirst(HttpHeaderNames.CACHE_CONTROL));
+        return cacheControl == null || cacheControl.isStorable();
+    }
+
+    /**
+     * @return the key under which the response is put in cache. When the backend varies the response on request
+     * headers, it is the key of the variant matching the request, which is recorded in the variant index stored under
+     * the base key once the variant itself is stored. {@code null} if the base key already has too many variants.
+     * <p>
+     * The index is rewritten from the one found during the lookup, if any: concurrent writers may drop each other's
+     * variants from it, which are then fetched again from the backend.
+     */
+    private String storageKey(
+        ExecutionContext executionContext,
+        String cacheId,
+        io.gravitee.gateway.api.http.HttpHeaders responseHeaders,
+        FrameMetadata metadata
+    ) {
+        if (!cachePolicyConfiguration.isUseResponseCacheHeaders()) {
+            return cacheId;
+        }
+        List<String> vary = VariantIndex.varyHeaders(responseHeaders.getAll(HttpHeaderNames.VARY));
+        if (vary.isEmpty()) {
+            // The response no longer varies, it replaces the variant index if there is one
+            return variantIndex == null ? cacheId : baseKey;
+        }
+
+        VariantIndex index = variantIndex != null && variantIndex.headers().equals(vary) ? variantIndex : new VariantIndex(vary);
+        String responseVariant = index.variant(executionContext.request().headers());
+        if (!index.contains(responseVariant) && index.size() >= cachePolicyConfiguration.getMaxVariants()) {
+            return null;
+        }
+        recordVariant(index, responseVariant, metadata);
+        return VariantIndex.key(baseKey, keySeparator(executionContext), responseVariant);
+    }
+
+    /**
+     * Records the variant in the index, to be put in cache by {@link #putVariantIndex()} if the variant is new or
+     * outlives the index.
+     */
+    private void recordVariant(VariantIndex index, String variant, FrameMetadata metadata) {
+        boolean known = index.contains(variant);
+        long expiresAt = index.expiresAt();
+        index.add(variant, metadata.getStoredAt() + metadata.getHardTimeToLive() * 1000);
+        if (!known || index.expiresAt() > expiresAt) {
+            pendingVariantIndex = index;
+        }
+    }
+
+    /**
+     * Puts the variant index recorded for the response in cache, once its variant is stored: the index never points to
+     * a variant that is not stored yet.
+     */
+    private void putVariantIndex() {
+        VariantIndex index = pendingVariantIndex;
+        if (index == null) {
+            return;
+        }
+        pendingVariantIndex = null;
+        if (nearCache != null) {
+            nearCache.invalidate(baseKey);
+        }
+        putElement(baseKey, index.encode(), index.timeToLive(System.currentTimeMillis()));
+    }
+
+    /**
+     * @return how long (in seconds) the response is put in cache as an error, 0 if it is not an error to cache or if
+     * too many keys already hold an error.
+     */
+    private long errorTimeToLive(ExecutionContext executionContext, String cacheId, int status) {
+        long timeToLive = plan().errorTimeToLive(status);
+        if (timeToLive <= 0) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        if (!errorKeyBudget().tryAcquire(cacheId, now, now + timeToLive * 1000)) {
+            log.debug("Error response for key {} not put in cache because too many keys already hold an error", cacheId);
+            CacheMetrics.report(executionContext, CacheMetrics.Reason.ERROR_KEYS_EXHAUSTED);
+            return 0;
+        }
+        return timeToLive;
+    }
+
+    /**
+     * Stops counting the key against the error budget when its error response is finally not put in cache.
+     */
+    private void releaseErrorKey(String cacheId, long errorTimeToLive) {
+        if (errorTimeToLive > 0) {
+            errorKeyBudget().release(cacheId);
+        }
+    }
+
+    /**
+     * Errors are never served stale: they expire from the cache resource as soon as their time to live has elapsed.
+     */
+    private static FrameMetadata errorMetadata(long timeToLive) {
+        return new FrameMetadata(System.currentTimeMillis(), timeToLive, timeToLive);
+    }
+
+    private static boolean isServerError(int status) {
+        return status >= HttpStatusCode.INTERNAL_SERVER_ERROR_500;
     }
 
     private boolean is2xx(final Response response) {
@@ -177,6 +818,9 @@ public class CacheInvoker implements Invoker {
     }
 
     private void evictFromCache(String cacheId) {
+        if (nearCache != null) {
+            nearCache.invalidate(cacheId);
+        }
         Completable.fromCompletionStage(cache.evictAsync(cacheId).toCompletionStage())
             .doOnComplete(() -> log.debug("Element {} evicted from the cache {}", cacheId, cache.getName()))
             .onErrorResumeNext(err -> {
@@ -186,10 +830,52 @@ public class CacheInvoker implements Invoker {
             .subscribe();
     }
 
-    private void storeInCache(String cacheId, HttpHeaders httpHeaders, int status, Buffer buffer) {
-        byte[] frame = CacheFrame.encode(new CachedResponse(status, httpHeaders, buffer));
-        CacheElement element = new CacheElement(cacheId, frame);
-        element.setTimeToLive((int) resolveTimeToLive(httpHeaders));
+    private void storeInCache(
+        String cacheId,
+        HttpHeaders httpHeaders,
+        int status,
+        FrameMetadata metadata,
+        Buffer buffer,
+        RequestCoalescer.Flight flight
+    ) {
+        ConditionalRequestUtil.ensureEntityTag(status, httpHeaders, metadata, buffer);
+        byte[] frame = CacheFrame.encode(
+            new CachedResponse(status, httpHeaders, buffer, metadata),
+            cachePolicyConfiguration.getCompression(),
+            cachePolicyConfiguration.getCompressionLevel(),
+            cachePolicyConfiguration.getCompressionMinSizeBytes()
+        );
+        putInCache(cacheId, frame, metadata, flight);
+        putVariantIndex();
+        recordTags(cacheId, httpHeaders, metadata);
+    }
+
+    /**
+     * Adds the element to the index of each tag listed by the backend in the configured header.
+     */
+    private void recordTags(String cacheId, HttpHeaders httpHeaders, FrameMetadata metadata) {
+        if (tagPrefix == null) {
+            return;
+        }
+        List<String> tags = TagIndex.parseTags(httpHeaders.get(cachePolicyConfiguration.getTagHeader()));
+        if (!tags.isEmpty()) {
+            log.debug("Element {} is tagged with {}", cacheId, tags);
+            List<String> tagKeys = tags.stream().map(tag -> TagIndex.key(tagPrefix, tag)).toList();
+            TagInvalidator.record(cache, tagKeys, cacheId, metadata.getHardTimeToLive());
+        }
+    }
+
+    private void putInCache(String cacheId, byte[] frame, FrameMetadata metadata, RequestCoalescer.Flight flight) {
+        if (flight != null) {
+            flight.complete(frame);
+        }
+        putInNearCache(cacheId, frame);
+        putElement(cacheId, frame, metadata.getHardTimeToLive());
+    }
+
+    private void putElement(String cacheId, byte[] value, long timeToLive) {
+        CacheElement element = new CacheElement(cacheId, value);
+        element.setTimeToLive(timeToLive);
 
         Completable.fromCompletionStage(cache.putBinaryAsync(element).toCompletionStage())
             .doOnComplete(() -> log.debug("Element {} stored into the cache {}", cacheId, cache.getName()))
@@ -201,69 +887,133 @@ public class CacheInvoker implements Invoker {
     }
 
     /**
-     * Generate a unique identifier for the cache key.
+     * Generate a fixed-length identifier for the cache key: the API, followed by a 128-bit hash of the scope, path,
+     * parameters, custom key and key headers.
      */
     String hash(HttpExecutionContext executionContext) {
-        StringBuilder sb = new StringBuilder();
-        String cacheName = cachePolicyConfiguration.getCacheName();
-        CacheResource<?> cacheResource = executionContext.getComponent(ResourceManager.class).getResource(cacheName, CacheResource.class);
-        String keySeparator = cacheResource.keySeparator();
-
-        switch (cachePolicyConfiguration.getScope()) {
-            case APPLICATION:
-                sb.append((String) executionContext.getAttribute(ContextAttributes.ATTR_API)).append(keySeparator);
-                sb.append((String) executionContext.getAttribute(ContextAttributes.ATTR_APPLICATION)).append(keySeparator);
-                break;
-            case API:
-                sb.append((String) executionContext.getAttribute(ContextAttributes.ATTR_API)).append(keySeparator);
-                break;
-        }
-
-        sb.append(executionContext.request().path().hashCode()).append(keySeparator);
-        sb.append(buildParametersKeyComponent(executionContext.request())).append(keySeparator);
-
-        String key = cachePolicyConfiguration.getKey();
-        if (key != null && !key.isEmpty()) {
-            key = executionContext.getTemplateEngine().convert(key);
-            sb.append(key);
-        } else {
-            sb.deleteCharAt(sb.length() - 1);
+        CachePolicyPlan plan = plan();
+        String keySeparator = keySeparator(executionContext);
+        String api = (String) executionContext.getAttribute(ContextAttributes.ATTR_API);
+
+        CacheKeyBuilder builder = CacheKeyBuilder.start().append(plan.scope().name()).append(api);
+        if (plan.scope() == CacheScope.APPLICATION) {
+            builder.append((String) executionContext.getAttribute(ContextAttributes.ATTR_APPLICATION));
+        }
+        CacheKeyRules keyRules = plan.keyRules();
+        builder
+            .append(keyRules.normalizePath(executionContext.request().path()))
+            .appendParameters(executionContext.request().parameters(), keyRules.filtersParameters() ? keyRules::includesParameter : null)
+            .append(plan.key().render(executionContext::getTemplateEngine));
+        for (String header : keyRules.headers()) {
+            builder.append(header).appendValues(executionContext.request().headers().getAll(header));
         }
 
-        return sb.toString();
+        return api + keySeparator + builder.build();
     }
 
-    private int buildParametersKeyComponent(HttpRequest request) {
-        return request
-            .parameters()
-            .entrySet()
-            .stream()
-            .sorted(Map.Entry.comparingByKey())
-            .peek(entry -> Collections.sort(entry.getValue()))
-            .map(Map.Entry::toString)
-            .collect(Collectors.joining())
-            .hashCode();
+    private String keySeparator(HttpExecutionContext executionContext) {
+        CachePolicyPlan plan = plan();
+        return plan.keySeparator(() ->
+            executionContext.getComponent(ResourceManager.class).getResource(plan.cacheName(), CacheResource.class)
+        );
     }
 
     public long resolveTimeToLive(HttpHeaders httpHeaders) {
+        return resolveTimeToLive(httpHeaders, 0);
+    }
+
+    /**
+     * Resolve the time to live of a response, bounded by the one configured for its status, or by the policy one.
+     */
+    public long resolveTimeToLive(HttpHeaders httpHeaders, int status) {
+        long maxTimeToLive = plan().timeToLive(status, cachePolicyConfiguration.getTimeToLiveSeconds());
         long timeToLive = -1;
         if (cachePolicyConfiguration.isUseResponseCacheHeaders()) {
             timeToLive = timeToLiveFromResponse(httpHeaders);
         }
 
-        if (timeToLive == -1 || cachePolicyConfiguration.getTimeToLiveSeconds() < timeToLive) {
-            timeToLive = cachePolicyConfiguration.getTimeToLiveSeconds();
+        if (timeToLive == -1 || maxTimeToLive < timeToLive) {
+            timeToLive = maxTimeToLive;
         }
 
         return timeToLive;
     }
 
+    /**
+     * Resolve the frame metadata of a response: its soft time to live, its stale windows and the resulting hard time
+     * to live of the entry in the cache resource.
+     * <p>
+     * A {@code no-cache} response is stored but stale right away, so that it is validated with the backend before
+     * being served; it is kept for its time to live, and never served stale while being refreshed.
+     */
+    FrameMetadata resolveMetadata(HttpHeaders httpHeaders, int status) {
+        long timeToLive = resolveTimeToLive(httpHeaders, status);
+        long staleWhileRevalidate = resolveStaleWhileRevalidate(httpHeaders);
+        long staleIfError = resolveStaleIfError(httpHeaders);
+
+        FrameMetadata metadata;
+        if (isNoCache(httpHeaders)) {
+            staleWhileRevalidate = 0;
+            metadata = new FrameMetadata(System.currentTimeMillis(), 0, timeToLive + staleIfError);
+        } else {
+            metadata = new FrameMetadata(System.currentTimeMillis(), timeToLive, timeToLive + Math.max(staleWhileRevalidate, staleIfError));
+        }
+        metadata.setStaleWhileRevalidate(staleWhileRevalidate);
+        metadata.setStaleIfError(staleIfError);
+        metadata.setEtag(Optional.ofNullable(httpHeaders.get(HttpHeaderNames.ETAG)).map(list -> list.get(0)).orElse(null));
+        metadata.setLastModified(
+            ConditionalRequestUtil.lastModified(
+                Optional.ofNullable(httpHeaders.get(HttpHeaderNames.LAST_MODIFIED)).map(list -> list.get(0)).orElse(null)
+            )
+        );
+        return metadata;
+    }
+
+    /**
+     * Resolve how long (in seconds) a stale entry may still be served while it is being refreshed. When response cache
+     * headers are used, the upstream {@code stale-while-revalidate} directive may shorten the configured value, but never
+     * extend it.
+     */
+    public long resolveStaleWhileRevalidate(HttpHeaders httpHeaders) {
+        return resolveStaleWindow(
+            httpHeaders,
+            CacheControl::getStaleWhileRevalidate,
+            cachePolicyConfiguration.getStaleWhileRevalidateSeconds()
+        );
+    }
+
+    /**
+     * Resolve how long (in seconds) a stale entry may still be served when the backend fails to refresh it. When
+     * response cache headers are used, the upstream {@code stale-if-error} directive may shorten the configured value,
+     * but never extend it: a backend cannot keep its entries for longer than the operator allows.
+     */
+    public long resolveStaleIfError(HttpHeaders httpHeaders) {
+        return resolveStaleWindow(httpHeaders, CacheControl::getStaleIfError, cachePolicyConfiguration.getStaleIfErrorSeconds());
+    }
+
+    private boolean isNoCache(HttpHeaders httpHeaders) {
+        if (!cachePolicyConfiguration.isUseResponseCacheHeaders()) {
+            return false;
+        }
+        CacheControl cacheControl = cacheControlFromResponse(httpHeaders);
+        return cacheControl != null && cacheControl.isNoCache();
+    }
+
+    private long resolveStaleWindow(HttpHeaders httpHeaders, ToLongFunction<CacheControl> directive, long configured) {
+        if (cachePolicyConfiguration.isUseResponseCacheHeaders()) {
+            CacheControl cacheControl = cacheControlFromResponse(httpHeaders);
+            if (cacheControl != null && directive.applyAsLong(cacheControl) != -1) {
+                // The configured window is an upper bound, 0 disabling the window whatever the backend says
+                return Math.min(directive.applyAsLong(cacheControl), Math.max(configured, 0));
+            }
+        }
+
+        return Math.max(configured, 0);
+    }
+
     public long timeToLiveFromResponse(HttpHeaders httpHeaders) {
         long timeToLive = -1;
-        String cacheControlHeader = Optional.ofNullable(httpHeaders.get(HttpHeaderNames.CACHE_CONTROL))
-            .map(list -> list.get(0))
-            .orElse(null);
-        CacheControl cacheControl = CacheControlUtil.parseCacheControl(cacheControlHeader);
+        CacheControl cacheControl = cacheControlFromResponse(httpHeaders);
 
         if (cacheControl != null && cacheControl.getSMaxAge() != -1) {
             timeToLive = cacheControl.getSMaxAge();
@@ -282,4 +1032,11 @@ public class CacheInvoker implements Invoker {
 
         return timeToLive;
     }
+
+    private CacheControl cacheControlFromResponse(HttpHeaders httpHeaders) {
+        String cacheControlHeader = Optional.ofNullable(httpHeaders.get(HttpHeaderNames.CACHE_CONTROL))
+            .map(list -> list.get(0))
+            .orElse(null);
+        return CacheControlUtil.parseCacheControl(cacheControlHeader);
+    }
 }
@@ -0,0 +1,208 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.key;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Builds fixed-length cache keys by hashing the key components with the 128-bit MurmurHash3, instead of joining them
+ * into a string. Each component is written length-prefixed into a per-thread buffer, so that distinct sequences of
+ * components never produce the same input, and no intermediate string is allocated per request.
+ * <p>
+ * A builder is obtained with {@link #start()} and must be fully used (up to {@link #build()}) before the same thread
+ * starts another key.
+ */
+public final class CacheKeyBuilder {
+
+    private static final ThreadLocal<CacheKeyBuilder> BUILDERS = ThreadLocal.withInitial(CacheKeyBuilder::new);
+
+    private static final int INITIAL_CAPACITY = 256;
+    // Buffers grown for unusually large keys are not kept around
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+    private final long[] pairHash = new long[2];
+
+    private CacheKeyBuilder() {}
+
+    public static CacheKeyBuilder start() {
+        CacheKeyBuilder builder = BUILDERS.get();
+        builder.length = 0;
+        return builder;
+    }
+
+    /**
+     * Appends a component. A {@code null} component is distinct from an empty one.
+     */
+    public CacheKeyBuilder append(CharSequence value) {
+        if (value == null) {
+            return append(-1);
+        }
+
+        int lengthPos = length;
+        ensureCapacity(4 + value.length() * 3);
+        length += 4;
+        int start = length;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[length++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[length++] = (byte) (0xc0 | (c >> 6));
+                buffer[length++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[length++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[length++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else {
+                buffer[length++] = (byte) (0xe0 | (c >> 12));
+                buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[length++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        writeInt(lengthPos, length - start);
+        return this;
+    }
+
+    /**
+     * Appends request parameters so that the key does not depend on the order in which the client sent them, without
+     * sorting nor modifying them: each name and value pair is hashed on its own and the pair hashes are summed, which
+     * is order-independent while still telling apart repeated pairs.
+     */
+    public CacheKeyBuilder appendParameters(Map<String, List<String>> parameters) {
+        return appendParameters(parameters, null);
+    }
+
+    /**
+     * Appends the request parameters accepted by {@code filter}, or all of them if it is {@code null}. Leaving out every
+     * parameter gives the same key as a request without parameters.
+     */
+    public CacheKeyBuilder appendParameters(Map<String, List<String>> parameters, Predicate<String> filter) {
+        if (parameters == null || parameters.isEmpty()) {
+            return append(0);
+        }
+
+        int mark = length;
+        int pairs = 0;
+        long digest1 = 0;
+        long digest2 = 0;
+        for (Map.Entry<String, List<String>> entry : parameters.entrySet()) {
+            if (filter != null && !filter.test(entry.getKey())) {
+                continue;
+            }
+            List<String> values = entry.getValue();
+            if (values == null || values.isEmpty()) {
+                hashPair(mark, entry.getKey(), null);
+                digest1 += pairHash[0];
+                digest2 += pairHash[1];
+                pairs++;
+                continue;
+            }
+            for (String value : values) {
+                hashPair(mark, entry.getKey(), value);
+                digest1 += pairHash[0];
+                digest2 += pairHash[1];
+                pairs++;
+            }
+        }
+        length = mark;
+
+        if (pairs == 0) {
+            return append(0);
+        }
+        return append(pairs).append(digest1).append(digest2);
+    }
+
+    /**
+     * Hashes a pair into {@link #pairHash}, using the end of the buffer as scratch space.
+     */
+    private void hashPair(int mark, String name, String value) {
+        length = mark;
+        append(name).append(value);
+        Murmur3.hash128(buffer, mark, length - mark, pairHash);
+    }
+
+    /**
+     * Appends a multi-valued component, such as the values of a request header. Unlike parameters, the order of the
+     * values is significant.
+     */
+    public CacheKeyBuilder appendValues(List<String> values) {
+        if (values == null) {
+            return append(-1);
+        }
+        append(values.size());
+        for (String value : values) {
+            append(value);
+        }
+        return this;
+    }
+
+    public CacheKeyBuilder append(long value) {
+        append((int) (value >>> 32));
+        return append((int) value);
+    }
+
+    public CacheKeyBuilder append(int value) {
+        ensureCapacity(4);
+        writeInt(length, value);
+        length += 4;
+        return this;
+    }
+
+    /**
+     * @return the hash of the appended components, as 32 lowercase hexadecimal characters.
+     */
+    public String build() {
+        long[] hash = Murmur3.hash128(buffer, 0, length);
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+        length = 0;
+
+        char[] hex = new char[32];
+        writeHex(hex, 0, hash[0]);
+        writeHex(hex, 16, hash[1]);
+        return new String(hex);
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, length + additional)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+
+    private void writeInt(int index, int value) {
+        buffer[index] = (byte) (value >>> 24);
+        buffer[index + 1] = (byte) (value >>> 16);
+        buffer[index + 2] = (byte) (value >>> 8);
+        buffer[index + 3] = (byte) value;
+    }
+
+    private static void writeHex(char[] hex, int offset, long value) {
+        for (int i = 15; i >= 0; i--) {
+            hex[offset + i] = HEX[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+}
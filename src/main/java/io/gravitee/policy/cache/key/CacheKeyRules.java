@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.key;
+
+import io.gravitee.policy.cache.configuration.CachePolicyConfiguration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Declarative rules deciding which parts of the request make up the cache key: the query parameters to keep, the
+ * request headers to add, and how the path is normalized.
+ * <p>
+ * Parameter patterns are either an exact name, or a prefix followed by {@code *} (e.g. {@code utm_*}).
+ */
+public final class CacheKeyRules {
+
+    private static final String[] NO_PREFIXES = new String[0];
+
+    private final Set<String> includedNames;
+    private final String[] includedPrefixes;
+    private final Set<String> excludedNames;
+    private final String[] excludedPrefixes;
+    private final boolean filtersParameters;
+    private final List<String> headers;
+    private final boolean ignorePathCase;
+    private final boolean ignoreTrailingSlash;
+    private final boolean normalizePercentEncoding;
+
+    CacheKeyRules(
+        List<String> includedParameters,
+        List<String> excludedParameters,
+        List<String> headers,
+        boolean ignorePathCase,
+        boolean ignoreTrailingSlash,
+        boolean normalizePercentEncoding
+    ) {
+        this.includedNames = names(includedParameters);
+        this.includedPrefixes = prefixes(includedParameters);
+        this.excludedNames = names(excludedParameters);
+        this.excludedPrefixes = prefixes(excludedParameters);
+        this.filtersParameters =
+            !includedNames.isEmpty() || includedPrefixes.length > 0 || !excludedNames.isEmpty() || excludedPrefixes.length > 0;
+        this.headers = headerNames(headers);
+        this.ignorePathCase = ignorePathCase;
+        this.ignoreTrailingSlash = ignoreTrailingSlash;
+        this.normalizePercentEncoding = normalizePercentEncoding;
+    }
+
+    public static CacheKeyRules from(CachePolicyConfiguration configuration) {
+        return new CacheKeyRules(
+            configuration.getKeyIncludeParams(),
+            configuration.getKeyExcludeParams(),
+            configuration.getKeyHeaders(),
+            configuration.isKeyIgnorePathCase(),
+            configuration.isKeyIgnoreTrailingSlash(),
+            configuration.isKeyNormalizePercentEncoding()
+        );
+    }
+
+    /**
+     * @return {@code false} if every query parameter is part of the key.
+     */
+    public boolean filtersParameters() {
+        return filtersParameters;
+    }
+
+    public boolean includesParameter(String name) {
+        if ((!includedNames.isEmpty() || includedPrefixes.length > 0) && !matches(name, includedNames, includedPrefixes)) {
+            return false;
+        }
+        return !matches(name, excludedNames, excludedPrefixes);
+    }
+
+    /**
+     * @return the lower-cased names of the request headers added to the key, in their configured order.
+     */
+    public List<String> headers() {
+        return headers;
+    }
+
+    /**
+     * Normalizes the request path according to the rules. Percent-encoding normalization decodes the escaped unreserved
+     * characters and upper-cases the hexadecimal digits of the other escapes (RFC 3986, section 6.2.2), so that it never
+     * changes which resource the path designates.
+     */
+    public String normalizePath(String path) {
+        if (path == null || !(ignorePathCase || ignoreTrailingSlash || normalizePercentEncoding)) {
+            return path;
+        }
+
+        StringBuilder normalized = new StringBuilder(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (normalizePercentEncoding && c == '%' && i + 2 < path.length()) {
+                int high = Character.digit(path.charAt(i + 1), 16);
+                int low = Character.digit(path.charAt(i + 2), 16);
+                if (high >= 0 && low >= 0) {
+                    i += 2;
+                    char decoded = (char) ((high << 4) | low);
+                    if (!isUnreserved(decoded)) {
+                        normalized
+                            .append('%')
+                            .append(Character.toUpperCase(path.charAt(i - 1)))
+                            .append(Character.toUpperCase(path.charAt(i)));
+                        continue;
+                    }
+                    c = decoded;
+                }
+            }
+            normalized.append(ignorePathCase ? Character.toLowerCase(c) : c);
+        }
+
+        if (ignoreTrailingSlash) {
+            int length = normalized.length();
+            while (length > 1 && normalized.charAt(length - 1) == '/') {
+                length--;
+            }
+            normalized.setLength(length);
+        }
+        return normalized.toString();
+    }
+
+    private static boolean matches(String name, Set<String> names, String[] prefixes) {
+        if (names.contains(name)) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (
+            (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_' || c == '~'
+        );
+    }
+
+    private static Set<String> names(List<String> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> names = new HashSet<>();
+        for (String pattern : patterns) {
+            if (pattern != null && !pattern.isEmpty() && !pattern.endsWith("*")) {
+                names.add(pattern);
+            }
+        }
+        return names;
+    }
+
+    private static String[] prefixes(List<String> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            return NO_PREFIXES;
+        }
+        return patterns
+            .stream()
+            .filter(pattern -> pattern != null && pattern.endsWith("*"))
+            .map(pattern -> pattern.substring(0, pattern.length() - 1))
+            .toArray(String[]::new);
+    }
+
+    private static List<String> headerNames(List<String> headers) {
+        if (headers == null || headers.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>(headers.size());
+        for (String header : headers) {
+            if (header != null && !header.isBlank()) {
+                names.add(header.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return Collections.unmodifiableList(names);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.key;
+
+import io.gravitee.el.TemplateEngine;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The custom {@code key} of the configuration, split once into literal segments and Expression Language segments
+ * ({@code {...}}), so that only the expressions are handed to the template engine on each request, and a key without
+ * any expression never is.
+ */
+public final class KeyTemplate {
+
+    private static final KeyTemplate NONE = new KeyTemplate(new String[0], new boolean[0]);
+
+    private final String[] segments;
+    private final boolean[] expressions;
+    private final boolean dynamic;
+
+    private KeyTemplate(String[] segments, boolean[] expressions) {
+        this.segments = segments;
+        this.expressions = expressions;
+        boolean anyExpression = false;
+        for (boolean expression : expressions) {
+            anyExpression |= expression;
+        }
+        this.dynamic = anyExpression;
+    }
+
+    public static KeyTemplate parse(String key) {
+        if (key == null || key.isEmpty()) {
+            return NONE;
+        }
+
+        List<String> segments = new ArrayList<>();
+        List<Boolean> expressions = new ArrayList<>();
+        int literalStart = 0;
+        int i = 0;
+        while (i < key.length()) {
+            if (key.charAt(i) != '{') {
+                i++;
+                continue;
+            }
+            int end = expressionEnd(key, i);
+            if (end < 0) {
+                // Unbalanced expression: let the template engine deal with the whole key
+                return new KeyTemplate(new String[] { key }, new boolean[] { true });
+            }
+            if (i > literalStart) {
+                segments.add(key.substring(literalStart, i));
+                expressions.add(false);
+            }
+            segments.add(key.substring(i, end + 1));
+            expressions.add(true);
+            i = end + 1;
+            literalStart = i;
+        }
+        if (literalStart < key.length()) {
+            segments.add(key.substring(literalStart));
+            expressions.add(false);
+        }
+
+        boolean[] flags = new boolean[expressions.size()];
+        for (int j = 0; j < flags.length; j++) {
+            flags[j] = expressions.get(j);
+        }
+        return new KeyTemplate(segments.toArray(new String[0]), flags);
+    }
+
+    public boolean isDynamic() {
+        return dynamic;
+    }
+
+    /**
+     * @return the key for the current request, or {@code null} if no key is configured.
+     */
+    public String render(Supplier<TemplateEngine> templateEngineSupplier) {
+        if (segments.length == 0) {
+            return null;
+        }
+        if (!dynamic) {
+            return segments[0];
+        }
+
+        TemplateEngine templateEngine = templateEngineSupplier.get();
+        if (segments.length == 1) {
+            return templateEngine.convert(segments[0]);
+        }
+
+        StringBuilder rendered = new StringBuilder();
+        for (int i = 0; i < segments.length; i++) {
+            rendered.append(expressions[i] ? templateEngine.convert(segments[i]) : segments[i]);
+        }
+        return rendered.toString();
+    }
+
+    /**
+     * @return the index of the brace closing the expression opened at {@code start}, skipping nested braces and quoted
+     * strings, or -1 if it is never closed.
+     */
+    private static int expressionEnd(String key, int start) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = start; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.metrics;
+
+/**
+ * Reports why the response of a request was not put in cache, as the {@value #ATTR_NOT_CACHED} attribute of its
+ * execution context. Policies running after the cache policy and reporters can read it, e.g. to turn it into a custom
+ * metric with the Assign Metrics policy: {@code {#context.attributes['cache.not-cached']}}.
+ */
+public final class CacheMetrics {
+
+    public static final String ATTR_NOT_CACHED = "cache.not-cached";
+
+    public enum Reason {
+        /**
+         * The body of the response exceeds the maximum cacheable size.
+         */
+        BODY_TOO_LARGE,
+        /**
+         * The response is an error, and too many distinct keys already hold an error.
+         */
+        ERROR_KEYS_EXHAUSTED,
+        /**
+         * The upstream {@code Cache-Control} forbids a shared cache to store the response.
+         */
+        NOT_STORABLE,
+        /**
+         * The backend already varies too many responses of the same key.
+         */
+        TOO_MANY_VARIANTS,
+    }
+
+    private CacheMetrics() {}
+
+    public static void report(io.gravitee.gateway.reactive.api.context.ExecutionContext executionContext, Reason reason) {
+        executionContext.setAttribute(ATTR_NOT_CACHED, reason.name());
+    }
+
+    public static void report(io.gravitee.gateway.api.ExecutionContext executionContext, Reason reason) {
+        executionContext.setAttribute(ATTR_NOT_CACHED, reason.name());
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.near;
+
+import io.gravitee.policy.cache.configuration.CachePolicyConfiguration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Bounded in-heap cache of encoded frames sitting in front of the cache resource, so that hits on very hot keys do not
+ * need a round trip to the (usually remote) cache.
+ * <p>
+ * The cache is bounded by a byte budget and follows a W-TinyLFU layout: new entries go to a small LRU window, and
+ * entries leaving the window are only admitted into the main LRU region if they have been accessed more often than the
+ * entry they would evict, as estimated by a {@link FrequencySketch}. This keeps one-hit wonders from flushing hot keys.
+ * <p>
+ * One near cache is shared by all the requests going through the same policy configuration on a gateway node, so it is
+ * split into segments, selected by the hash of the key, each with its own share of the budget, its own regions and
+ * sketch, and its own lock: concurrent hits on different keys from different event loops rarely contend.
+ * <p>
+ * Variant indexes are never kept in the near cache: a key whose responses vary ({@code Vary}) is always looked up in
+ * the cache resource first to find its variants, so only the variant itself can then be served from memory.
+ */
+public class NearCache {
+
+    private static final Map<CachePolicyConfiguration, NearCache> INSTANCES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // Average entry size used to size the frequency sketch
+    private static final int AVERAGE_ENTRY_SIZE = 1024;
+
+    // A segment gets at least this budget, so that a small near cache is not split into segments too small for its entries
+    private static final long MIN_SEGMENT_WEIGHT = 1024 * 1024;
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    public NearCache(long maxWeight, long timeToLiveSeconds) {
+        int count = (int) Math.min(MAX_SEGMENTS, Math.max(1, maxWeight / MIN_SEGMENT_WEIGHT));
+        count = Integer.highestOneBit(count);
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(maxWeight / count, timeToLiveSeconds * 1000);
+        }
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(count);
+    }
+
+    public static NearCache of(CachePolicyConfiguration configuration) {
+        return INSTANCES.computeIfAbsent(configuration, conf ->
+            new NearCache(conf.getNearCacheMaxSizeBytes(), conf.getNearCacheTimeToLiveSeconds())
+        );
+    }
+
+    /**
+     * Returns the frame stored for the key, or {@code null} if there is none or if it has expired.
+     */
+    public byte[] get(String key, long now) {
+        return segmentFor(key).get(key, now);
+    }
+
+    /**
+     * Stores the frame for the key. The entry expires after the local time to live of the near cache, or at
+     * {@code expiresAt} (the expiration of the entry in the cache resource) if it comes first.
+     */
+    public void put(String key, byte[] frame, long now, long expiresAt) {
+        segmentFor(key).put(key, frame, now, expiresAt);
+    }
+
+    public void invalidate(String key) {
+        segmentFor(key).invalidate(key);
+    }
+
+    long weight() {
+        long weight = 0;
+        for (Segment segment : segments) {
+            weight += segment.weight();
+        }
+        return weight;
+    }
+
+    int segments() {
+        return segments.length;
+    }
+
+    private Segment segmentFor(String key) {
+        if (segments.length == 1) {
+            return segments[0];
+        }
+        // The high bits of the spread hash, as the sketch of the segment uses the low ones
+        return segments[(key.hashCode() * 0x9e3779b9) >>> segmentShift];
+    }
+
+    private static final class Segment {
+
+        private final long windowMaxWeight;
+        private final long mainMaxWeight;
+        private final long timeToLiveMillis;
+        private final FrequencySketch sketch;
+
+        private final LinkedHashMap<String, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<String, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+        private long windowWeight;
+        private long mainWeight;
+
+        Segment(long maxWeight, long timeToLiveMillis) {
+            this.windowMaxWeight = Math.max(maxWeight / 100, 1);
+            this.mainMaxWeight = Math.max(maxWeight - windowMaxWeight, 0);
+            this.timeToLiveMillis = timeToLiveMillis;
+            this.sketch = new FrequencySketch((int) Math.min(maxWeight / AVERAGE_ENTRY_SIZE, Integer.MAX_VALUE));
+        }
+
+        synchronized byte[] get(String key, long now) {
+            sketch.increment(key.hashCode());
+
+            Entry entry = window.get(key);
+            if (entry == null) {
+                entry = main.get(key);
+            }
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt() <= now) {
+                remove(key);
+                return null;
+            }
+            return entry.frame();
+        }
+
+        synchronized void put(String key, byte[] frame, long now, long expiresAt) {
+            long entryExpiresAt = Math.min(now + timeToLiveMillis, expiresAt);
+            if (entryExpiresAt <= now) {
+                return;
+            }
+
+            remove(key);
+            Entry entry = new Entry(frame, entryExpiresAt, weigh(key, frame));
+            if (entry.weight() > windowMaxWeight) {
+                admit(key, entry, now);
+                return;
+            }
+
+            window.put(key, entry);
+            windowWeight += entry.weight();
+            while (windowWeight > windowMaxWeight) {
+                Iterator<Map.Entry<String, Entry>> it = window.entrySet().iterator();
+                Map.Entry<String, Entry> candidate = it.next();
+                it.remove();
+                windowWeight -= candidate.getValue().weight();
+                admit(candidate.getKey(), candidate.getValue(), now);
+            }
+        }
+
+        synchronized void invalidate(String key) {
+            remove(key);
+        }
+
+        synchronized long weight() {
+            return windowWeight + mainWeight;
+        }
+
+        /**
+         * Moves a candidate into the main region, evicting its least recently used entries as long as the candidate is
+         * more frequently accessed than them. Expired entries are always evicted.
+         */
+        private void admit(String key, Entry candidate, long now) {
+            if (candidate.weight() > mainMaxWeight) {
+                return;
+            }
+
+            int candidateFrequency = sketch.frequency(key.hashCode());
+            Iterator<Map.Entry<String, Entry>> it = main.entrySet().iterator();
+            while (mainWeight + candidate.weight() > mainMaxWeight) {
+                Map.Entry<String, Entry> victim = it.next();
+                boolean expired = victim.getValue().expiresAt() <= now;
+                if (!expired && candidateFrequency <= sketch.frequency(victim.getKey().hashCode())) {
+                    return;
+                }
+                it.remove();
+                mainWeight -= victim.getValue().weight();
+            }
+
+            main.put(key, candidate);
+            mainWeight += candidate.weight();
+        }
+
+        private void remove(String key) {
+            Entry entry = window.remove(key);
+            if (entry != null) {
+                windowWeight -= entry.weight();
+            }
+            entry = main.remove(key);
+            if (entry != null) {
+                mainWeight -= entry.weight();
+            }
+        }
+    }
+
+    private static long weigh(String key, byte[] frame) {
+        return (long) frame.length + key.length();
+    }
+
+    private record Entry(byte[] frame, long expiresAt, long weight) {}
+}
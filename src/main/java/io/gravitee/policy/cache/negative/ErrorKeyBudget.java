@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.negative;
+
+import io.gravitee.policy.cache.configuration.CachePolicyConfiguration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Bounds the number of distinct keys holding an error response in cache, so that a failing backend answering errors
+ * for an unbounded key space (e.g. random paths) cannot fill the cache resource with them. Each key is counted until
+ * its error entry expires, on each gateway node.
+ */
+public final class ErrorKeyBudget {
+
+    private static final Map<CachePolicyConfiguration, ErrorKeyBudget> INSTANCES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final int maxKeys;
+    private final Map<String, Long> expirations = new HashMap<>();
+    // No key expires before this time, so purging earlier frees nothing
+    private long nextExpiration = Long.MAX_VALUE;
+
+    public ErrorKeyBudget(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    public static ErrorKeyBudget of(CachePolicyConfiguration configuration) {
+        return INSTANCES.computeIfAbsent(configuration, conf -> new ErrorKeyBudget(conf.getMaxErrorKeys()));
+    }
+
+    /**
+     * Counts the key until {@code expiresAt}.
+     *
+     * @return {@code false} if the budget is exhausted, in which case the error must not be put in cache.
+     */
+    public synchronized boolean tryAcquire(String key, long now, long expiresAt) {
+        if (!expirations.containsKey(key) && expirations.size() >= maxKeys) {
+            if (now < nextExpiration) {
+                return false;
+            }
+            purge(now);
+            if (expirations.size() >= maxKeys) {
+                return false;
+            }
+        }
+        expirations.put(key, expiresAt);
+        nextExpiration = Math.min(nextExpiration, expiresAt);
+        return true;
+    }
+
+    /**
+     * Stops counting a key whose error entry has been replaced.
+     */
+    public synchronized void release(String key) {
+        expirations.remove(key);
+    }
+
+    public synchronized int size() {
+        return expirations.size();
+    }
+
+    private void purge(long now) {
+        nextExpiration = Long.MAX_VALUE;
+        Iterator<Long> iterator = expirations.values().iterator();
+        while (iterator.hasNext()) {
+            long expiresAt = iterator.next();
+            if (expiresAt <= now) {
+                iterator.remove();
+            } else {
+                nextExpiration = Math.min(nextExpiration, expiresAt);
+            }
+        }
+    }
+}
@@ -38,6 +38,14 @@ public class CacheElement implements Element {
         this.timeToLive = timeToLive;
     }
 
+    /**
+     * Sets the time to live (in seconds), bounded to {@link Integer#MAX_VALUE}: a time to live added up from upstream
+     * directives, each up to 2^31 seconds, would otherwise overflow into a negative one.
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = (int) Math.min(timeToLive, Integer.MAX_VALUE);
+    }
+
     @Override
     public Object key() {
         return key;
@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.tag;
+
+import io.gravitee.policy.cache.key.CacheKeyBuilder;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The keys of the entries tagged by the backend with a given tag (e.g. {@code Surrogate-Key} or {@code Cache-Tag}), so
+ * that all of them can be evicted at once. Each tag has its own index in the cache resource, under the API followed by
+ * a hash of the tag, which expires with the last of its entries.
+ * <p>
+ * Binary layout: a marker byte distinguishing the index from a frame, the expiration of the index (8 bytes, epoch
+ * millis), then the keys, their count on 2 bytes and each key length-prefixed on 2 bytes.
+ */
+public final class TagIndex {
+
+    static final byte INDEX_MARKER = 0x54;
+
+    // Further tags of a response are ignored, to bound the writes made when storing it
+    static final int MAX_TAGS = 32;
+    // The oldest keys are dropped beyond this, to bound the size of the index
+    static final int MAX_KEYS = 1024;
+
+    private static final String TAG_COMPONENT = "tag";
+
+    private final Set<String> keys;
+    private long expiresAt;
+
+    public TagIndex() {
+        this(new LinkedHashSet<>(), 0);
+    }
+
+    private TagIndex(Set<String> keys, long expiresAt) {
+        this.keys = keys;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @return the tags listed by the header values, separated by spaces ({@code Surrogate-Key}) or commas
+     * ({@code Cache-Tag}), without duplicates and in their order. Tags beyond {@link #MAX_TAGS} are ignored.
+     */
+    public static List<String> parseTags(List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> tags = new LinkedHashSet<>();
+        for (String value : values) {
+            if (value == null) {
+                continue;
+            }
+            int start = -1;
+            for (int i = 0; i <= value.length() && tags.size() < MAX_TAGS; i++) {
+                boolean separator = i == value.length() || value.charAt(i) == ',' || Character.isWhitespace(value.charAt(i));
+                if (separator && start != -1) {
+                    tags.add(value.substring(start, i));
+                    start = -1;
+                } else if (!separator && start == -1) {
+                    start = i;
+                }
+            }
+        }
+        return new ArrayList<>(tags);
+    }
+
+    /**
+     * @param prefix the API followed by the key separator of the cache resource.
+     */
+    public static String key(String prefix, String tag) {
+        return prefix + CacheKeyBuilder.start().append(TAG_COMPONENT).append(tag).build();
+    }
+
+    public static boolean isIndex(byte[] value) {
+        return value != null && value.length > 0 && value[0] == INDEX_MARKER;
+    }
+
+    public Set<String> keys() {
+        return Collections.unmodifiableSet(keys);
+    }
+
+    public long expiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Adds the key of an entry expiring at {@code expiresAt}, as the most recent one. The index never expires before
+     * its entries.
+     */
+    public void add(String key, long expiresAt) {
+        keys.remove(key);
+        keys.add(key);
+        if (keys.size() > MAX_KEYS) {
+            keys.remove(keys.iterator().next());
+        }
+        this.expiresAt = Math.max(this.expiresAt, expiresAt);
+    }
+
+    public byte[] encode() {
+        byte[][] encodedKeys = new byte[keys.size()][];
+        int size = 1 + 8 + 2;
+        int i = 0;
+        for (String key : keys) {
+            encodedKeys[i] = key.getBytes(StandardCharsets.UTF_8);
+            size += 2 + encodedKeys[i++].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size).put(INDEX_MARKER).putLong(expiresAt);
+        buffer.putShort((short) encodedKeys.length);
+        for (byte[] key : encodedKeys) {
+            buffer.putShort((short) key.length).put(key);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value is not a well formed index.
+     */
+    public static TagIndex decode(byte[] value) {
+        if (!isIndex(value)) {
+            throw new IllegalArgumentException("Not a tag index");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(value, 1, value.length - 1);
+        try {
+            long expiresAt = buffer.getLong();
+            int count = Short.toUnsignedInt(buffer.getShort());
+            Set<String> keys = new LinkedHashSet<>();
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[Short.toUnsignedInt(buffer.getShort())];
+                buffer.get(key);
+                keys.add(new String(key, StandardCharsets.UTF_8));
+            }
+            if (buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Malformed tag index");
+            }
+            return new TagIndex(keys, expiresAt);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated tag index", e);
+        }
+    }
+}
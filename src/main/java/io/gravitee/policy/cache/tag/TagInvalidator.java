@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.tag;
+
+import io.gravitee.policy.cache.frame.CacheFrame;
+import io.gravitee.policy.cache.resource.CacheElement;
+import io.gravitee.resource.cache.api.Cache;
+import io.gravitee.resource.cache.api.Element;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Records the entries tagged by the backend in the {@link TagIndex} of each of their tags, and evicts every entry of
+ * some tags at once.
+ */
+@Slf4j
+public final class TagInvalidator {
+
+    private TagInvalidator() {}
+
+    /**
+     * Adds the key of an entry to the index of each of its tags. Each index is read, updated and written back, so
+     * concurrent writers may drop each other's keys: such entries are then only evicted on expiry.
+     */
+    public static void record(Cache cache, Collection<String> tagKeys, String key, long timeToLive) {
+        long expiresAt = System.currentTimeMillis() + timeToLive * 1000;
+        for (String tagKey : tagKeys) {
+            cache
+                .getBinaryAsync(tagKey)
+                .onComplete(result -> {
+                    TagIndex index = result.succeeded() ? decode(tagKey, result.result()) : null;
+                    if (index == null) {
+                        index = new TagIndex();
+                    }
+                    index.add(key, expiresAt);
+
+                    CacheElement element = new CacheElement(tagKey, index.encode());
+                    element.setTimeToLive(Math.max(1, (index.expiresAt() - System.currentTimeMillis() + 999) / 1000));
+                    cache
+                        .putBinaryAsync(element)
+                        .onFailure(err -> log.warn("Cannot store tag index with key {} into the cache", tagKey, err));
+                });
+        }
+    }
+
+    /**
+     * Evicts every entry recorded in the indexes of the tags, and the indexes themselves. The indexes are read and the
+     * entries evicted concurrently, rather than one after the other.
+     *
+     * @param onEvict called with the key of each evicted entry, e.g. to invalidate copies kept in memory.
+     * @return the number of entries evicted, indexes excluded.
+     */
+    public static CompletionStage<Integer> purge(Cache cache, Collection<String> tagKeys, Consumer<String> onEvict) {
+        List<CompletableFuture<TagIndex>> lookups = tagKeys
+            .stream()
+            .map(tagKey ->
+                cache
+                    .getBinaryAsync(tagKey)
+                    .toCompletionStage()
+                    .toCompletableFuture()
+                    .thenApply(element -> decode(tagKey, element))
+                    .exceptionally(err -> {
+                        log.warn("Cannot read tag index with key {} from the cache", tagKey, err);
+                        return null;
+                    })
+            )
+            .toList();
+
+        return CompletableFuture.allOf(lookups.toArray(CompletableFuture[]::new)).thenCompose(ignored -> {
+            Set<String> keys = new HashSet<>();
+            lookups.forEach(lookup -> {
+                TagIndex index = lookup.join();
+                if (index != null) {
+                    keys.addAll(index.keys());
+                }
+            });
+            int entries = keys.size();
+            keys.addAll(tagKeys);
+
+            CompletableFuture<?>[] evictions = keys
+                .stream()
+                .map(key -> {
+                    onEvict.accept(key);
+                    return cache
+                        .evictAsync(key)
+                        .toCompletionStage()
+                        .toCompletableFuture()
+                        .exceptionally(err -> {
+                            log.warn("Element {} can't be evicted from the cache {}", key, cache.getName(), err);
+                            return null;
+                        });
+                })
+                .toArray(CompletableFuture[]::new);
+            return CompletableFuture.allOf(evictions).thenApply(done -> entries);
+        });
+    }
+
+    private static TagIndex decode(String tagKey, Element element) {
+        byte[] value = element == null ? null : CacheFrame.asFrame(element.value());
+        if (!TagIndex.isIndex(value)) {
+            return null;
+        }
+        try {
+            return TagIndex.decode(value);
+        } catch (IllegalArgumentException e) {
+            log.warn("Cannot decode tag index with key {}, ignoring it", tagKey, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+/**
+ * Reads the {@code Accept-Encoding} request header as defined in RFC 9110, section 12.5.3.
+ */
+public final class AcceptEncodingUtil {
+
+    private static final float NOT_LISTED = -1f;
+
+    private AcceptEncodingUtil() {}
+
+    /**
+     * Whether the content coding is acceptable to the client, either listed explicitly or through the {@code *}
+     * wildcard, with a non-zero quality.
+     *
+     * @param acceptEncoding the value of the {@code Accept-Encoding} header, several headers being joined with commas.
+     * @param coding the content coding, such as {@code gzip}.
+     */
+    public static boolean accepts(String acceptEncoding, String coding) {
+        if (acceptEncoding == null || coding == null) {
+            return false;
+        }
+
+        float codingQuality = NOT_LISTED;
+        float wildcardQuality = NOT_LISTED;
+        int start = 0;
+        while (start <= acceptEncoding.length()) {
+            int end = acceptEncoding.indexOf(',', start);
+            if (end == -1) {
+                end = acceptEncoding.length();
+            }
+            int semicolon = acceptEncoding.indexOf(';', start);
+            int tokenEnd = semicolon == -1 || semicolon > end ? end : semicolon;
+            String token = acceptEncoding.substring(start, tokenEnd).trim();
+            if (token.equalsIgnoreCase(coding)) {
+                codingQuality = quality(acceptEncoding, tokenEnd, end);
+            } else if (token.equals("*")) {
+                wildcardQuality = quality(acceptEncoding, tokenEnd, end);
+            }
+            start = end + 1;
+        }
+
+        return codingQuality != NOT_LISTED ? codingQuality > 0 : wildcardQuality > 0;
+    }
+
+    /**
+     * Reads the {@code q} parameter of an entry, 1 if absent and 0 if malformed.
+     */
+    private static float quality(String acceptEncoding, int paramsStart, int end) {
+        int start = paramsStart;
+        while (start < end) {
+            int paramEnd = acceptEncoding.indexOf(';', start + 1);
+            if (paramEnd == -1 || paramEnd > end) {
+                paramEnd = end;
+            }
+            String param = acceptEncoding.substring(start + 1, paramEnd).trim();
+            if (param.length() > 2 && (param.charAt(0) == 'q' || param.charAt(0) == 'Q') && param.charAt(1) == '=') {
+                try {
+                    return Float.parseFloat(param.substring(2));
+                } catch (NumberFormatException nfe) {
+                    return 0f;
+                }
+            }
+            start = paramEnd;
+        }
+        return 1f;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Copies the chunks of a response body, up to a maximum size. Once the limit is exceeded, the accumulated bytes are
+ * dropped and the body is considered too large to be cached; the chunks themselves are left untouched so the client
+ * still receives the whole body. A maximum size of 0 or less means no limit.
+ */
+public class BoundedBodyAccumulator {
+
+    private final long maxSize;
+    private ByteBuf content = Unpooled.buffer();
+    private boolean overflowed;
+
+    public BoundedBodyAccumulator(long maxSize) {
+        this.maxSize = maxSize > 0 ? maxSize : Long.MAX_VALUE;
+    }
+
+    /**
+     * Whether a {@code Content-Length} header value announces a body larger than the maximum size, in which case the
+     * body does not need to be accumulated at all.
+     */
+    public static boolean exceedsMaxSize(String contentLength, long maxSize) {
+        if (maxSize <= 0 || contentLength == null) {
+            return false;
+        }
+        try {
+            return Long.parseLong(contentLength.trim()) > maxSize;
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
+    }
+
+    public void append(Buffer chunk) {
+        if (overflowed || chunk == null || chunk.length() == 0) {
+            return;
+        }
+
+        if ((long) content.readableBytes() + chunk.length() > maxSize) {
+            overflowed = true;
+            content = Unpooled.EMPTY_BUFFER;
+            return;
+        }
+
+        ByteBuf nativeChunk = chunk.getNativeBuffer();
+        content.writeBytes(nativeChunk, nativeChunk.readerIndex(), nativeChunk.readableBytes());
+    }
+
+    public boolean isOverflowed() {
+        return overflowed;
+    }
+
+    /**
+     * The accumulated body, or {@code null} if it exceeded the maximum size.
+     */
+    public Buffer body() {
+        return overflowed ? null : Buffer.buffer(content);
+    }
+}
@@ -16,10 +16,6 @@
 package io.gravitee.policy.cache.util;
 
 import io.gravitee.policy.cache.CacheControl;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * @author David BRASSELY (david.brassely at graviteesource.com)
@@ -27,105 +23,270 @@ import java.util.regex.Pattern;
  */
 public final class CacheControlUtil {
 
+    // Delta-seconds greater than this are capped to it (RFC 9111, section 1.2.2)
+    private static final long MAX_DELTA_SECONDS = 2147483648L;
+
     private CacheControlUtil() {}
 
     /**
-     * Parse the Cache-Control header
+     * Parse the Cache-Control header in a single pass, without regular expressions nor intermediate strings. Directive
+     * names are matched ignoring case and dashes, values may be tokens or quoted strings, and malformed directives are
+     * skipped up to the next comma.
      */
     public static CacheControl parseCacheControl(String cacheControlHeader) {
         if (cacheControlHeader == null) {
             return null;
         }
 
-        CacheControlParser parser = new CacheControlParser(cacheControlHeader);
         CacheControl cacheControl = new CacheControl();
-        for (Directive directive : parser) {
-            switch (directive) {
-                case NOCACHE:
-                    cacheControl.setNoCache(true);
-                    break;
-                case NOSTORE:
-                    cacheControl.setNoStore(true);
-                    break;
-                case NOTRANSFORM:
-                    cacheControl.setNoTransform(true);
-                    break;
-                case MUSTREVALIDATE:
-                    cacheControl.setMustRevalidate(true);
-                    break;
-                case PUBLIC:
-                    cacheControl.setPublic(true);
-                    break;
-                case PRIVATE:
-                    cacheControl.setPrivate(true);
-                    break;
-                case MAXAGE:
-                    cacheControl.setMaxAge(Long.parseLong(parser.getValue(directive)));
-                    break;
-                case SMAXAGE:
-                    cacheControl.setSMaxAge(Long.parseLong(parser.getValue(directive)));
-                    break;
+        int length = cacheControlHeader.length();
+        int i = 0;
+        while (i < length) {
+            char c = cacheControlHeader.charAt(i);
+            if (c == ',' || c == ' ' || c == '\t') {
+                i++;
+                continue;
+            }
+
+            int nameStart = i;
+            while (i < length && isTokenChar(cacheControlHeader.charAt(i))) {
+                i++;
             }
+            int nameEnd = i;
+            if (nameEnd == nameStart) {
+                i = nextDirective(cacheControlHeader, i);
+                continue;
+            }
+
+            int valueStart = -1;
+            int valueEnd = -1;
+            i = skipWhitespace(cacheControlHeader, i);
+            if (i < length && cacheControlHeader.charAt(i) == '=') {
+                i = skipWhitespace(cacheControlHeader, i + 1);
+                if (i < length && cacheControlHeader.charAt(i) == '"') {
+                    valueStart = ++i;
+                    while (i < length && cacheControlHeader.charAt(i) != '"') {
+                        i += cacheControlHeader.charAt(i) == '\\' ? 2 : 1;
+                    }
+                    valueEnd = Math.min(i, length);
+                    i++;
+                } else {
+                    valueStart = i;
+                    while (i < length && isTokenChar(cacheControlHeader.charAt(i))) {
+                        i++;
+                    }
+                    valueEnd = i;
+                }
+            }
+
+            apply(cacheControl, Directive.select(cacheControlHeader, nameStart, nameEnd), cacheControlHeader, valueStart, valueEnd);
+            i = nextDirective(cacheControlHeader, i);
         }
 
         return cacheControl;
     }
 
+    private static void apply(CacheControl cacheControl, Directive directive, String header, int valueStart, int valueEnd) {
+        switch (directive) {
+            case NOCACHE:
+                cacheControl.setNoCache(true);
+                break;
+            case NOSTORE:
+                cacheControl.setNoStore(true);
+                break;
+            case NOTRANSFORM:
+                cacheControl.setNoTransform(true);
+                break;
+            case MUSTREVALIDATE:
+                cacheControl.setMustRevalidate(true);
+                break;
+            case PROXYREVALIDATE:
+                cacheControl.setProxyRevalidate(true);
+                break;
+            case MUSTUNDERSTAND:
+                cacheControl.setMustUnderstand(true);
+                break;
+            case ONLYIFCACHED:
+                cacheControl.setOnlyIfCached(true);
+                break;
+            case IMMUTABLE:
+                cacheControl.setImmutable(true);
+                break;
+            case PUBLIC:
+                cacheControl.setPublic(true);
+                break;
+            case PRIVATE:
+                // A private directive listing field names is conservatively handled as an unqualified one
+                cacheControl.setPrivate(true);
+                break;
+            case MAXAGE:
+                cacheControl.setMaxAge(deltaSeconds(header, valueStart, valueEnd, cacheControl.getMaxAge()));
+                break;
+            case SMAXAGE:
+                cacheControl.setSMaxAge(deltaSeconds(header, valueStart, valueEnd, cacheControl.getSMaxAge()));
+                break;
+            case MAXSTALE:
+                // Without a value, a stale response of any age is accepted
+                long maxStale = valueStart < 0 ? Long.MAX_VALUE : deltaSeconds(header, valueStart, valueEnd, cacheControl.getMaxStale());
+                cacheControl.setMaxStale(maxStale);
+                break;
+            case MINFRESH:
+                cacheControl.setMinFresh(deltaSeconds(header, valueStart, valueEnd, cacheControl.getMinFresh()));
+                break;
+            case STALEWHILEREVALIDATE:
+                cacheControl.setStaleWhileRevalidate(deltaSeconds(header, valueStart, valueEnd, cacheControl.getStaleWhileRevalidate()));
+                break;
+            case STALEIFERROR:
+                cacheControl.setStaleIfError(deltaSeconds(header, valueStart, valueEnd, cacheControl.getStaleIfError()));
+                break;
+            default:
+                break;
+        }
+    }
+
     /**
-     * Cache Control Directives
+     * @return the delta-seconds value, or {@code current} if there is none or it is not a number.
      */
-    public enum Directive {
-        MAXAGE,
-        MAXSTALE,
-        MINFRESH,
-        NOCACHE,
-        NOSTORE,
-        NOTRANSFORM,
-        ONLYIFCACHED,
-        MUSTREVALIDATE,
-        PRIVATE,
-        PROXYREVALIDATE,
-        PUBLIC,
-        SMAXAGE,
-        UNKNOWN;
+    private static long deltaSeconds(String header, int start, int end, long current) {
+        if (start < 0 || start >= end) {
+            return current;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = header.charAt(i);
+            if (c < '0' || c > '9') {
+                return current;
+            }
+            if (value < MAX_DELTA_SECONDS) {
+                value = value * 10 + (c - '0');
+            }
+        }
+        return Math.min(value, MAX_DELTA_SECONDS);
+    }
 
-        public static Directive select(String d) {
-            try {
-                d = d.toUpperCase().replaceAll("-", "");
-                return Directive.valueOf(d);
-            } catch (Exception e) {}
-            return UNKNOWN;
+    /**
+     * @return the index following the next comma outside of a quoted string, or the end of the header.
+     */
+    private static int nextDirective(String header, int from) {
+        boolean quoted = false;
+        for (int i = from; i < header.length(); i++) {
+            char c = header.charAt(i);
+            if (quoted) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                return i + 1;
+            }
+        }
+        return header.length();
+    }
+
+    private static int skipWhitespace(String header, int from) {
+        int i = from;
+        while (i < header.length() && (header.charAt(i) == ' ' || header.charAt(i) == '\t')) {
+            i++;
         }
+        return i;
     }
 
     /**
-     * Parser for the Cache-Control header
+     * Token characters of RFC 9110, section 5.6.2.
      */
-    public static class CacheControlParser implements Iterable<Directive> {
+    private static boolean isTokenChar(char c) {
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+            return true;
+        }
+        switch (c) {
+            case '!':
+            case '#':
+            case '$':
+            case '%':
+            case '&':
+            case '\'':
+            case '*':
+            case '+':
+            case '-':
+            case '.':
+            case '^':
+            case '_':
+            case '`':
+            case '|':
+            case '~':
+                return true;
+            default:
+                return false;
+        }
+    }
 
-        private static final String REGEX = "\\s*([\\w\\-]+)\\s*(=)?\\s*(\\d+|\"([^\"\\\\]*(\\\\.[^\"\\\\]*)*)+\")?\\s*";
+    /**
+     * Cache Control Directives
+     */
+    public enum Directive {
+        MAXAGE("maxage"),
+        MAXSTALE("maxstale"),
+        MINFRESH("minfresh"),
+        NOCACHE("nocache"),
+        NOSTORE("nostore"),
+        NOTRANSFORM("notransform"),
+        ONLYIFCACHED("onlyifcached"),
+        MUSTREVALIDATE("mustrevalidate"),
+        MUSTUNDERSTAND("mustunderstand"),
+        PRIVATE("private"),
+        PROXYREVALIDATE("proxyrevalidate"),
+        PUBLIC("public"),
+        SMAXAGE("smaxage"),
+        STALEWHILEREVALIDATE("stalewhilerevalidate"),
+        STALEIFERROR("staleiferror"),
+        IMMUTABLE("immutable"),
+        UNKNOWN(null);
+
+        private static final Directive[] DIRECTIVES = values();
 
-        private static final Pattern pattern = Pattern.compile(REGEX);
+        // Lower-cased name without dashes
+        private final String token;
 
-        private HashMap<Directive, String> values = new HashMap<>();
+        Directive(String token) {
+            this.token = token;
+        }
+
+        public static Directive select(String d) {
+            return d == null ? UNKNOWN : select(d, 0, d.length());
+        }
 
-        public CacheControlParser(String value) {
-            Matcher matcher = pattern.matcher(value);
-            while (matcher.find()) {
-                String d = matcher.group(1);
-                Directive directive = Directive.select(d);
-                if (directive != Directive.UNKNOWN) {
-                    values.put(directive, matcher.group(3));
+        /**
+         * Selects the directive named by {@code name[start, end)}, ignoring case and dashes.
+         */
+        static Directive select(String name, int start, int end) {
+            for (Directive directive : DIRECTIVES) {
+                if (directive.token != null && directive.matches(name, start, end)) {
+                    return directive;
                 }
             }
+            return UNKNOWN;
         }
 
-        public String getValue(Directive directive) {
-            return values.get(directive);
+        private boolean matches(String name, int start, int end) {
+            int j = 0;
+            for (int i = start; i < end; i++) {
+                char c = name.charAt(i);
+                if (c == '-') {
+                    continue;
+                }
+                if (j == token.length() || toLowerCase(c) != token.charAt(j)) {
+                    return false;
+                }
+                j++;
+            }
+            return j == token.length();
         }
 
-        public Iterator<Directive> iterator() {
-            return values.keySet().iterator();
+        private static char toLowerCase(char c) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
         }
     }
 }
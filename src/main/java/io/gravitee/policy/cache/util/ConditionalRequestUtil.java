@@ -0,0 +1,229 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import io.gravitee.common.http.HttpMethod;
+import io.gravitee.common.http.HttpStatusCode;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.gateway.api.http.HttpHeaders;
+import io.gravitee.policy.cache.CachedResponse;
+import io.gravitee.policy.cache.frame.FrameMetadata;
+import io.gravitee.policy.cache.key.Murmur3;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Conditional requests (RFC 9110, section 13): sent to the backend to validate a stale entry, and received from clients
+ * already holding a cached response.
+ */
+public final class ConditionalRequestUtil {
+
+    // Headers a 304 response carries as they would have been sent in a 200 response (RFC 9110, section 15.4.5)
+    private static final Set<String> NOT_MODIFIED_HEADERS = Set.of(
+        "cache-control",
+        "content-location",
+        "date",
+        "etag",
+        "expires",
+        "last-modified",
+        "vary"
+    );
+
+    private ConditionalRequestUtil() {}
+
+    /**
+     * Turns the backend request into a conditional request validating the entry, with {@code If-None-Match} and / or
+     * {@code If-Modified-Since}. A {@code 304} answer then tells that the entry is still valid, without its body being
+     * sent again.
+     *
+     * @return {@code false} if the request has been left untouched: the entry has no validators, the method is neither
+     * {@code GET} nor {@code HEAD}, or the request already carries preconditions, whose outcome belongs to the client.
+     */
+    public static boolean addValidators(HttpMethod method, HttpHeaders requestHeaders, FrameMetadata metadata) {
+        if (metadata == null || !metadata.hasValidators() || (method != HttpMethod.GET && method != HttpMethod.HEAD)) {
+            return false;
+        }
+        if (hasPreconditions(requestHeaders)) {
+            return false;
+        }
+        if (metadata.getEtag() != null) {
+            requestHeaders.set(HttpHeaderNames.IF_NONE_MATCH, metadata.getEtag());
+        }
+        if (metadata.getLastModified() != -1) {
+            requestHeaders.set(HttpHeaderNames.IF_MODIFIED_SINCE, HttpDateUtil.format(metadata.getLastModified()));
+        }
+        return true;
+    }
+
+    public static boolean hasPreconditions(HttpHeaders requestHeaders) {
+        return (
+            requestHeaders.contains(HttpHeaderNames.IF_NONE_MATCH) ||
+            requestHeaders.contains(HttpHeaderNames.IF_MODIFIED_SINCE) ||
+            requestHeaders.contains(HttpHeaderNames.IF_MATCH) ||
+            requestHeaders.contains(HttpHeaderNames.IF_UNMODIFIED_SINCE) ||
+            requestHeaders.contains(HttpHeaderNames.IF_RANGE)
+        );
+    }
+
+    /**
+     * @return the {@code Last-Modified} date of a response in epoch seconds, {@code -1} if absent or invalid.
+     */
+    public static long lastModified(String lastModifiedHeader) {
+        Instant lastModified = HttpDateUtil.parse(lastModifiedHeader);
+        return lastModified == null ? -1 : lastModified.getEpochSecond();
+    }
+
+    /**
+     * @return whether the client already holds the cached response, according to its {@code If-None-Match} header or,
+     * in its absence, its {@code If-Modified-Since} header. Only successful responses to {@code GET} and {@code HEAD}
+     * requests are answered with a {@code 304 Not Modified}.
+     */
+    public static boolean isNotModified(HttpMethod method, HttpHeaders requestHeaders, CachedResponse cached) {
+        FrameMetadata metadata = cached.metadata();
+        if (metadata == null || (method != HttpMethod.GET && method != HttpMethod.HEAD) || cached.status() / 100 != 2) {
+            return false;
+        }
+        List<String> ifNoneMatch = requestHeaders.getAll(HttpHeaderNames.IF_NONE_MATCH);
+        if (ifNoneMatch != null && !ifNoneMatch.isEmpty()) {
+            for (String value : ifNoneMatch) {
+                if (matches(value, metadata.entityTag())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (metadata.getLastModified() == -1) {
+            return false;
+        }
+        Instant ifModifiedSince = HttpDateUtil.parse(requestHeaders.get(HttpHeaderNames.IF_MODIFIED_SINCE));
+        return ifModifiedSince != null && metadata.getLastModified() <= ifModifiedSince.getEpochSecond();
+    }
+
+    /**
+     * Weak comparison (RFC 9110, section 8.8.3.2) of an entity tag against an {@code If-None-Match} list.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        String opaqueTag = etag == null ? null : etag.startsWith("W/") ? etag.substring(2) : etag;
+        int i = 0;
+        int length = ifNoneMatch.length();
+        while (i < length) {
+            char c = ifNoneMatch.charAt(i);
+            if (c == ' ' || c == '\t' || c == ',') {
+                i++;
+                continue;
+            }
+            if (c == '*') {
+                return true;
+            }
+            if (ifNoneMatch.startsWith("W/", i)) {
+                i += 2;
+            }
+            int end = i < length && ifNoneMatch.charAt(i) == '"' ? ifNoneMatch.indexOf('"', i + 1) : -1;
+            if (end == -1) {
+                // Malformed entity tag, skip it
+                int comma = ifNoneMatch.indexOf(',', i);
+                if (comma == -1) {
+                    return false;
+                }
+                i = comma + 1;
+                continue;
+            }
+            if (opaqueTag != null && end + 1 - i == opaqueTag.length() && ifNoneMatch.startsWith(opaqueTag, i)) {
+                return true;
+            }
+            i = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * @return the {@code 304 Not Modified} answer to a client already holding the cached response: no body, and only the
+     * headers describing the response it holds.
+     */
+    public static CachedResponse notModified(CachedResponse cached) {
+        io.gravitee.common.http.HttpHeaders headers = new io.gravitee.common.http.HttpHeaders();
+        cached.headers().forEach((name, values) -> {
+            if (NOT_MODIFIED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                values.forEach(value -> headers.add(name, value));
+            }
+        });
+        return new CachedResponse(HttpStatusCode.NOT_MODIFIED_304, headers, null, cached.metadata());
+    }
+
+    /**
+     * Updates the stored headers with those of the {@code 304 Not Modified} response validating them, which take
+     * precedence (RFC 9111 §4.3.4), such as its {@code Cache-Control}, {@code Expires}, {@code ETag} and {@code Date}.
+     * The {@code Content-Length} of the {@code 304} response is ignored, as it does not describe the stored body.
+     *
+     * @return the stored headers, updated in place.
+     */
+    public static io.gravitee.common.http.HttpHeaders updateHeaders(io.gravitee.common.http.HttpHeaders stored, HttpHeaders notModified) {
+        Set<String> updated = new HashSet<>();
+        notModified.forEach(entry -> {
+            if (!HttpHeaderNames.CONTENT_LENGTH.equalsIgnoreCase(entry.getKey())) {
+                updated.add(entry.getKey());
+            }
+        });
+        updated.forEach(stored::remove);
+        notModified.forEach(entry -> {
+            if (updated.contains(entry.getKey())) {
+                stored.add(entry.getKey(), entry.getValue());
+            }
+        });
+        return stored;
+    }
+
+    /**
+     * Gives a successful response without {@code ETag} a weak one, computed from its body, so that clients can then
+     * revalidate it with {@code If-None-Match}. The entity tag is added to the metadata and to the stored headers.
+     * <p>
+     * It is weak because the same tag is served with the body as stored and compressed (see
+     * {@link io.gravitee.policy.cache.frame.CacheFrame#decodeFor(byte[], String)}): it must never match a strong
+     * comparison, such as the one of {@code If-Range}.
+     */
+    public static void ensureEntityTag(int status, io.gravitee.common.http.HttpHeaders headers, FrameMetadata metadata, Buffer body) {
+        if (metadata == null || metadata.entityTag() != null || status / 100 != 2) {
+            return;
+        }
+        String etag = entityTag(body);
+        metadata.setGeneratedEtag(etag);
+        headers.add(HttpHeaderNames.ETAG, etag);
+    }
+
+    /**
+     * @return a weak entity tag made of the 128-bit MurmurHash3 of the body, as 32 hexadecimal characters.
+     */
+    static String entityTag(Buffer body) {
+        long[] hash;
+        if (body == null || body.length() == 0) {
+            hash = Murmur3.hash128(new byte[0], 0, 0);
+        } else {
+            ByteBuf nativeBody = body.getNativeBuffer();
+            if (nativeBody.hasArray()) {
+                hash = Murmur3.hash128(nativeBody.array(), nativeBody.arrayOffset() + nativeBody.readerIndex(), nativeBody.readableBytes());
+            } else {
+                hash = Murmur3.hash128(ByteBufUtil.getBytes(nativeBody), 0, nativeBody.readableBytes());
+            }
+        }
+        return String.format("W/\"%016x%016x\"", hash[0], hash[1]);
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * Parser of the HTTP-date values of headers such as {@code Expires} or {@code Last-Modified} (RFC 9110, section 5.6.7):
+ * the IMF-fixdate format ({@code Sun, 06 Nov 1994 08:49:37 GMT}), and the obsolete RFC 850
+ * ({@code Sunday, 06-Nov-94 08:49:37 GMT}) and asctime ({@code Sun Nov  6 08:49:37 1994}) formats.
+ * <p>
+ * Fields are read at their fixed positions, without a formatter. As backends tend to send the same date many times in a
+ * row, the last parsed value is remembered.
+ */
+public final class HttpDateUtil {
+
+    private static final int IMF_FIXDATE_LENGTH = 29;
+    private static final int ASCTIME_LENGTH = 24;
+
+    private static final String[] DAY_NAMES = { "Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun" };
+    private static final String[] MONTH_NAMES = { "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+
+    private static volatile Memo last = new Memo(null, null);
+
+    private HttpDateUtil() {}
+
+    /**
+     * @return the instant of the date, or {@code null} if it is not a valid HTTP-date.
+     */
+    public static Instant parse(String date) {
+        if (date == null) {
+            return null;
+        }
+
+        Memo memo = last;
+        if (date.equals(memo.value)) {
+            return memo.instant;
+        }
+
+        Instant instant = parseUncached(date.trim());
+        last = new Memo(date, instant);
+        return instant;
+    }
+
+    /**
+     * @return the IMF-fixdate representation of the given epoch seconds, e.g. {@code Sun, 06 Nov 1994 08:49:37 GMT}.
+     */
+    public static String format(long epochSecond) {
+        LocalDateTime date = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+        StringBuilder formatted = new StringBuilder(IMF_FIXDATE_LENGTH)
+            .append(DAY_NAMES[date.getDayOfWeek().ordinal()])
+            .append(", ");
+        appendTwoDigits(formatted, date.getDayOfMonth())
+            .append(' ')
+            .append(MONTH_NAMES[date.getMonthValue() - 1])
+            .append(' ')
+            .append(date.getYear())
+            .append(' ');
+        appendTwoDigits(formatted, date.getHour()).append(':');
+        appendTwoDigits(formatted, date.getMinute()).append(':');
+        return appendTwoDigits(formatted, date.getSecond()).append(" GMT").toString();
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder builder, int value) {
+        return builder.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private static Instant parseUncached(String date) {
+        if (date.length() == IMF_FIXDATE_LENGTH && date.charAt(3) == ',') {
+            return parseImfFixdate(date);
+        }
+        if (date.length() == ASCTIME_LENGTH && date.charAt(3) == ' ') {
+            return parseAsctime(date);
+        }
+        int comma = date.indexOf(',');
+        if (comma > 3) {
+            return parseRfc850(date, comma);
+        }
+        return null;
+    }
+
+    // Sun, 06 Nov 1994 08:49:37 GMT
+    private static Instant parseImfFixdate(String date) {
+        if (date.charAt(4) != ' ' || date.charAt(7) != ' ' || date.charAt(11) != ' ' || date.charAt(16) != ' ') {
+            return null;
+        }
+        int day = digits(date, 5, 2);
+        int month = month(date, 8);
+        int year = digits(date, 12, 4);
+        if (!isGmt(date, 26)) {
+            return null;
+        }
+        return toInstant(year, month, day, date, 17);
+    }
+
+    // Sunday, 06-Nov-94 08:49:37 GMT
+    private static Instant parseRfc850(String date, int comma) {
+        int start = comma + 2;
+        if (date.length() != start + 22 || date.charAt(comma + 1) != ' ') {
+            return null;
+        }
+        if (date.charAt(start + 2) != '-' || date.charAt(start + 6) != '-' || date.charAt(start + 9) != ' ') {
+            return null;
+        }
+        int day = digits(date, start, 2);
+        int month = month(date, start + 3);
+        int year = digits(date, start + 7, 2);
+        if (year < 0 || !isGmt(date, start + 19)) {
+            return null;
+        }
+        return toInstant(fullYear(year), month, day, date, start + 10);
+    }
+
+    // Sun Nov  6 08:49:37 1994
+    private static Instant parseAsctime(String date) {
+        if (date.charAt(7) != ' ' || date.charAt(10) != ' ' || date.charAt(19) != ' ') {
+            return null;
+        }
+        int month = month(date, 4);
+        int day = date.charAt(8) == ' ' ? digits(date, 9, 1) : digits(date, 8, 2);
+        int year = digits(date, 20, 4);
+        return toInstant(year, month, day, date, 11);
+    }
+
+    /**
+     * Reads the {@code HH:mm:ss} time at {@code timeStart} and builds the instant, if every field is in range.
+     */
+    private static Instant toInstant(int year, int month, int day, String date, int timeStart) {
+        if (date.charAt(timeStart + 2) != ':' || date.charAt(timeStart + 5) != ':' || date.charAt(timeStart + 8) != ' ') {
+            return null;
+        }
+        int hour = digits(date, timeStart, 2);
+        int minute = digits(date, timeStart + 3, 2);
+        int second = digits(date, timeStart + 6, 2);
+        if (year < 0 || month < 1 || day < 1 || day > daysInMonth(year, month)) {
+            return null;
+        }
+        // 60 is a leap second
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return null;
+        }
+        long epochSecond = epochDay(year, month, day) * 86400 + hour * 3600L + minute * 60L + Math.min(second, 59);
+        return Instant.ofEpochSecond(epochSecond);
+    }
+
+    private static boolean isGmt(String date, int start) {
+        return date.length() == start + 3 && date.startsWith("GMT", start);
+    }
+
+    /**
+     * A two-digit year more than 50 years in the future is in the past century (RFC 9110, section 5.6.7).
+     */
+    private static int fullYear(int twoDigitYear) {
+        int currentYear = ZonedDateTime.now(ZoneOffset.UTC).getYear();
+        int year = currentYear - currentYear % 100 + twoDigitYear;
+        return year > currentYear + 50 ? year - 100 : year;
+    }
+
+    /**
+     * @return the number of 1 to 12 of the three-letter month name at {@code start}, or -1.
+     */
+    private static int month(String date, int start) {
+        int key = (lowerCase(date.charAt(start)) << 16) | (lowerCase(date.charAt(start + 1)) << 8) | lowerCase(date.charAt(start + 2));
+        switch (key) {
+            case ('j' << 16) | ('a' << 8) | 'n':
+                return 1;
+            case ('f' << 16) | ('e' << 8) | 'b':
+                return 2;
+            case ('m' << 16) | ('a' << 8) | 'r':
+                return 3;
+            case ('a' << 16) | ('p' << 8) | 'r':
+                return 4;
+            case ('m' << 16) | ('a' << 8) | 'y':
+                return 5;
+            case ('j' << 16) | ('u' << 8) | 'n':
+                return 6;
+            case ('j' << 16) | ('u' << 8) | 'l':
+                return 7;
+            case ('a' << 16) | ('u' << 8) | 'g':
+                return 8;
+            case ('s' << 16) | ('e' << 8) | 'p':
+                return 9;
+            case ('o' << 16) | ('c' << 8) | 't':
+                return 10;
+            case ('n' << 16) | ('o' << 8) | 'v':
+                return 11;
+            case ('d' << 16) | ('e' << 8) | 'c':
+                return 12;
+            default:
+                return -1;
+        }
+    }
+
+    private static int lowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : (c & 0xff);
+    }
+
+    /**
+     * @return the value of the {@code count} decimal digits at {@code start}, or -1 if one of them is not a digit.
+     */
+    private static int digits(String date, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = date.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date.
+     */
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static final class Memo {
+
+        private final String value;
+        private final Instant instant;
+
+        private Memo(String value, Instant instant) {
+            this.value = value;
+            this.instant = instant;
+        }
+    }
+}
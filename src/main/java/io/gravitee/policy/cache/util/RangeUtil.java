@@ -0,0 +1,259 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import io.gravitee.common.http.HttpMethod;
+import io.gravitee.common.http.HttpStatusCode;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.gateway.api.http.HttpHeaders;
+import io.gravitee.policy.cache.CachedResponse;
+import io.gravitee.policy.cache.frame.FrameMetadata;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Byte range requests (RFC 9110, section 14) answered from the whole body of a cached response, which is sliced
+ * without being copied.
+ */
+public final class RangeUtil {
+
+    // Requests asking for more ranges are answered with the whole body, as RFC 9110 allows
+    static final int MAX_RANGES = 16;
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    private RangeUtil() {}
+
+    public static boolean isRangeRequest(HttpMethod method, HttpHeaders requestHeaders) {
+        return method == HttpMethod.GET && requestHeaders.contains(HttpHeaderNames.RANGE);
+    }
+
+    /**
+     * Removes the {@code Range} and {@code If-Range} headers of a request, so that the backend sends the whole body to
+     * put in cache, and never a partial one.
+     *
+     * @return the removed headers, to answer the request from the whole body if it is not put in cache after all, or
+     * {@code null} if the request is not a range request.
+     */
+    public static HttpHeaders removeRange(HttpMethod method, HttpHeaders requestHeaders) {
+        if (!isRangeRequest(method, requestHeaders)) {
+            return null;
+        }
+        HttpHeaders removed = HttpHeaders.create().add(HttpHeaderNames.RANGE, requestHeaders.get(HttpHeaderNames.RANGE));
+        String ifRange = requestHeaders.get(HttpHeaderNames.IF_RANGE);
+        if (ifRange != null) {
+            removed.add(HttpHeaderNames.IF_RANGE, ifRange);
+        }
+        requestHeaders.remove(HttpHeaderNames.RANGE);
+        requestHeaders.remove(HttpHeaderNames.IF_RANGE);
+        return removed;
+    }
+
+    /**
+     * @return the {@code 206 Partial Content} response answering the {@code Range} header of the request, a
+     * {@code 416 Range Not Satisfiable} response if none of its ranges is within the body, or {@code null} if the whole
+     * response must be served: the request has no valid {@code Range} header, its {@code If-Range} precondition does
+     * not match, or the cached response is not a {@code 200}.
+     */
+    public static CachedResponse partial(HttpMethod method, HttpHeaders requestHeaders, CachedResponse cached) {
+        if (cached.status() != HttpStatusCode.OK_200 || cached.body() == null || !isRangeRequest(method, requestHeaders)) {
+            return null;
+        }
+        String ifRange = requestHeaders.get(HttpHeaderNames.IF_RANGE);
+        if (ifRange != null && !ifRangeMatches(ifRange, cached.headers().get(HttpHeaderNames.ETAG), cached.metadata())) {
+            return null;
+        }
+
+        int length = cached.body().length();
+        long[] ranges = parse(requestHeaders.get(HttpHeaderNames.RANGE), length);
+        if (ranges == null) {
+            return null;
+        }
+
+        // The parts of a multipart body each carry the content type of the response
+        boolean multipart = ranges.length > 2;
+        String contentType = null;
+        io.gravitee.common.http.HttpHeaders headers = new io.gravitee.common.http.HttpHeaders();
+        for (Map.Entry<String, List<String>> header : cached.headers().entrySet()) {
+            if (multipart && HttpHeaderNames.CONTENT_TYPE.equalsIgnoreCase(header.getKey())) {
+                contentType = header.getValue().isEmpty() ? null : header.getValue().get(0);
+            } else if (!HttpHeaderNames.CONTENT_LENGTH.equalsIgnoreCase(header.getKey())) {
+                header.getValue().forEach(value -> headers.add(header.getKey(), value));
+            }
+        }
+        if (ranges.length == 0) {
+            headers.add(HttpHeaderNames.CONTENT_RANGE, "bytes */" + length);
+            headers.add(HttpHeaderNames.CONTENT_LENGTH, "0");
+            return new CachedResponse(HttpStatusCode.REQUESTED_RANGE_NOT_SATISFIABLE_416, headers, null, cached.metadata());
+        }
+
+        ByteBuf body = cached.body().getNativeBuffer();
+        ByteBuf partialBody;
+        if (multipart) {
+            String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE);
+            headers.add(HttpHeaderNames.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+            partialBody = multipart(body, ranges, length, boundary, contentType);
+        } else {
+            headers.add(HttpHeaderNames.CONTENT_RANGE, contentRange(ranges[0], ranges[1], length));
+            partialBody = slice(body, ranges[0], ranges[1]);
+        }
+        headers.add(HttpHeaderNames.CONTENT_LENGTH, Integer.toString(partialBody.readableBytes()));
+        return new CachedResponse(HttpStatusCode.PARTIAL_CONTENT_206, headers, Buffer.buffer(partialBody), cached.metadata());
+    }
+
+    /**
+     * {@code If-Range} only allows strong validators: an entity tag compared with the strong comparison, or a date
+     * equal to the {@code Last-Modified} date of the cached response.
+     *
+     * @param etags the {@code ETag} of the representation served, which may differ from the stored one.
+     */
+    static boolean ifRangeMatches(String ifRange, List<String> etags, FrameMetadata metadata) {
+        if (metadata == null) {
+            return false;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            String etag = etags == null || etags.isEmpty() ? metadata.entityTag() : etags.get(0);
+            // Generated tags are shared by every encoding of the body, even those stored strong by previous versions
+            return (
+                etag != null &&
+                !value.startsWith("W/") &&
+                !etag.startsWith("W/") &&
+                !etag.equals(metadata.getGeneratedEtag()) &&
+                etag.equals(value)
+            );
+        }
+        Instant date = HttpDateUtil.parse(value);
+        return date != null && metadata.getLastModified() != -1 && date.getEpochSecond() == metadata.getLastModified();
+    }
+
+    /**
+     * Parses a {@code bytes} range set against the body length. Satisfiable ranges are clipped to the body.
+     *
+     * @return the first and last positions of each satisfiable range, an empty array if none of them is satisfiable,
+     * or {@code null} if the range set is invalid, uses another unit, or has too many ranges.
+     */
+    static long[] parse(String range, long length) {
+        if (range == null || !range.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+        long[] ranges = new long[2 * MAX_RANGES];
+        int count = 0;
+        int specs = 0;
+        int start = BYTES_UNIT.length();
+        while (start <= range.length()) {
+            int end = range.indexOf(',', start);
+            if (end == -1) {
+                end = range.length();
+            }
+            String spec = range.substring(start, end).trim();
+            start = end + 1;
+            if (spec.isEmpty()) {
+                continue;
+            }
+            if (++specs > MAX_RANGES) {
+                return null;
+            }
+
+            int dash = spec.indexOf('-');
+            if (dash == -1) {
+                return null;
+            }
+            long first;
+            long last;
+            if (dash == 0) {
+                long suffixLength = number(spec, 1, spec.length());
+                if (suffixLength < 0) {
+                    return null;
+                }
+                first = Math.max(0, length - suffixLength);
+                last = length - 1;
+                if (suffixLength == 0 || length == 0) {
+                    continue;
+                }
+            } else {
+                first = number(spec, 0, dash);
+                last = dash == spec.length() - 1 ? length - 1 : number(spec, dash + 1, spec.length());
+                if (first < 0 || (dash != spec.length() - 1 && (last < 0 || last < first))) {
+                    return null;
+                }
+                if (first >= length) {
+                    continue;
+                }
+                last = Math.min(last, length - 1);
+            }
+            ranges[count++] = first;
+            ranges[count++] = last;
+        }
+        if (specs == 0) {
+            return null;
+        }
+        long[] satisfiable = new long[count];
+        System.arraycopy(ranges, 0, satisfiable, 0, count);
+        return satisfiable;
+    }
+
+    /**
+     * @return the value of the decimal digits between {@code start} and {@code end}, or -1 if there are none or one of
+     * them is not a digit. Values too large for a long are capped.
+     */
+    private static long number(String value, int start, int end) {
+        if (start >= end) {
+            return -1;
+        }
+        long number = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number > (Long.MAX_VALUE - 9) / 10 ? Long.MAX_VALUE : number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    private static String contentRange(long first, long last, long length) {
+        return "bytes " + first + "-" + last + "/" + length;
+    }
+
+    private static ByteBuf slice(ByteBuf body, long first, long last) {
+        return body.slice(body.readerIndex() + (int) first, (int) (last - first + 1));
+    }
+
+    /**
+     * Builds a {@code multipart/byteranges} body (RFC 9110, section 14.6) out of slices of the body.
+     */
+    private static ByteBuf multipart(ByteBuf body, long[] ranges, long length, String boundary, String contentType) {
+        ByteBuf[] parts = new ByteBuf[ranges.length + 1];
+        for (int i = 0; i < ranges.length; i += 2) {
+            StringBuilder partHeaders = new StringBuilder("\r\n--").append(boundary).append("\r\n");
+            if (contentType != null) {
+                partHeaders.append("Content-Type: ").append(contentType).append("\r\n");
+            }
+            partHeaders.append("Content-Range: ").append(contentRange(ranges[i], ranges[i + 1], length)).append("\r\n\r\n");
+            parts[i] = Unpooled.copiedBuffer(partHeaders, StandardCharsets.ISO_8859_1);
+            parts[i + 1] = slice(body, ranges[i], ranges[i + 1]);
+        }
+        parts[ranges.length] = Unpooled.copiedBuffer("\r\n--" + boundary + "--\r\n", StandardCharsets.ISO_8859_1);
+        return Unpooled.wrappedBuffer(parts);
+    }
+}
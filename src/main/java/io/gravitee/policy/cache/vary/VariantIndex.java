@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.vary;
+
+import io.gravitee.gateway.api.http.HttpHeaders;
+import io.gravitee.policy.cache.key.CacheKeyBuilder;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+/**
+ * The variants of a response that the backend varies on request headers ({@code Vary}). The index is stored in place
+ * of the response under its base key: it records the request headers the response varies on, and the variants put in
+ * cache, each under the base key followed by a hash of the values of these headers. A lookup thus costs at most two
+ * round trips to the cache resource: the base key, then the variant of the request. The index expires with the last of
+ * its variants.
+ * <p>
+ * Binary layout: a marker byte distinguishing the index from a frame, the expiration of the index (8 bytes, epoch
+ * millis), the header names, then the variants, each count on 2 bytes and each value length-prefixed on 2 bytes.
+ */
+public final class VariantIndex {
+
+    static final byte INDEX_MARKER = 0x56;
+
+    // The response varies on more than request headers, so it can never be served from cache (RFC 9110, section 12.5.5)
+    public static final String ANY = "*";
+
+    private final List<String> headers;
+    private final List<String> variants;
+    private long expiresAt;
+
+    /**
+     * @param headers the lower-cased and sorted names of the request headers the response varies on.
+     */
+    public VariantIndex(List<String> headers) {
+        this(headers, new ArrayList<>(), 0);
+    }
+
+    private VariantIndex(List<String> headers, List<String> variants, long expiresAt) {
+        this.headers = Collections.unmodifiableList(headers);
+        this.variants = variants;
+        this.expiresAt = expiresAt;
+    }
+
+    public static boolean isIndex(byte[] value) {
+        return value != null && value.length > 0 && value[0] == INDEX_MARKER;
+    }
+
+    /**
+     * @return the lower-cased and sorted names listed by the {@code Vary} header values, without duplicates. An empty
+     * list if the response does not vary on request headers.
+     */
+    public static List<String> varyHeaders(List<String> varyValues) {
+        if (varyValues == null || varyValues.isEmpty()) {
+            return Collections.emptyList();
+        }
+        TreeSet<String> names = new TreeSet<>();
+        for (String value : varyValues) {
+            if (value == null) {
+                continue;
+            }
+            for (String name : value.split(",")) {
+                String trimmed = name.trim();
+                if (!trimmed.isEmpty()) {
+                    names.add(trimmed.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    public List<String> headers() {
+        return headers;
+    }
+
+    public int size() {
+        return variants.size();
+    }
+
+    public boolean contains(String variant) {
+        return variants.contains(variant);
+    }
+
+    public long expiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Adds a variant expiring at {@code expiresAt}. The index never expires before its variants.
+     */
+    public void add(String variant, long expiresAt) {
+        if (!variants.contains(variant)) {
+            variants.add(variant);
+        }
+        this.expiresAt = Math.max(this.expiresAt, expiresAt);
+    }
+
+    /**
+     * @return the time to live (in seconds) to put the index in cache with at {@code now}.
+     */
+    public long timeToLive(long now) {
+        return Math.max(1, (expiresAt - now + 999) / 1000);
+    }
+
+    /**
+     * @return the identifier of the variant matching the request: a hash of the values of the headers the response
+     * varies on, a missing header being distinct from an empty one.
+     */
+    public String variant(HttpHeaders requestHeaders) {
+        CacheKeyBuilder builder = CacheKeyBuilder.start();
+        for (String header : headers) {
+            builder.append(header).appendValues(requestHeaders.getAll(header));
+        }
+        return builder.build();
+    }
+
+    public static String key(String baseKey, String separator, String variant) {
+        return baseKey + separator + variant;
+    }
+
+    public byte[] encode() {
+        byte[][] names = new byte[headers.size()][];
+        int size = 1 + 8 + 2 + 2;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = headers.get(i).getBytes(StandardCharsets.UTF_8);
+            size += 2 + names[i].length;
+        }
+        for (String variant : variants) {
+            size += 2 + variant.length();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size).put(INDEX_MARKER).putLong(expiresAt);
+        buffer.putShort((short) names.length);
+        for (byte[] name : names) {
+            buffer.putShort((short) name.length).put(name);
+        }
+        buffer.putShort((short) variants.size());
+        for (String variant : variants) {
+            buffer.putShort((short) variant.length()).put(variant.getBytes(StandardCharsets.US_ASCII));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value is not a well formed index.
+     */
+    public static VariantIndex decode(byte[] value) {
+        if (!isIndex(value)) {
+            throw new IllegalArgumentException("Not a variant index");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(value, 1, value.length - 1);
+        try {
+            long expiresAt = buffer.getLong();
+            List<String> headers = readStrings(buffer, StandardCharsets.UTF_8);
+            List<String> variants = readStrings(buffer, StandardCharsets.US_ASCII);
+            if (headers.isEmpty() || buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Malformed variant index");
+            }
+            return new VariantIndex(headers, variants, expiresAt);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated variant index", e);
+        }
+    }
+
+    private static List<String> readStrings(ByteBuffer buffer, Charset charset) {
+        int count = Short.toUnsignedInt(buffer.getShort());
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+            buffer.get(bytes);
+            strings.add(new String(bytes, charset));
+        }
+        return strings;
+    }
+}
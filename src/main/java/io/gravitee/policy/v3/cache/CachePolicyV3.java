@@ -35,21 +35,40 @@ import io.gravitee.policy.api.annotations.RequireResource;
 import io.gravitee.policy.cache.CacheAction;
 import io.gravitee.policy.cache.CacheControl;
 import io.gravitee.policy.cache.CachedResponse;
+import io.gravitee.policy.cache.StaleEntry;
+import io.gravitee.policy.cache.coalescing.RequestCoalescer;
 import io.gravitee.policy.cache.configuration.CachePolicyConfiguration;
+import io.gravitee.policy.cache.configuration.CachePolicyPlan;
+import io.gravitee.policy.cache.configuration.CacheScope;
 import io.gravitee.policy.cache.frame.CacheFrame;
+import io.gravitee.policy.cache.frame.FrameMetadata;
+import io.gravitee.policy.cache.key.CacheKeyBuilder;
+import io.gravitee.policy.cache.key.CacheKeyRules;
+import io.gravitee.policy.cache.metrics.CacheMetrics;
+import io.gravitee.policy.cache.negative.ErrorKeyBudget;
 import io.gravitee.policy.cache.resource.CacheElement;
+import io.gravitee.policy.cache.tag.TagIndex;
+import io.gravitee.policy.cache.tag.TagInvalidator;
+import io.gravitee.policy.cache.util.BoundedBodyAccumulator;
 import io.gravitee.policy.cache.util.CacheControlUtil;
+import io.gravitee.policy.cache.util.ConditionalRequestUtil;
 import io.gravitee.policy.cache.util.ExpiresUtil;
+import io.gravitee.policy.cache.util.RangeUtil;
+import io.gravitee.policy.cache.vary.VariantIndex;
 import io.gravitee.policy.v3.cache.proxy.CacheProxyConnection;
 import io.gravitee.policy.v3.cache.proxy.EvaluableProxyResponse;
 import io.gravitee.resource.api.ResourceManager;
 import io.gravitee.resource.cache.api.Cache;
 import io.gravitee.resource.cache.api.CacheResource;
 import io.gravitee.resource.cache.api.Element;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
 import java.time.Instant;
-import java.util.Collections;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.ToLongFunction;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -66,12 +85,43 @@ public class CachePolicyV3 {
     // Policy cache action
     public static final String CACHE_ACTION_QUERY_PARAMETER = "cache";
     public static final String X_GRAVITEE_CACHE_ACTION = "X-Gravitee-Cache";
+    // Tags whose elements are evicted by the PURGE action
+    public static final String X_GRAVITEE_CACHE_TAGS = "X-Gravitee-Cache-Tags";
+
+    private static final String REVALIDATION_PREFIX = "revalidate:";
 
     protected Cache cache;
     protected CacheAction action;
+    private final CachePolicyPlan plan;
+    // Shared by the policy instances of the same configuration, null if error caching is disabled
+    protected final ErrorKeyBudget errorKeyBudget;
+    // Key of the request, and the variant index found under it with the variant of the request when the backend varies its responses
+    private String baseKey;
+    private VariantIndex variantIndex;
+    private String variant;
+    // Variant index to put in cache once the variant of the response is stored
+    private VariantIndex pendingVariantIndex;
+    // Prefix of the tag index keys, when the backend tags its responses
+    private String tagPrefix;
+    // Vert.x context of the request, on which a coalesced request resumes
+    private Context context;
+    // Range headers removed from the request to fetch the whole body, answered from it if it is not put in cache
+    private HttpHeaders range;
+    // Set while a HEAD request is turned into a GET request to fill the cache, with the method attribute to restore
+    private boolean methodOverridden;
+    private Object requestMethod;
 
     public CachePolicyV3(final CachePolicyConfiguration cachePolicyConfiguration) {
         this.cachePolicyConfiguration = cachePolicyConfiguration;
+        this.plan = new CachePolicyPlan(cachePolicyConfiguration);
+        this.errorKeyBudget = plan.isErrorCachingEnabled() ? ErrorKeyBudget.of(cachePolicyConfiguration) : null;
+    }
+
+    /**
+     * The configuration compiled once, when the policy is created.
+     */
+    protected CachePolicyPlan plan() {
+        return plan;
     }
 
     @OnRequest
@@ -82,11 +132,15 @@ public class CachePolicyV3 {
             log.debug("REFRESH action is disabled by policy configuration, ignoring for request {}", request.id());
             action = null;
         }
+        if (action == CacheAction.PURGE && !cachePolicyConfiguration.isAllowPurgeAction()) {
+            log.debug("PURGE action is disabled by policy configuration, ignoring for request {}", request.id());
+            action = null;
+        }
 
         if (action != CacheAction.BY_PASS) {
-            if (isCachedMethod(request.method())) {
+            if (action == CacheAction.PURGE || isCachedMethod(request.method())) {
                 // It's safe to do so because a new instance of policy is created for each request.
-                String cacheName = cachePolicyConfiguration.getCacheName();
+                String cacheName = plan().cacheName();
                 CacheResource<?> cacheResource = executionContext
                     .getComponent(ResourceManager.class)
                     .getResource(cacheName, CacheResource.class);
@@ -100,6 +154,11 @@ public class CachePolicyV3 {
                     policyChain.failWith(PolicyResult.failure("No cache named [ " + cacheName + " ] has been found."));
                     return;
                 }
+                plan().resolveKeySeparator(cacheResource);
+                if (action == CacheAction.PURGE) {
+                    purge(request, response, executionContext, policyChain);
+                    return;
+                }
 
                 // Override the invoker
                 Invoker defaultInvoker = (Invoker) executionContext.getAttribute(ExecutionContext.ATTR_INVOKER);
@@ -112,6 +171,31 @@ public class CachePolicyV3 {
         policyChain.doNext(request, response);
     }
 
+    /**
+     * Evicts the elements of the tags listed by the request. The request then reaches the backend without the cache.
+     */
+    private void purge(Request request, Response response, ExecutionContext executionContext, PolicyChain policyChain) {
+        List<String> tags = TagIndex.parseTags(request.headers().getAll(X_GRAVITEE_CACHE_TAGS));
+        // Do not propagate specific header
+        request.headers().remove(X_GRAVITEE_CACHE_TAGS);
+        if (tags.isEmpty()) {
+            log.debug("PURGE action without tags, nothing to evict for request {}", request.id());
+            policyChain.doNext(request, response);
+            return;
+        }
+
+        String prefix = executionContext.getAttribute(ExecutionContext.ATTR_API) + keySeparator(executionContext);
+        List<String> tagKeys = tags.stream().map(tag -> TagIndex.key(prefix, tag)).toList();
+        TagInvalidator.purge(cache, tagKeys, key -> {}).whenComplete((count, err) -> {
+            if (err != null) {
+                log.warn("Cannot evict the elements of tags {} from the cache {}", tags, cache.getName(), err);
+            } else {
+                log.info("{} elements evicted from the cache {} for tags {}", count, cache.getName(), tags);
+            }
+            policyChain.doNext(request, response);
+        });
+    }
+
     class CacheInvoker implements Invoker {
 
         private final Invoker invoker;
@@ -122,87 +206,363 @@ public class CachePolicyV3 {
 
         @Override
         public void invoke(ExecutionContext executionContext, ReadStream<Buffer> stream, Handler<ProxyConnection> connectionHandler) {
-            String cacheId = hash(executionContext);
-            log.debug("Looking for element in cache with the key {}", cacheId);
+            context = Vertx.currentContext();
+            baseKey = hash(executionContext);
+            log.debug("Looking for element in cache with the key {}", baseKey);
+            if (cachePolicyConfiguration.getTagHeader() != null) {
+                tagPrefix = executionContext.getAttribute(ExecutionContext.ATTR_API) + keySeparator(executionContext);
+            }
 
             cache
-                .getBinaryAsync(cacheId)
+                .getBinaryAsync(baseKey)
                 .onComplete(elementAsyncResult -> {
                     Element elt = elementAsyncResult.result();
-                    byte[] frame = elt == null ? null : CacheFrame.asFrame(elt.value());
+                    byte[] value = elt == null ? null : CacheFrame.asFrame(elt.value());
+                    if (!VariantIndex.isIndex(value)) {
+                        onLookup(executionContext, stream, connectionHandler, baseKey, elt);
+                        return;
+                    }
+
+                    // The backend varies the responses of this key, look for the variant matching the request
+                    try {
+                        variantIndex = VariantIndex.decode(value);
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Cannot decode variant index for key {}, evicting and refetching", baseKey, e);
+                        evictFromCache(baseKey);
+                        onLookup(executionContext, stream, connectionHandler, baseKey, null);
+                        return;
+                    }
+                    variant = variantIndex.variant(executionContext.request().headers());
+                    String variantKey = VariantIndex.key(baseKey, keySeparator(executionContext), variant);
+                    log.debug("Responses for key {} vary on {}, looking for the variant {}", baseKey, variantIndex.headers(), variantKey);
+                    cache
+                        .getBinaryAsync(variantKey)
+                        .onComplete(variantResult ->
+                            onLookup(executionContext, stream, connectionHandler, variantKey, variantResult.result())
+                        );
+                });
+        }
+
+        private void onLookup(
+            ExecutionContext executionContext,
+            ReadStream<Buffer> stream,
+            Handler<ProxyConnection> connectionHandler,
+            String cacheId,
+            Element elt
+        ) {
+            byte[] frame = elt == null ? null : CacheFrame.asFrame(elt.value());
+
+            if (frame != null && action != CacheAction.REFRESH && !CacheFrame.isLegacyFormat(frame) && !CacheFrame.isValid(frame)) {
+                log.debug("Cache frame for key {} is corrupted, evicting and refetching", cacheId);
+                evictFromCache(cacheId);
+            } else if (frame != null && action != CacheAction.REFRESH) {
+                // Try serving from cache. Legacy entries (JSON from policy <= 4.0.0-alpha.2)
+                // are served read-only to avoid thundering-herd refetches during rolling
+                // upgrades on shared Redis. See APIM-13628.
+                boolean legacy = CacheFrame.isLegacyFormat(frame);
+                try {
+                    CachedResponse cached = legacy
+                        ? CacheFrame.decodeLegacy(frame)
+                        : CacheFrame.decodeFor(frame, acceptEncoding(executionContext));
+                    long now = System.currentTimeMillis();
+                    if (cached.metadata() != null && cached.metadata().isStale(now)) {
+                        revalidate(executionContext, stream, connectionHandler, cacheId, new StaleEntry(frame, cached), now);
+                        return;
+                    }
+                    Request request = executionContext.request();
+                    if (legacy) {
+                        log.debug("Serving legacy-format cache entry for key {} (read-only; entry will not be rewritten)", cacheId);
+                        cached = request.method() == HttpMethod.HEAD ? cached.withoutBody() : cached;
+                    } else if (ConditionalRequestUtil.isNotModified(request.method(), request.headers(), cached)) {
+                        log.debug("An element has been found for key {}, the initial client already holds it", cacheId);
+                        cached = ConditionalRequestUtil.notModified(cached);
+                    } else if (request.method() == HttpMethod.HEAD) {
+                        log.debug("An element has been found for key {}, returning its headers to the initial client", cacheId);
+                        cached = cached.withoutBody();
+                    } else {
+                        CachedResponse partial = RangeUtil.partial(request.method(), request.headers(), cached);
+                        if (partial != null) {
+                            log.debug(
+                                "An element has been found for key {}, returning the requested ranges to the initial client",
+                                cacheId
+                            );
+                            cached = partial;
+                        } else {
+                            log.debug("An element has been found for key {}, returning the cached response to the initial client", cacheId);
+                        }
+                    }
+                    serveCachedResponse(executionContext, stream, connectionHandler, cached);
+                    return;
+                } catch (Exception e) {
+                    log.warn("Cannot decode {} cache entry for key {}, evicting and refetching", legacy ? "legacy" : "frame", cacheId, e);
+                    evictFromCache(cacheId);
+                }
+            } else if (elt != null && action == CacheAction.REFRESH) {
+                log.info(
+                    "A refresh action has been received for key {}, invoke backend with invoker {}",
+                    cacheId,
+                    invoker.getClass().getName()
+                );
+            } else if (frame == null && elt != null) {
+                log.debug("Cache entry for key {} has unrecognized value type, evicting and refetching", cacheId);
+                evictFromCache(cacheId);
+            } else {
+                log.debug("No element for key {}, invoke backend with invoker {}", cacheId, invoker.getClass().getName());
+            }
+
+            invokeBackend(executionContext, stream, connectionHandler, cacheId, null, null);
+        }
+
+        private void serveCachedResponse(
+            ExecutionContext executionContext,
+            ReadStream<Buffer> stream,
+            Handler<ProxyConnection> connectionHandler,
+            CachedResponse cached
+        ) {
+            ProxyConnection proxyConnection = new CacheProxyConnection(cached);
+            connectionHandler.handle(proxyConnection);
+            stream.bodyHandler(proxyConnection::write).endHandler(aVoid -> proxyConnection.end());
+            executionContext.request().resume();
+        }
+
+        /**
+         * The entry is past its soft time to live. Within its stale-while-revalidate window, a single request per key
+         * refreshes the entry through the backend and concurrent requests are served the stale copy without waiting.
+         * Past that window, the entry is refetched and only kept as a fallback for its stale-if-error window.
+         * <p>
+         * In both cases, an entry carrying validators is refetched with a conditional request: if the backend answers
+         * {@code 304 Not Modified}, its time to live is extended without its body being sent again.
+         */
+        private void revalidate(
+            ExecutionContext executionContext,
+            ReadStream<Buffer> stream,
+            Handler<ProxyConnection> connectionHandler,
+            String cacheId,
+            StaleEntry staleEntry,
+            long now
+        ) {
+            CachedResponse stale = staleEntry.response();
+            CachedResponse fallback = stale.metadata().isWithinStaleIfError(now) ? stale : null;
+            if (!stale.metadata().isWithinStaleWhileRevalidate(now)) {
+                log.debug("Element for key {} is stale, invoke backend with invoker {}", cacheId, invoker.getClass().getName());
+                invokeBackend(executionContext, stream, connectionHandler, cacheId, fallback, staleEntry);
+                return;
+            }
+            if (executionContext.request().method() == HttpMethod.HEAD) {
+                log.debug("Element for key {} is stale, returning its headers without refreshing it for a HEAD request", cacheId);
+                serveCachedResponse(executionContext, stream, connectionHandler, stale.withoutBody());
+                return;
+            }
+
+            RequestCoalescer.Flight revalidation = RequestCoalescer.join(
+                REVALIDATION_PREFIX + cache.getName() + cacheId,
+                cachePolicyConfiguration.getCoalesceTimeoutMillis()
+            );
+            if (revalidation.isLeader()) {
+                log.debug("Element for key {} is stale, invoke backend to refresh it", cacheId);
+                fetchAndStore(executionContext, stream, connectionHandler, cacheId, revalidation, fallback, staleEntry);
+                return;
+            }
+
+            log.debug("Element for key {} is stale and already being refreshed, returning the stale response", cacheId);
+            serveCachedResponse(executionContext, stream, connectionHandler, stale);
+        }
+
+        /**
+         * No usable cached value: invoke the backend and store the response in cache. When request coalescing is
+         * enabled, concurrent misses on the same key wait for the first backend call instead of issuing their own.
+         * When a stale {@code fallback} is given, it is served instead of a non-cacheable server error. When a
+         * {@code staleEntry} is given, it is validated with the backend rather than refetched.
+         * <p>
+         * A {@code HEAD} request is either forwarded to the backend without its response being put in cache, as it has
+         * no body to serve {@code GET} requests from, or turned into a {@code GET} request filling the cache when
+         * enabled, for the backend call only. The client still gets no body, as the server never sends one in response to
+         * a {@code HEAD} request.
+         */
+        private void invokeBackend(
+            ExecutionContext executionContext,
+            ReadStream<Buffer> stream,
+            Handler<ProxyConnection> connectionHandler,
+            String cacheId,
+            CachedResponse fallback,
+            StaleEntry staleEntry
+        ) {
+            if (executionContext.request().method() == HttpMethod.HEAD) {
+                if (!cachePolicyConfiguration.isFillOnHeadMiss()) {
+                    log.debug("No usable element for key {}, forward the HEAD request to the backend without caching", cacheId);
+                    invoker.invoke(executionContext, stream, connectionHandler);
+                    return;
+                }
+                methodOverridden = true;
+                requestMethod = executionContext.getAttribute(ExecutionContext.ATTR_REQUEST_METHOD);
+                executionContext.setAttribute(ExecutionContext.ATTR_REQUEST_METHOD, HttpMethod.GET);
+            }
+            if (!cachePolicyConfiguration.isCoalesceRequests() || action == CacheAction.REFRESH) {
+                fetchAndStore(executionContext, stream, connectionHandler, cacheId, null, fallback, staleEntry);
+                return;
+            }
+
+            RequestCoalescer.Flight flight = RequestCoalescer.join(
+                cache.getName() + cacheId,
+                cachePolicyConfiguration.getCoalesceTimeoutMillis()
+            );
+            if (flight.isLeader()) {
+                fetchAndStore(executionContext, stream, connectionHandler, cacheId, flight, fallback, staleEntry);
+                return;
+            }
 
-                    if (frame != null && action != CacheAction.REFRESH) {
-                        // Try serving from cache. Legacy entries (JSON from policy <= 4.0.0-alpha.2)
-                        // are served read-only to avoid thundering-herd refetches during rolling
-                        // upgrades on shared Redis. See APIM-13628.
-                        boolean legacy = CacheFrame.isLegacyFormat(frame);
+            log.debug("A backend call is already in flight for key {}, waiting for its response", cacheId);
+            flight
+                .frame(context)
+                .whenComplete((frame, err) -> {
+                    if (frame != null) {
                         try {
-                            CachedResponse cached = legacy ? CacheFrame.decodeLegacy(frame) : CacheFrame.decode(frame);
-                            ProxyConnection proxyConnection = new CacheProxyConnection(cached);
-                            if (legacy) {
-                                log.debug("Serving legacy-format cache entry for key {} (read-only; entry will not be rewritten)", cacheId);
-                            } else {
-                                log.debug(
-                                    "An element has been found for key {}, returning the cached response to the initial client",
-                                    cacheId
-                                );
-                            }
-                            connectionHandler.handle(proxyConnection);
-                            stream.bodyHandler(proxyConnection::write).endHandler(aVoid -> proxyConnection.end());
-                            executionContext.request().resume();
+                            CachedResponse cached = CacheFrame.decodeFor(frame, acceptEncoding(executionContext));
+                            log.debug("Serving response of the in-flight backend call for key {}", cacheId);
+                            restoreMethod(executionContext);
+                            serveCachedResponse(executionContext, stream, connectionHandler, cached);
                             return;
                         } catch (Exception e) {
-                            log.warn(
-                                "Cannot decode {} cache entry for key {}, evicting and refetching",
-                                legacy ? "legacy" : "frame",
-                                cacheId,
-                                e
-                            );
-                            evictFromCache(cacheId);
+                            log.warn("Cannot decode in-flight cache frame for key {}, invoke backend", cacheId, e);
                         }
-                    } else if (elt != null && action == CacheAction.REFRESH) {
-                        log.info(
-                            "A refresh action has been received for key {}, invoke backend with invoker {}",
-                            cacheId,
-                            invoker.getClass().getName()
-                        );
-                    } else if (frame == null && elt != null) {
-                        log.debug("Cache entry for key {} has unrecognized value type, evicting and refetching", cacheId);
-                        evictFromCache(cacheId);
-                    } else {
-                        log.debug("No element for key {}, invoke backend with invoker {}", cacheId, invoker.getClass().getName());
                     }
+                    log.debug("In-flight backend call for key {} did not produce a cacheable response, invoke backend", cacheId);
+                    fetchAndStore(executionContext, stream, connectionHandler, cacheId, null, fallback, staleEntry);
+                });
+        }
 
-                    // No usable cached value: invoke backend and store the response in cache.
-                    invoker.invoke(executionContext, stream, proxyConnection -> {
-                        log.debug("Put response in cache for key {} and request {}", cacheId, executionContext.request().id());
-
-                        ProxyConnection cacheProxyConnection = new ProxyConnection() {
-                            @Override
-                            public ProxyConnection write(Buffer buffer) {
-                                proxyConnection.write(buffer);
-                                return this;
-                            }
-
-                            @Override
-                            public void end() {
-                                proxyConnection.end();
-                            }
-
-                            @Override
-                            public ProxyConnection responseHandler(Handler<ProxyResponse> responseHandler) {
-                                return proxyConnection.responseHandler(
-                                    new CacheResponseHandler(cacheId, responseHandler, executionContext)
-                                );
-                            }
-                        };
-
-                        connectionHandler.handle(cacheProxyConnection);
+        private void fetchAndStore(
+            ExecutionContext executionContext,
+            ReadStream<Buffer> stream,
+            Handler<ProxyConnection> connectionHandler,
+            String cacheId,
+            RequestCoalescer.Flight flight,
+            CachedResponse fallback,
+            StaleEntry staleEntry
+        ) {
+            // Fill the cache with the whole body, ranges are served from it. A body that may exceed the size limit is not
+            // fetched in full only to be dropped: the backend answers the range itself.
+            if (cachePolicyConfiguration.getMaxBodySizeBytes() <= 0) {
+                HttpHeaders removed = RangeUtil.removeRange(executionContext.request().method(), executionContext.request().headers());
+                if (removed != null) {
+                    range = removed;
+                }
+            }
+            StaleEntry validated = makeConditional(executionContext, staleEntry);
+            try {
+                invoker.invoke(executionContext, stream, proxyConnection -> {
+                    log.debug("Put response in cache for key {} and request {}", cacheId, executionContext.request().id());
+                    // Followers must not wait for the timeout when the backend call fails
+                    proxyConnection.exceptionHandler(err -> {
+                        fail(flight, err);
+                        restoreMethod(executionContext);
                     });
+
+                    ProxyConnection cacheProxyConnection = new ProxyConnection() {
+                        @Override
+                        public ProxyConnection write(Buffer buffer) {
+                            proxyConnection.write(buffer);
+                            return this;
+                        }
+
+                        @Override
+                        public void end() {
+                            proxyConnection.end();
+                        }
+
+                        @Override
+                        public ProxyConnection cancel() {
+                            fail(flight, new CancellationException("Backend call cancelled for key " + cacheId));
+                            proxyConnection.cancel();
+                            return this;
+                        }
+
+                        @Override
+                        public ProxyConnection exceptionHandler(Handler<Throwable> exceptionHandler) {
+                            proxyConnection.exceptionHandler(err -> {
+                                fail(flight, err);
+                                restoreMethod(executionContext);
+                                exceptionHandler.handle(err);
+                            });
+                            return this;
+                        }
+
+                        @Override
+                        public ProxyConnection responseHandler(Handler<ProxyResponse> responseHandler) {
+                            return proxyConnection.responseHandler(
+                                new CacheResponseHandler(cacheId, responseHandler, executionContext, flight, fallback, validated)
+                            );
+                        }
+                    };
+
+                    connectionHandler.handle(cacheProxyConnection);
                 });
+            } catch (RuntimeException e) {
+                fail(flight, e);
+                restoreMethod(executionContext);
+                throw e;
+            }
         }
     }
 
+    /**
+     * Switches a {@code HEAD} request turned into a {@code GET} request to fill the cache back to its method, once the
+     * backend answered.
+     */
+    private void restoreMethod(ExecutionContext executionContext) {
+        if (!methodOverridden) {
+            return;
+        }
+        methodOverridden = false;
+        if (requestMethod == null) {
+            executionContext.removeAttribute(ExecutionContext.ATTR_REQUEST_METHOD);
+        } else {
+            executionContext.setAttribute(ExecutionContext.ATTR_REQUEST_METHOD, requestMethod);
+        }
+    }
+
+    /**
+     * @return the stale entry if the backend request has been made conditional to validate it, {@code null} otherwise.
+     */
+    private static StaleEntry makeConditional(ExecutionContext executionContext, StaleEntry staleEntry) {
+        if (staleEntry == null) {
+            return null;
+        }
+        Request request = executionContext.request();
+        return ConditionalRequestUtil.addValidators(request.method(), request.headers(), staleEntry.response().metadata())
+            ? staleEntry
+            : null;
+    }
+
+    private static void fail(RequestCoalescer.Flight flight, Throwable throwable) {
+        if (flight != null) {
+            flight.fail(throwable);
+        }
+    }
+
+    private void putInCache(String cacheId, byte[] frame, FrameMetadata metadata) {
+        putElement(cacheId, frame, metadata.getHardTimeToLive());
+    }
+
+    /**
+     * Adds the element to the index of each tag listed by the backend in the configured header.
+     */
+    private void recordTags(String cacheId, List<String> values, FrameMetadata metadata) {
+        List<String> tags = TagIndex.parseTags(values);
+        if (!tags.isEmpty()) {
+            log.debug("Element {} is tagged with {}", cacheId, tags);
+            List<String> tagKeys = tags.stream().map(tag -> TagIndex.key(tagPrefix, tag)).toList();
+            TagInvalidator.record(cache, tagKeys, cacheId, metadata.getHardTimeToLive());
+        }
+    }
+
+    private void putElement(String cacheId, byte[] value, long timeToLive) {
+        CacheElement element = new CacheElement(cacheId, value);
+        element.setTimeToLive(timeToLive);
+
+        cache.putBinaryAsync(element).onFailure(err -> log.warn("Cannot store element with key {} into the cache", cacheId, err));
+    }
+
     private void evictFromCache(String cacheId) {
         cache
             .evictAsync(cacheId)
@@ -214,33 +574,184 @@ public class CachePolicyV3 {
         private final String cacheId;
         private final Handler<ProxyResponse> responseHandler;
         private final ExecutionContext executionContext;
+        private final RequestCoalescer.Flight flight;
+        private final CachedResponse fallback;
+        private final StaleEntry validated;
 
-        CacheResponseHandler(final String cacheId, final Handler<ProxyResponse> responseHandler, ExecutionContext executionContext) {
+        CacheResponseHandler(
+            final String cacheId,
+            final Handler<ProxyResponse> responseHandler,
+            ExecutionContext executionContext,
+            RequestCoalescer.Flight flight,
+            CachedResponse fallback,
+            StaleEntry validated
+        ) {
             this.cacheId = cacheId;
             this.responseHandler = responseHandler;
             this.executionContext = executionContext;
+            this.flight = flight;
+            this.fallback = fallback;
+            this.validated = validated;
         }
 
         @Override
         public void handle(ProxyResponse proxyResponse) {
-            if (
-                cachePolicyConfiguration.getResponseCondition() != null &&
-                evaluate(executionContext, proxyResponse, cachePolicyConfiguration.getResponseCondition())
-            ) {
-                responseHandler.handle(new CacheProxyResponse(proxyResponse, cacheId));
-            } else if (
-                cachePolicyConfiguration.getResponseCondition() == null &&
-                proxyResponse.status() >= HttpStatusCode.OK_200 &&
-                proxyResponse.status() < HttpStatusCode.MULTIPLE_CHOICES_300
-            ) {
-                responseHandler.handle(new CacheProxyResponse(proxyResponse, cacheId));
+            restoreMethod(executionContext);
+            try {
+                onResponse(proxyResponse);
+            } catch (RuntimeException e) {
+                fail(flight, e);
+                throw e;
+            }
+        }
+
+        private void onResponse(ProxyResponse proxyResponse) {
+            if (validated != null && proxyResponse.status() == HttpStatusCode.NOT_MODIFIED_304) {
+                refresh(proxyResponse);
+                return;
+            }
+            if (!isStorable(proxyResponse)) {
+                log.debug("Response for key {} not put in cache because of its Cache-Control or Vary headers", cacheId);
+                CacheMetrics.report(executionContext, CacheMetrics.Reason.NOT_STORABLE);
+                release(null);
+                forward(proxyResponse);
+                return;
+            }
+            boolean cacheable = isCacheable(proxyResponse);
+            // A stale entry kept for stale-if-error is served instead of being replaced by a server error
+            boolean servesStale = !cacheable && fallback != null && proxyResponse.status() >= HttpStatusCode.INTERNAL_SERVER_ERROR_500;
+            long errorTimeToLive = cacheable || servesStale ? 0 : errorTimeToLive(executionContext, cacheId, proxyResponse.status());
+            if (cacheable && plan().isErrorCachingEnabled()) {
+                errorKeyBudget.release(cacheId);
+            }
+            if (cacheable || errorTimeToLive > 0) {
+                long maxBodySize = cachePolicyConfiguration.getMaxBodySizeBytes();
+                if (BoundedBodyAccumulator.exceedsMaxSize(proxyResponse.headers().getFirst(HttpHeaderNames.CONTENT_LENGTH), maxBodySize)) {
+                    log.debug("Response for key {} not put in cache because its body exceeds {} bytes", cacheId, maxBodySize);
+                    CacheMetrics.report(executionContext, CacheMetrics.Reason.BODY_TOO_LARGE);
+                    releaseErrorKey(cacheId, errorTimeToLive);
+                    release(null);
+                    forward(proxyResponse);
+                } else {
+                    responseHandler.handle(new CacheProxyResponse(proxyResponse, cacheId, errorTimeToLive));
+                }
             } else {
                 log.debug(
                     "Response for key {} not put in cache because of the status code {} or the condition",
                     cacheId,
                     proxyResponse.status()
                 );
+                release(null);
+                if (servesStale) {
+                    log.debug("Returning the stale response for key {} instead of the backend status {}", cacheId, proxyResponse.status());
+                    serveInstead(proxyResponse, fallback);
+                    return;
+                }
+                forward(proxyResponse);
+            }
+        }
+
+        /**
+         * Forward the backend response, which is not put in cache, to the client. When the range requested by the client
+         * was removed to fetch the whole body, it is answered from that body.
+         */
+        private void forward(ProxyResponse proxyResponse) {
+            if (range == null) {
                 responseHandler.handle(proxyResponse);
+                return;
+            }
+            io.gravitee.common.http.HttpHeaders headers = new io.gravitee.common.http.HttpHeaders();
+            proxyResponse.headers().forEach(entry -> headers.add(entry.getKey(), entry.getValue()));
+            Buffer body = Buffer.buffer();
+            proxyResponse
+                .bodyHandler(body::appendBuffer)
+                .endHandler(aVoid -> {
+                    CachedResponse whole = new CachedResponse(proxyResponse.status(), headers, body);
+                    CachedResponse partial = RangeUtil.partial(HttpMethod.GET, range, whole);
+                    new CacheProxyConnection(partial != null ? partial : whole).responseHandler(responseHandler).end();
+                });
+            proxyResponse.resume();
+        }
+
+        /**
+         * The backend confirmed that the stale entry is still valid. Its headers are updated with those of the {@code 304}
+         * response, which take precedence over the stored ones, its time to live is extended from them, and it is stored
+         * again without its body being encoded again. The client, which did not send the validators itself, is served the
+         * updated entry.
+         */
+        private void refresh(ProxyResponse proxyResponse) {
+            CachedResponse stale = validated.response();
+            boolean storable = isStorable(proxyResponse);
+            // The headers as stored, rather than as served for the encoding of the request
+            io.gravitee.common.http.HttpHeaders updated = ConditionalRequestUtil.updateHeaders(
+                CacheFrame.decodeHeaders(validated.frame()),
+                proxyResponse.headers()
+            );
+            // The metadata is resolved from the headers of the response, which is not forwarded
+            HttpHeaders headers = proxyResponse.headers();
+            Set<String> names = new HashSet<>();
+            headers.forEach(entry -> names.add(entry.getKey()));
+            names.forEach(headers::remove);
+            updated.forEach((name, values) -> values.forEach(value -> headers.add(name, value)));
+
+            FrameMetadata metadata = resolveMetadata(proxyResponse, stale.status());
+            metadata.setGeneratedEtag(stale.metadata().getGeneratedEtag());
+            if (metadata.getGeneratedEtag() != null && metadata.getGeneratedEtag().equals(metadata.getEtag())) {
+                // The generated validator is not one to send to the backend
+                metadata.setEtag(null);
+            }
+            byte[] frame = CacheFrame.withMetadata(validated.frame(), metadata, updated);
+            if (storable) {
+                log.debug("Element for key {} is still valid, extending its time to live to {}s", cacheId, metadata.getSoftTimeToLive());
+                release(frame);
+                putInCache(cacheId, frame, metadata);
+                if (variant != null) {
+                    // The index must not expire before the variant it now keeps longer
+                    recordVariant(variantIndex, variant, metadata);
+                    putVariantIndex();
+                }
+                if (tagPrefix != null) {
+                    recordTags(cacheId, headers.getAll(cachePolicyConfiguration.getTagHeader()), metadata);
+                }
+            } else {
+                log.debug("Element for key {} is still valid but its Cache-Control directives forbid to store it again", cacheId);
+                CacheMetrics.report(executionContext, CacheMetrics.Reason.NOT_STORABLE);
+                release(null);
+            }
+            serveInstead(proxyResponse, CacheFrame.decodeFor(frame, acceptEncoding(executionContext)));
+        }
+
+        /**
+         * Drain the backend response and serve the cached one instead.
+         */
+        private void serveInstead(ProxyResponse proxyResponse, CachedResponse cached) {
+            proxyResponse.bodyHandler(chunk -> {}).endHandler(aVoid -> {});
+            proxyResponse.resume();
+            new CacheProxyConnection(cached).responseHandler(responseHandler).end();
+        }
+
+        private boolean isCacheable(ProxyResponse proxyResponse) {
+            if (proxyResponse.status() == HttpStatusCode.PARTIAL_CONTENT_206) {
+                // A range the backend answered itself can't be served as the whole body
+                return false;
+            }
+            CachePolicyPlan plan = plan();
+            if (plan.hasCacheableStatuses() && !plan.isCacheableStatus(proxyResponse.status())) {
+                return false;
+            }
+            String responseCondition = plan.responseCondition();
+            if (responseCondition != null) {
+                return evaluate(executionContext, proxyResponse, responseCondition);
+            }
+            return (
+                plan.hasCacheableStatuses() ||
+                (proxyResponse.status() >= HttpStatusCode.OK_200 && proxyResponse.status() < HttpStatusCode.MULTIPLE_CHOICES_300)
+            );
+        }
+
+        private void release(byte[] frame) {
+            if (flight != null) {
+                flight.complete(frame);
             }
         }
 
@@ -248,19 +759,22 @@ public class CachePolicyV3 {
 
             private final ProxyResponse proxyResponse;
             private final String cacheId;
+            // 0 unless the response is put in cache as an error
+            private final long errorTimeToLive;
 
-            final Buffer content = Buffer.buffer();
+            final BoundedBodyAccumulator content = new BoundedBodyAccumulator(cachePolicyConfiguration.getMaxBodySizeBytes());
 
-            CacheProxyResponse(final ProxyResponse proxyResponse, final String cacheId) {
+            CacheProxyResponse(final ProxyResponse proxyResponse, final String cacheId, final long errorTimeToLive) {
                 this.proxyResponse = proxyResponse;
                 this.cacheId = cacheId;
+                this.errorTimeToLive = errorTimeToLive;
             }
 
             @Override
             public ReadStream<Buffer> bodyHandler(Handler<Buffer> bodyHandler) {
                 this.proxyResponse.bodyHandler(chunk -> {
                     bodyHandler.handle(chunk);
-                    content.appendBuffer(chunk);
+                    content.append(chunk);
                 });
                 return this;
             }
@@ -269,29 +783,58 @@ public class CachePolicyV3 {
             public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
                 this.proxyResponse.endHandler(result -> {
                     endHandler.handle(result);
+                    try {
+                        store();
+                    } catch (RuntimeException e) {
+                        log.warn("Cannot put response in cache for key {}", cacheId, e);
+                        fail(flight, e);
+                    }
+                });
 
-                    io.gravitee.common.http.HttpHeaders headers = new io.gravitee.common.http.HttpHeaders();
-                    proxyResponse.headers().forEach(entry -> headers.add(entry.getKey(), entry.getValue()));
+                return this;
+            }
 
-                    long timeToLive = -1;
-                    if (cachePolicyConfiguration.isUseResponseCacheHeaders()) {
-                        timeToLive = resolveTimeToLive(proxyResponse);
-                    }
-                    if (timeToLive == -1 || cachePolicyConfiguration.getTimeToLiveSeconds() < timeToLive) {
-                        timeToLive = cachePolicyConfiguration.getTimeToLiveSeconds();
-                    }
-                    final int ttl = (int) timeToLive;
+            private void store() {
+                if (content.isOverflowed()) {
+                    log.debug(
+                        "Response for key {} not put in cache because its body exceeds {} bytes",
+                        cacheId,
+                        cachePolicyConfiguration.getMaxBodySizeBytes()
+                    );
+                    CacheMetrics.report(executionContext, CacheMetrics.Reason.BODY_TOO_LARGE);
+                    releaseErrorKey(cacheId, errorTimeToLive);
+                    release(null);
+                    return;
+                }
 
-                    byte[] frame = CacheFrame.encode(new CachedResponse(proxyResponse.status(), headers, content));
-                    CacheElement element = new CacheElement(cacheId, frame);
-                    element.setTimeToLive(ttl);
+                io.gravitee.common.http.HttpHeaders headers = new io.gravitee.common.http.HttpHeaders();
+                proxyResponse.headers().forEach(entry -> headers.add(entry.getKey(), entry.getValue()));
 
-                    cache
-                        .putBinaryAsync(element)
-                        .onFailure(err -> log.warn("Cannot store element with key {} into the cache", cacheId, err));
-                });
+                FrameMetadata metadata = errorTimeToLive > 0 ? errorMetadata(errorTimeToLive) : resolveMetadata(proxyResponse);
+                String storageKey = storageKey(executionContext, cacheId, proxyResponse.headers(), metadata);
+                if (storageKey == null) {
+                    log.debug("Response for key {} not put in cache because it already has too many variants", cacheId);
+                    CacheMetrics.report(executionContext, CacheMetrics.Reason.TOO_MANY_VARIANTS);
+                    releaseErrorKey(cacheId, errorTimeToLive);
+                    release(null);
+                    return;
+                }
+                Buffer body = content.body();
+                ConditionalRequestUtil.ensureEntityTag(proxyResponse.status(), headers, metadata, body);
 
-                return this;
+                byte[] frame = CacheFrame.encode(
+                    new CachedResponse(proxyResponse.status(), headers, body, metadata),
+                    cachePolicyConfiguration.getCompression(),
+                    cachePolicyConfiguration.getCompressionLevel(),
+                    cachePolicyConfiguration.getCompressionMinSizeBytes()
+                );
+                // Requests waiting for this key can't be served a variant they may not match
+                release(storageKey.equals(cacheId) ? frame : null);
+                putInCache(storageKey, frame, metadata);
+                putVariantIndex();
+                if (tagPrefix != null) {
+                    recordTags(storageKey, headers.get(cachePolicyConfiguration.getTagHeader()), metadata);
+                }
             }
 
             @Override
@@ -316,61 +859,250 @@ public class CachePolicyV3 {
         }
     }
 
+    /**
+     * @return the encodings accepted by the client, or {@code null} for a range request: ranges apply to the identity
+     * body, as the cached one may be stored compressed.
+     */
+    private static String acceptEncoding(ExecutionContext executionContext) {
+        Request request = executionContext.request();
+        if (RangeUtil.isRangeRequest(request.method(), request.headers())) {
+            return null;
+        }
+        List<String> values = request.headers().getAll(HttpHeaderNames.ACCEPT_ENCODING);
+        return values == null || values.isEmpty() ? null : String.join(",", values);
+    }
+
+    /**
+     * Generate a fixed-length identifier for the cache key: the API, followed by a 128-bit hash of the scope, path,
+     * parameters, custom key and key headers.
+     */
     String hash(ExecutionContext executionContext) {
-        StringBuilder sb = new StringBuilder();
-        String cacheName = cachePolicyConfiguration.getCacheName();
-        CacheResource<?> cacheResource = executionContext.getComponent(ResourceManager.class).getResource(cacheName, CacheResource.class);
-        String keySeparator = cacheResource.keySeparator();
-
-        switch (cachePolicyConfiguration.getScope()) {
-            case APPLICATION:
-                sb.append(executionContext.getAttribute(ExecutionContext.ATTR_API)).append(keySeparator);
-                sb.append(executionContext.getAttribute(ExecutionContext.ATTR_APPLICATION)).append(keySeparator);
-                break;
-            case API:
-                sb.append(executionContext.getAttribute(ExecutionContext.ATTR_API)).append(keySeparator);
-                break;
-        }
-
-        sb.append(executionContext.request().path().hashCode()).append(keySeparator);
-        sb.append(buildParametersKeyComponent(executionContext.request())).append(keySeparator);
-
-        String key = cachePolicyConfiguration.getKey();
-        if (key != null && !key.isEmpty()) {
-            key = executionContext.getTemplateEngine().convert(key);
-            sb.append(key);
+        CachePolicyPlan plan = plan();
+        String keySeparator = keySeparator(executionContext);
+        String api = (String) executionContext.getAttribute(ExecutionContext.ATTR_API);
+
+        CacheKeyBuilder builder = CacheKeyBuilder.start().append(plan.scope().name()).append(api);
+        if (plan.scope() == CacheScope.APPLICATION) {
+            builder.append((String) executionContext.getAttribute(ExecutionContext.ATTR_APPLICATION));
+        }
+        CacheKeyRules keyRules = plan.keyRules();
+        builder
+            .append(keyRules.normalizePath(executionContext.request().path()))
+            .appendParameters(executionContext.request().parameters(), keyRules.filtersParameters() ? keyRules::includesParameter : null)
+            .append(plan.key().render(executionContext::getTemplateEngine));
+        for (String header : keyRules.headers()) {
+            builder.append(header).appendValues(executionContext.request().headers().getAll(header));
+        }
+
+        return api + keySeparator + builder.build();
+    }
+
+    private String keySeparator(ExecutionContext executionContext) {
+        CachePolicyPlan plan = plan();
+        return plan.keySeparator(() ->
+            executionContext.getComponent(ResourceManager.class).getResource(plan.cacheName(), CacheResource.class)
+        );
+    }
+
+    /**
+     * @return {@code false} if the upstream response forbids a shared cache to store it ({@code no-store} or
+     * {@code private}), or can never be served from cache ({@code Vary: *}). Upstream headers are only honored when
+     * response cache headers are used.
+     */
+    boolean isStorable(ProxyResponse proxyResponse) {
+        if (
+            cachePolicyConfiguration.isUseResponseCacheHeaders() &&
+            VariantIndex.varyHeaders(proxyResponse.headers().getAll(HttpHeaderNames.VARY)).contains(VariantIndex.ANY)
+        ) {
+            return false;
+        }
+        CacheControl cacheControl = upstreamCacheControl(proxyResponse);
+        return cacheControl == null || cacheControl.isStorable();
+    }
+
+    /**
+     * @return the key under which the response is put in cache. When the backend varies the response on request
+     * headers, it is the key of the variant matching the request, recorded in the variant index stored under the base
+     * key once the variant itself is stored. {@code null} if the base key already has too many variants.
+     * <p>
+     * The index is rewritten from the one found during the lookup, if any: concurrent writers may drop each other's
+     * variants from it, which are then fetched again from the backend.
+     */
+    private String storageKey(ExecutionContext executionContext, String cacheId, HttpHeaders responseHeaders, FrameMetadata metadata) {
+        if (!cachePolicyConfiguration.isUseResponseCacheHeaders()) {
+            return cacheId;
+        }
+        List<String> vary = VariantIndex.varyHeaders(responseHeaders.getAll(HttpHeaderNames.VARY));
+        if (vary.isEmpty()) {
+            // The response no longer varies, it replaces the variant index if there is one
+            return variantIndex == null ? cacheId : baseKey;
+        }
+
+        VariantIndex index = variantIndex != null && variantIndex.headers().equals(vary) ? variantIndex : new VariantIndex(vary);
+        String responseVariant = index.variant(executionContext.request().headers());
+        if (!index.contains(responseVariant) && index.size() >= cachePolicyConfiguration.getMaxVariants()) {
+            return null;
+        }
+        recordVariant(index, responseVariant, metadata);
+        return VariantIndex.key(baseKey, keySeparator(executionContext), responseVariant);
+    }
+
+    /**
+     * Records the variant in the index, to be put in cache by {@link #putVariantIndex()} if the variant is new or
+     * outlives the index.
+     */
+    private void recordVariant(VariantIndex index, String variant, FrameMetadata metadata) {
+        boolean known = index.contains(variant);
+        long expiresAt = index.expiresAt();
+        index.add(variant, metadata.getStoredAt() + metadata.getHardTimeToLive() * 1000);
+        if (!known || index.expiresAt() > expiresAt) {
+            pendingVariantIndex = index;
+        }
+    }
+
+    /**
+     * Puts the variant index recorded for the response in cache, once its variant is stored: the index never points to
+     * a variant that is not stored yet.
+     */
+    private void putVariantIndex() {
+        VariantIndex index = pendingVariantIndex;
+        if (index == null) {
+            return;
+        }
+        pendingVariantIndex = null;
+        putElement(baseKey, index.encode(), index.timeToLive(System.currentTimeMillis()));
+    }
+
+    private CacheControl upstreamCacheControl(ProxyResponse proxyResponse) {
+        if (!cachePolicyConfiguration.isUseResponseCacheHeaders()) {
+            return null;
+        }
+        return CacheControlUtil.parseCacheControl(proxyResponse.headers().getFirst(HttpHeaderNames.CACHE_CONTROL));
+    }
+
+    /**
+     * Resolve the frame metadata of a response: its soft time to live, bounded by the one configured for its status,
+     * its stale windows and the resulting hard time to live of the entry in the cache resource.
+     * <p>
+     * A {@code no-cache} response is stored but stale right away, so that it is validated with the backend before
+     * being served; it is kept for its time to live, and never served stale while being refreshed.
+     */
+    FrameMetadata resolveMetadata(ProxyResponse proxyResponse) {
+        return resolveMetadata(proxyResponse, proxyResponse.status());
+    }
+
+    /**
+     * @param status the status of the stored response, which differs from the one of a {@code 304} validating it.
+     */
+    FrameMetadata resolveMetadata(ProxyResponse proxyResponse, int status) {
+        long timeToLive = resolveTimeToLive(proxyResponse, status);
+        long staleWhileRevalidate = resolveStaleWhileRevalidate(proxyResponse);
+        long staleIfError = resolveStaleIfError(proxyResponse);
+        CacheControl cacheControl = upstreamCacheControl(proxyResponse);
+        FrameMetadata metadata;
+        if (cacheControl != null && cacheControl.isNoCache()) {
+            staleWhileRevalidate = 0;
+            metadata = new FrameMetadata(System.currentTimeMillis(), 0, timeToLive + staleIfError);
         } else {
-            sb.deleteCharAt(sb.length() - 1);
+            long hardTimeToLive = timeToLive + Math.max(staleWhileRevalidate, staleIfError);
+            metadata = new FrameMetadata(System.currentTimeMillis(), timeToLive, hardTimeToLive);
+        }
+        metadata.setStaleWhileRevalidate(staleWhileRevalidate);
+        metadata.setStaleIfError(staleIfError);
+        metadata.setEtag(proxyResponse.headers().getFirst(HttpHeaderNames.ETAG));
+        metadata.setLastModified(ConditionalRequestUtil.lastModified(proxyResponse.headers().getFirst(HttpHeaderNames.LAST_MODIFIED)));
+        return metadata;
+    }
+
+    /**
+     * @return how long (in seconds) the response is put in cache as an error, 0 if it is not an error to cache or if
+     * too many keys already hold an error.
+     */
+    private long errorTimeToLive(ExecutionContext executionContext, String cacheId, int status) {
+        long timeToLive = plan().errorTimeToLive(status);
+        if (timeToLive <= 0) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        if (!errorKeyBudget.tryAcquire(cacheId, now, now + timeToLive * 1000)) {
+            log.debug("Error response for key {} not put in cache because too many keys already hold an error", cacheId);
+            CacheMetrics.report(executionContext, CacheMetrics.Reason.ERROR_KEYS_EXHAUSTED);
+            return 0;
         }
+        return timeToLive;
+    }
 
-        return sb.toString();
+    /**
+     * Stops counting the key against the error budget when its error response is finally not put in cache.
+     */
+    private void releaseErrorKey(String cacheId, long errorTimeToLive) {
+        if (errorTimeToLive > 0) {
+            errorKeyBudget.release(cacheId);
+        }
     }
 
-    private int buildParametersKeyComponent(Request request) {
-        return request
-            .parameters()
-            .entrySet()
-            .stream()
-            .sorted(Map.Entry.comparingByKey())
-            .peek(entry -> Collections.sort(entry.getValue()))
-            .map(Map.Entry::toString)
-            .collect(Collectors.joining())
-            .hashCode();
+    /**
+     * Errors are never served stale: they expire from the cache resource as soon as their time to live has elapsed.
+     */
+    private static FrameMetadata errorMetadata(long timeToLive) {
+        return new FrameMetadata(System.currentTimeMillis(), timeToLive, timeToLive);
     }
 
     public long resolveTimeToLive(ProxyResponse response) {
+        return resolveTimeToLive(response, 0);
+    }
+
+    /**
+     * Resolve the time to live of a response, bounded by the one configured for its status, or by the policy one.
+     */
+    public long resolveTimeToLive(ProxyResponse response, int status) {
+        long maxTimeToLive = plan().timeToLive(status, cachePolicyConfiguration.getTimeToLiveSeconds());
         long timeToLive = -1;
         if (cachePolicyConfiguration.isUseResponseCacheHeaders()) {
             timeToLive = timeToLiveFromResponse(response);
         }
 
-        if (timeToLive != -1 && cachePolicyConfiguration.getTimeToLiveSeconds() < timeToLive) {
-            timeToLive = cachePolicyConfiguration.getTimeToLiveSeconds();
+        if (timeToLive == -1 || maxTimeToLive < timeToLive) {
+            timeToLive = maxTimeToLive;
         }
 
         return timeToLive;
     }
 
+    /**
+     * Resolve how long (in seconds) a stale entry may still be served while it is being refreshed. When response cache
+     * headers are used, the upstream {@code stale-while-revalidate} directive may shorten the configured value, but never
+     * extend it.
+     */
+    public long resolveStaleWhileRevalidate(ProxyResponse response) {
+        return resolveStaleWindow(
+            response,
+            CacheControl::getStaleWhileRevalidate,
+            cachePolicyConfiguration.getStaleWhileRevalidateSeconds()
+        );
+    }
+
+    /**
+     * Resolve how long (in seconds) a stale entry may still be served when the backend fails to refresh it. When
+     * response cache headers are used, the upstream {@code stale-if-error} directive may shorten the configured value,
+     * but never extend it: a backend cannot keep its entries for longer than the operator allows.
+     */
+    public long resolveStaleIfError(ProxyResponse response) {
+        return resolveStaleWindow(response, CacheControl::getStaleIfError, cachePolicyConfiguration.getStaleIfErrorSeconds());
+    }
+
+    private long resolveStaleWindow(ProxyResponse response, ToLongFunction<CacheControl> directive, long configured) {
+        if (cachePolicyConfiguration.isUseResponseCacheHeaders()) {
+            CacheControl cacheControl = CacheControlUtil.parseCacheControl(response.headers().getFirst(HttpHeaderNames.CACHE_CONTROL));
+            if (cacheControl != null && directive.applyAsLong(cacheControl) != -1) {
+                // The configured window is an upper bound, 0 disabling the window whatever the backend says
+                return Math.min(directive.applyAsLong(cacheControl), Math.max(configured, 0));
+            }
+        }
+
+        return Math.max(configured, 0);
+    }
+
     public static long timeToLiveFromResponse(ProxyResponse response) {
         long timeToLive = -1;
         CacheControl cacheControl = CacheControlUtil.parseCacheControl(response.headers().getFirst(HttpHeaderNames.CACHE_CONTROL));
@@ -413,10 +1145,7 @@ public class CachePolicyV3 {
     }
 
     protected boolean isCachedMethod(HttpMethod method) {
-        if (cachePolicyConfiguration.getMethods() == null || cachePolicyConfiguration.getMethods().isEmpty()) {
-            return (method == HttpMethod.GET || method == HttpMethod.OPTIONS || method == HttpMethod.HEAD);
-        }
-        return cachePolicyConfiguration.getMethods().contains(method);
+        return plan().isCachedMethod(method);
     }
 
     private boolean evaluate(final ExecutionContext context, final ProxyResponse proxyResponse, final String condition) {
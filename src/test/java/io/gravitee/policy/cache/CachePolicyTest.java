@@ -118,6 +118,20 @@ public class CachePolicyTest {
         );
     }
 
+    @Test
+    public void shouldCompileConfigurationOnce() {
+        when(request.headers()).thenReturn(io.gravitee.gateway.api.http.HttpHeaders.create());
+        when(request.parameters()).thenReturn(new LinkedMultiValueMap());
+        when(request.method()).thenReturn(HttpMethod.POST);
+        when(httpExecutionContext.request()).thenReturn(request);
+
+        CachePolicy cachePolicy = new CachePolicy(cachePolicyConfiguration);
+        cachePolicy.onRequest(httpExecutionContext);
+        cachePolicy.onRequest(httpExecutionContext);
+
+        verify(cachePolicyConfiguration, times(1)).getMethods();
+    }
+
     @Test
     public void shouldUseCacheOnPOST() {
         when(request.headers()).thenReturn(io.gravitee.gateway.api.http.HttpHeaders.create());
@@ -28,11 +28,14 @@ import io.gravitee.plugin.resource.ResourcePlugin;
 import io.gravitee.policy.cache.CachedResponse;
 import io.gravitee.policy.cache.configuration.CachePolicyConfiguration;
 import io.gravitee.policy.v3.cache.CachePolicyV3;
+import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.plugins.RxJavaPlugins;
 import io.reactivex.rxjava3.schedulers.TestScheduler;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.rxjava3.core.buffer.Buffer;
 import io.vertx.rxjava3.core.http.HttpClient;
 import io.vertx.rxjava3.core.http.HttpClientRequest;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -41,7 +44,17 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 @GatewayTest
-@DeployApi({ "/io/gravitee/policy/cache/integration/cacheV3.json", "/io/gravitee/policy/cache/integration/cacheV3RefreshDisabled.json" })
+@DeployApi(
+    {
+        "/io/gravitee/policy/cache/integration/cacheV3.json",
+        "/io/gravitee/policy/cache/integration/cacheV3RefreshDisabled.json",
+        "/io/gravitee/policy/cache/integration/cacheV3Coalescing.json",
+        "/io/gravitee/policy/cache/integration/cacheV3StaleWhileRevalidate.json",
+        "/io/gravitee/policy/cache/integration/cacheV3Vary.json",
+        "/io/gravitee/policy/cache/integration/cacheV3Purge.json",
+        "/io/gravitee/policy/cache/integration/cacheV3PurgeDisabled.json",
+    }
+)
 public abstract class CachePolicyV4EmulationEngineIntegrationTest extends AbstractPolicyTest<CachePolicyV3, CachePolicyConfiguration> {
 
     public static final String RESPONSE_FROM_BACKEND_1 = "response from backend";
@@ -504,6 +517,173 @@ public abstract class CachePolicyV4EmulationEngineIntegrationTest extends Abstra
         DummyCacheResource.checkNumberOfCacheEntries(1);
     }
 
+    @Test
+    @DisplayName("Should invoke backend only once when concurrent requests miss the cache and coalescing is enabled")
+    void shouldCoalesceConcurrentMisses(HttpClient client) throws Exception {
+        wiremock.stubFor(get("/endpoint").willReturn(ok(RESPONSE_FROM_BACKEND_1).withFixedDelay(1000)));
+
+        final var obs = Flowable.range(0, 5)
+            .flatMap(i ->
+                client
+                    .rxRequest(HttpMethod.GET, "/test-coalescing")
+                    .flatMap(HttpClientRequest::rxSend)
+                    .flatMapPublisher(response -> {
+                        assertThat(response.statusCode()).isEqualTo(200);
+                        return response.toFlowable();
+                    })
+            )
+            .test();
+
+        obs.await(5000, TimeUnit.MILLISECONDS);
+        obs.assertComplete().assertValueCount(5).assertNoErrors();
+        assertThat(obs.values()).allSatisfy(buffer -> assertThat(buffer).hasToString(RESPONSE_FROM_BACKEND_1));
+
+        // The requests which missed the cache while the first one was in flight waited for its response
+        wiremock.verify(1, getRequestedFor(urlPathEqualTo("/endpoint")));
+        DummyCacheResource.checkNumberOfCacheEntries(1);
+    }
+
+    @Test
+    @DisplayName("Should serve an expired element within its stale-while-revalidate window and refresh it only once")
+    void shouldServeStaleWhileRevalidating(HttpClient client) throws Exception {
+        wiremock.stubFor(get("/endpoint").willReturn(ok(RESPONSE_FROM_BACKEND_1)));
+
+        final var firstObs = call(client, "/test-stale-while-revalidate").test();
+
+        firstObs.await(1000, TimeUnit.MILLISECONDS);
+        firstObs.assertComplete().assertValue(buffer -> buffer.toString().equals(RESPONSE_FROM_BACKEND_1)).assertNoErrors();
+
+        // Let the element expire: it is kept in cache for its stale-while-revalidate window
+        DummyCacheResource.checkNumberOfCacheEntries(1);
+
+        wiremock.stubFor(get("/endpoint").willReturn(ok(RESPONSE_FROM_BACKEND_2).withFixedDelay(1000)));
+
+        final var refreshObs = call(client, "/test-stale-while-revalidate").test();
+        Thread.sleep(200);
+        final var staleObs = Flowable.range(0, 3).flatMap(i -> call(client, "/test-stale-while-revalidate")).test();
+
+        // The requests received while the element is being refreshed are served the stale element without waiting
+        staleObs.await(1000, TimeUnit.MILLISECONDS);
+        staleObs.assertComplete().assertValueCount(3).assertNoErrors();
+        assertThat(staleObs.values()).allSatisfy(buffer -> assertThat(buffer).hasToString(RESPONSE_FROM_BACKEND_1));
+
+        refreshObs.await(2000, TimeUnit.MILLISECONDS);
+        refreshObs.assertComplete().assertValue(buffer -> buffer.toString().equals(RESPONSE_FROM_BACKEND_2)).assertNoErrors();
+
+        // The backend was called for the first call and a single refresh
+        wiremock.verify(2, getRequestedFor(urlPathEqualTo("/endpoint")));
+        DummyCacheResource.checkNumberOfCacheEntries(1);
+        CachedResponse firstEntry = DummyCacheResource.getFirstEntry();
+        assertThat(firstEntry).isNotNull();
+        assertThat(firstEntry.body()).hasToString(RESPONSE_FROM_BACKEND_2);
+    }
+
+    @Test
+    @DisplayName("Should cache a response per variant, up to the maximum number of variants")
+    void shouldCacheVariantsUpToTheMaximum(HttpClient client) throws Exception {
+        for (String variant : List.of("a", "b", "c")) {
+            wiremock.stubFor(
+                get("/endpoint")
+                    .withHeader("X-Variant", equalTo(variant))
+                    .willReturn(ok("response for variant " + variant).withHeader("Vary", "X-Variant"))
+            );
+        }
+
+        // Variants a and b are put in cache, c exceeds the maximum of 2 variants
+        for (String variant : List.of("a", "b", "c", "a", "b", "c")) {
+            final var obs = call(client, "/test-vary", Map.of("X-Variant", variant)).test();
+
+            obs.await(1000, TimeUnit.MILLISECONDS);
+            obs.assertComplete().assertValue(buffer -> buffer.toString().equals("response for variant " + variant)).assertNoErrors();
+        }
+
+        wiremock.verify(1, getRequestedFor(urlPathEqualTo("/endpoint")).withHeader("X-Variant", equalTo("a")));
+        wiremock.verify(1, getRequestedFor(urlPathEqualTo("/endpoint")).withHeader("X-Variant", equalTo("b")));
+        wiremock.verify(2, getRequestedFor(urlPathEqualTo("/endpoint")).withHeader("X-Variant", equalTo("c")));
+        // The variant index and the two cached variants
+        DummyCacheResource.checkNumberOfCacheEntries(3);
+    }
+
+    @Test
+    @DisplayName("Should evict the elements of the tags listed by a PURGE request")
+    void shouldPurgeTaggedElements(HttpClient client) throws Exception {
+        wiremock.stubFor(get("/endpoint").willReturn(ok(RESPONSE_FROM_BACKEND_1).withHeader("X-Cache-Tags", "products")));
+
+        final var firstObs = call(client, "/test-purge").test();
+
+        firstObs.await(1000, TimeUnit.MILLISECONDS);
+        firstObs.assertComplete().assertValue(buffer -> buffer.toString().equals(RESPONSE_FROM_BACKEND_1)).assertNoErrors();
+
+        // The element and the index of its tag
+        DummyCacheResource.checkNumberOfCacheEntries(2);
+
+        final var purgeObs = call(
+            client,
+            "/test-purge",
+            Map.of(CachePolicyV3.X_GRAVITEE_CACHE_ACTION, CacheAction.PURGE.name(), CachePolicyV3.X_GRAVITEE_CACHE_TAGS, "products")
+        ).test();
+
+        purgeObs.await(1000, TimeUnit.MILLISECONDS);
+        purgeObs.assertComplete().assertNoErrors();
+
+        DummyCacheResource.checkNumberOfCacheEntries(0);
+
+        wiremock.stubFor(get("/endpoint").willReturn(ok(RESPONSE_FROM_BACKEND_2).withHeader("X-Cache-Tags", "products")));
+
+        final var secondObs = call(client, "/test-purge").test();
+
+        secondObs.await(1000, TimeUnit.MILLISECONDS);
+        secondObs.assertComplete().assertValue(buffer -> buffer.toString().equals(RESPONSE_FROM_BACKEND_2)).assertNoErrors();
+
+        // The PURGE request reaches the backend without the cache, and the purged element is fetched again
+        wiremock.verify(3, getRequestedFor(urlPathEqualTo("/endpoint")));
+    }
+
+    @Test
+    @DisplayName("Should NOT purge cache when allowPurgeAction is disabled")
+    void shouldNotPurgeCache_WhenPurgeActionDisabled(HttpClient client) throws Exception {
+        wiremock.stubFor(get("/endpoint").willReturn(ok(RESPONSE_FROM_BACKEND_1).withHeader("X-Cache-Tags", "products")));
+
+        final var firstObs = call(client, "/test-purge-disabled").test();
+
+        firstObs.await(1000, TimeUnit.MILLISECONDS);
+        firstObs.assertComplete().assertValue(buffer -> buffer.toString().equals(RESPONSE_FROM_BACKEND_1)).assertNoErrors();
+
+        DummyCacheResource.checkNumberOfCacheEntries(2);
+
+        wiremock.stubFor(get("/endpoint").willReturn(ok(RESPONSE_FROM_BACKEND_2).withHeader("X-Cache-Tags", "products")));
+
+        final var purgeObs = call(
+            client,
+            "/test-purge-disabled",
+            Map.of(CachePolicyV3.X_GRAVITEE_CACHE_ACTION, CacheAction.PURGE.name(), CachePolicyV3.X_GRAVITEE_CACHE_TAGS, "products")
+        ).test();
+
+        purgeObs.await(1000, TimeUnit.MILLISECONDS);
+        purgeObs.assertComplete().assertValue(buffer -> buffer.toString().equals(RESPONSE_FROM_BACKEND_1)).assertNoErrors();
+
+        // PURGE was ignored: the request is served from the cache, which keeps the element
+        wiremock.verify(1, getRequestedFor(urlPathEqualTo("/endpoint")));
+        DummyCacheResource.checkNumberOfCacheEntries(2);
+    }
+
+    private Flowable<Buffer> call(HttpClient client, String path) {
+        return call(client, path, Map.of());
+    }
+
+    private Flowable<Buffer> call(HttpClient client, String path, Map<String, String> headers) {
+        return client
+            .rxRequest(HttpMethod.GET, path)
+            .flatMap(request -> {
+                headers.forEach(request::putHeader);
+                return request.rxSend();
+            })
+            .flatMapPublisher(response -> {
+                assertThat(response.statusCode()).isEqualTo(200);
+                return response.toFlowable();
+            });
+    }
+
     private void performFirstCall(HttpClient client) throws InterruptedException {
         performFirstCall(client, () -> {});
     }
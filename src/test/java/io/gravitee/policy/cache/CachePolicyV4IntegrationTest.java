@@ -29,6 +29,11 @@ import java.util.Map;
         "/io/gravitee/policy/cache/integration/cacheV4.json",
         "/io/gravitee/policy/cache/integration/cacheV4NoResponseCondition.json",
         "/io/gravitee/policy/cache/integration/cacheV4RefreshDisabled.json",
+        "/io/gravitee/policy/cache/integration/cacheV4Coalescing.json",
+        "/io/gravitee/policy/cache/integration/cacheV4StaleWhileRevalidate.json",
+        "/io/gravitee/policy/cache/integration/cacheV4Vary.json",
+        "/io/gravitee/policy/cache/integration/cacheV4Purge.json",
+        "/io/gravitee/policy/cache/integration/cacheV4PurgeDisabled.json",
     }
 )
 public class CachePolicyV4IntegrationTest extends CachePolicyV4EmulationEngineIntegrationTest {
@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.policy.cache.frame.FrameMetadata;
+import org.junit.jupiter.api.Test;
+
+class CachedResponseTest {
+
+    @Test
+    void drops_body_keeping_its_content_length() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaderNames.CONTENT_TYPE, "text/plain");
+        FrameMetadata metadata = new FrameMetadata(1L, 60, 90);
+
+        CachedResponse head = new CachedResponse(200, headers, Buffer.buffer("payload"), metadata).withoutBody();
+
+        assertThat(head.status()).isEqualTo(200);
+        assertThat(head.body()).isNull();
+        assertThat(head.metadata()).isSameAs(metadata);
+        assertThat(head.headers().getFirst(HttpHeaderNames.CONTENT_TYPE)).isEqualTo("text/plain");
+        assertThat(head.headers().get(HttpHeaderNames.CONTENT_LENGTH)).containsExactly("7");
+    }
+
+    @Test
+    void replaces_stored_content_length() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaderNames.CONTENT_LENGTH, "3");
+
+        CachedResponse head = new CachedResponse(200, headers, Buffer.buffer("payload")).withoutBody();
+
+        assertThat(head.headers().get(HttpHeaderNames.CONTENT_LENGTH)).containsExactly("7");
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.coalescing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+
+class RequestCoalescerTest {
+
+    @Test
+    void first_caller_is_leader_and_next_ones_are_followers() {
+        RequestCoalescer.Flight leader = RequestCoalescer.join("leader-followers", 1000);
+        RequestCoalescer.Flight follower = RequestCoalescer.join("leader-followers", 1000);
+
+        assertThat(leader.isLeader()).isTrue();
+        assertThat(follower.isLeader()).isFalse();
+
+        leader.complete(null);
+    }
+
+    @Test
+    void followers_receive_the_leader_frame() throws Exception {
+        RequestCoalescer.Flight leader = RequestCoalescer.join("share-frame", 1000);
+        RequestCoalescer.Flight follower = RequestCoalescer.join("share-frame", 1000);
+        byte[] frame = new byte[] { 0x01, 0x00, (byte) 0xC8 };
+
+        leader.complete(frame);
+
+        assertThat(follower.frame().toCompletableFuture().get(1, TimeUnit.SECONDS)).isSameAs(frame);
+    }
+
+    @Test
+    void completed_flight_is_released_for_the_next_caller() {
+        RequestCoalescer.Flight first = RequestCoalescer.join("released", 1000);
+        first.complete(null);
+
+        RequestCoalescer.Flight second = RequestCoalescer.join("released", 1000);
+
+        assertThat(second.isLeader()).isTrue();
+        second.complete(null);
+    }
+
+    @Test
+    void follower_cannot_complete_the_flight() {
+        RequestCoalescer.Flight leader = RequestCoalescer.join("follower-complete", 1000);
+        RequestCoalescer.Flight follower = RequestCoalescer.join("follower-complete", 1000);
+
+        follower.complete(new byte[] { 0x01 });
+
+        assertThat(leader.frame().toCompletableFuture().isDone()).isFalse();
+        leader.complete(null);
+    }
+
+    @Test
+    void flight_times_out_when_leader_never_completes() {
+        RequestCoalescer.join("timeout", 50);
+        RequestCoalescer.Flight follower = RequestCoalescer.join("timeout", 50);
+
+        assertThatThrownBy(() -> follower.frame().toCompletableFuture().get(1, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    void followers_resume_on_their_own_context() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            RequestCoalescer.Flight leader = RequestCoalescer.join("resume-on-context", 1000);
+            List<CompletableFuture<Boolean>> resumedOnContext = new ArrayList<>();
+            CountDownLatch joined = new CountDownLatch(3);
+            for (int i = 0; i < 3; i++) {
+                Context context = vertx.getOrCreateContext();
+                CompletableFuture<Boolean> resumed = new CompletableFuture<>();
+                resumedOnContext.add(resumed);
+                context.runOnContext(ignored -> {
+                    RequestCoalescer.join("resume-on-context", 1000)
+                        .frame(context)
+                        .whenComplete((frame, err) -> resumed.complete(Vertx.currentContext() == context));
+                    joined.countDown();
+                });
+            }
+            assertThat(joined.await(1, TimeUnit.SECONDS)).isTrue();
+
+            // Completed from a thread outside of any context, as the timer thread of a timed out flight
+            leader.complete(new byte[] { 0x01 });
+
+            for (CompletableFuture<Boolean> resumed : resumedOnContext) {
+                assertThat(resumed.get(1, TimeUnit.SECONDS)).isTrue();
+            }
+        } finally {
+            vertx.close();
+        }
+    }
+
+    @Test
+    void concurrent_followers_are_released_as_soon_as_the_leader_fails() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            RequestCoalescer.Flight leader = RequestCoalescer.join("concurrent-failure", 10_000);
+            CountDownLatch joined = new CountDownLatch(8);
+            List<Future<Throwable>> followers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                followers.add(
+                    executor.submit(() -> {
+                        RequestCoalescer.Flight follower = RequestCoalescer.join("concurrent-failure", 10_000);
+                        joined.countDown();
+                        assertThat(follower.isLeader()).isFalse();
+                        try {
+                            follower.frame().toCompletableFuture().get(1, TimeUnit.SECONDS);
+                            return null;
+                        } catch (ExecutionException e) {
+                            return e.getCause();
+                        }
+                    })
+                );
+            }
+            assertThat(joined.await(1, TimeUnit.SECONDS)).isTrue();
+
+            leader.fail(new IllegalStateException("Connection refused"));
+
+            for (Future<Throwable> follower : followers) {
+                assertThat(follower.get(2, TimeUnit.SECONDS)).isInstanceOf(IllegalStateException.class);
+            }
+            RequestCoalescer.Flight next = RequestCoalescer.join("concurrent-failure", 10_000);
+            assertThat(next.isLeader()).isTrue();
+            next.complete(null);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
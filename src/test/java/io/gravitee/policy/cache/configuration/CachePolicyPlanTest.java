@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.gravitee.common.http.HttpMethod;
+import io.gravitee.resource.cache.api.CacheResource;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CachePolicyPlanTest {
+
+    @Test
+    void caches_get_options_and_head_by_default() {
+        CachePolicyPlan plan = new CachePolicyPlan(new CachePolicyConfiguration());
+
+        assertThat(plan.isCachedMethod(HttpMethod.GET)).isTrue();
+        assertThat(plan.isCachedMethod(HttpMethod.OPTIONS)).isTrue();
+        assertThat(plan.isCachedMethod(HttpMethod.HEAD)).isTrue();
+        assertThat(plan.isCachedMethod(HttpMethod.POST)).isFalse();
+        assertThat(plan.isCachedMethod(null)).isFalse();
+    }
+
+    @Test
+    void caches_configured_methods_only() {
+        CachePolicyConfiguration configuration = new CachePolicyConfiguration();
+        configuration.setMethods(List.of(HttpMethod.POST, HttpMethod.PUT));
+        CachePolicyPlan plan = new CachePolicyPlan(configuration);
+
+        assertThat(plan.isCachedMethod(HttpMethod.POST)).isTrue();
+        assertThat(plan.isCachedMethod(HttpMethod.PUT)).isTrue();
+        assertThat(plan.isCachedMethod(HttpMethod.GET)).isFalse();
+    }
+
+    @Test
+    void resolves_key_separator_once() {
+        CachePolicyPlan plan = new CachePolicyPlan(new CachePolicyConfiguration());
+        CacheResource<?> cacheResource = mock(CacheResource.class);
+        when(cacheResource.keySeparator()).thenReturn(":");
+
+        plan.resolveKeySeparator(cacheResource);
+
+        assertThat(plan.keySeparator(() -> cacheResource)).isEqualTo(":");
+        assertThat(plan.keySeparator(() -> cacheResource)).isEqualTo(":");
+        verify(cacheResource, times(1)).keySeparator();
+    }
+
+    @Test
+    void has_no_cacheable_statuses_by_default() {
+        CachePolicyPlan plan = new CachePolicyPlan(new CachePolicyConfiguration());
+
+        assertThat(plan.hasCacheableStatuses()).isFalse();
+        assertThat(plan.isCacheableStatus(200)).isFalse();
+        assertThat(plan.timeToLive(200, 600)).isEqualTo(600);
+    }
+
+    @Test
+    void looks_up_cacheable_statuses_and_their_time_to_live() {
+        CachePolicyConfiguration configuration = new CachePolicyConfiguration();
+        configuration.setCacheableStatuses(
+            List.of(new CacheableStatus(200, 3600), new CacheableStatus(203, 0), new CacheableStatus(404, 30), new CacheableStatus(999, 1))
+        );
+        CachePolicyPlan plan = new CachePolicyPlan(configuration);
+
+        assertThat(plan.hasCacheableStatuses()).isTrue();
+        assertThat(plan.isCacheableStatus(200)).isTrue();
+        assertThat(plan.isCacheableStatus(203)).isTrue();
+        assertThat(plan.isCacheableStatus(404)).isTrue();
+        assertThat(plan.isCacheableStatus(201)).isFalse();
+        assertThat(plan.isCacheableStatus(999)).isFalse();
+        assertThat(plan.isCacheableStatus(-1)).isFalse();
+        assertThat(plan.timeToLive(200, 600)).isEqualTo(3600);
+        assertThat(plan.timeToLive(203, 600)).isEqualTo(600);
+        assertThat(plan.timeToLive(404, 600)).isEqualTo(30);
+        assertThat(plan.timeToLive(500, 600)).isEqualTo(600);
+    }
+
+    @Test
+    void does_not_cache_errors_by_default() {
+        CachePolicyPlan plan = new CachePolicyPlan(new CachePolicyConfiguration());
+
+        assertThat(plan.isErrorCachingEnabled()).isFalse();
+        assertThat(plan.errorTimeToLive(503)).isZero();
+    }
+
+    @Test
+    void caches_errors_per_status_class() {
+        CachePolicyConfiguration configuration = new CachePolicyConfiguration();
+        configuration.setServerErrorTimeToLiveSeconds(2);
+        CachePolicyPlan plan = new CachePolicyPlan(configuration);
+
+        assertThat(plan.isErrorCachingEnabled()).isTrue();
+        assertThat(plan.errorTimeToLive(500)).isEqualTo(2);
+        assertThat(plan.errorTimeToLive(503)).isEqualTo(2);
+        assertThat(plan.errorTimeToLive(404)).isZero();
+        assertThat(plan.errorTimeToLive(200)).isZero();
+    }
+
+    @Test
+    void caches_selected_error_statuses_only() {
+        CachePolicyConfiguration configuration = new CachePolicyConfiguration();
+        configuration.setClientErrorTimeToLiveSeconds(5);
+        configuration.setServerErrorTimeToLiveSeconds(1);
+        configuration.setErrorStatuses(List.of(404, 503));
+        CachePolicyPlan plan = new CachePolicyPlan(configuration);
+
+        assertThat(plan.errorTimeToLive(404)).isEqualTo(5);
+        assertThat(plan.errorTimeToLive(503)).isEqualTo(1);
+        assertThat(plan.errorTimeToLive(400)).isZero();
+        assertThat(plan.errorTimeToLive(500)).isZero();
+    }
+}
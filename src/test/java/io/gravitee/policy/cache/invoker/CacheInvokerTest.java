@@ -17,33 +17,57 @@ package io.gravitee.policy.cache.invoker;
 
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.common.http.HttpMethod;
 import io.gravitee.common.util.LinkedMultiValueMap;
 import io.gravitee.common.util.MultiValueMap;
 import io.gravitee.el.TemplateContext;
 import io.gravitee.el.TemplateEngine;
+import io.gravitee.gateway.api.buffer.Buffer;
 import io.gravitee.gateway.api.http.HttpHeaderNames;
 import io.gravitee.gateway.reactive.api.context.ExecutionContext;
 import io.gravitee.gateway.reactive.api.context.HttpExecutionContext;
 import io.gravitee.gateway.reactive.api.context.HttpRequest;
+import io.gravitee.gateway.reactive.api.context.Request;
 import io.gravitee.gateway.reactive.api.context.Response;
 import io.gravitee.gateway.reactive.api.invoker.Invoker;
 import io.gravitee.policy.cache.CacheAction;
+import io.gravitee.policy.cache.CachedResponse;
+import io.gravitee.policy.cache.StaleEntry;
 import io.gravitee.policy.cache.configuration.CachePolicyConfiguration;
+import io.gravitee.policy.cache.configuration.CacheableStatus;
 import io.gravitee.policy.cache.configuration.CacheScope;
+import io.gravitee.policy.cache.frame.CacheFrame;
+import io.gravitee.policy.cache.frame.FrameMetadata;
+import io.gravitee.policy.cache.metrics.CacheMetrics;
+import io.gravitee.policy.cache.negative.ErrorKeyBudget;
 import io.gravitee.resource.api.ResourceManager;
 import io.gravitee.resource.cache.api.Cache;
 import io.gravitee.resource.cache.api.CacheResource;
+import io.gravitee.resource.cache.api.Element;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableTransformer;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.MaybeTransformer;
+import io.vertx.core.Future;
+import java.util.List;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.jupiter.api.DisplayNameGeneration;
 import org.junit.jupiter.api.DisplayNameGenerator;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -133,6 +157,159 @@ public class CacheInvokerTest {
         Assert.assertEquals(10, timeToLive);
     }
 
+    @Test
+    public void should_useconfigurationstalewhilerevalidate() {
+        final var httpHeaders = new HttpHeaders();
+        httpHeaders.add(HttpHeaderNames.CACHE_CONTROL, "max-age=600, stale-while-revalidate=30");
+
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(false);
+        when(cachePolicyConfiguration.getStaleWhileRevalidateSeconds()).thenReturn(10L);
+        long staleWhileRevalidate = cacheInvoker.resolveStaleWhileRevalidate(httpHeaders);
+        Assert.assertEquals(10, staleWhileRevalidate);
+    }
+
+    @Test
+    public void should_usecachecontrol_stalewhilerevalidate() {
+        final var httpHeaders = new HttpHeaders();
+        httpHeaders.add(HttpHeaderNames.CACHE_CONTROL, "max-age=600, stale-while-revalidate=30");
+
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(true);
+        when(cachePolicyConfiguration.getStaleWhileRevalidateSeconds()).thenReturn(60L);
+        long staleWhileRevalidate = cacheInvoker.resolveStaleWhileRevalidate(httpHeaders);
+        Assert.assertEquals(30, staleWhileRevalidate);
+    }
+
+    @Test
+    public void should_cap_upstream_stale_while_revalidate_at_the_configured_value() {
+        final var httpHeaders = new HttpHeaders();
+        httpHeaders.add(HttpHeaderNames.CACHE_CONTROL, "max-age=600, stale-while-revalidate=31536000");
+
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(true);
+        when(cachePolicyConfiguration.getStaleWhileRevalidateSeconds()).thenReturn(10L, 0L);
+
+        Assert.assertEquals(10, cacheInvoker.resolveStaleWhileRevalidate(httpHeaders));
+        Assert.assertEquals(0, cacheInvoker.resolveStaleWhileRevalidate(httpHeaders));
+    }
+
+    @Test
+    public void should_resolve_hard_ttl_from_largest_stale_window() {
+        final var httpHeaders = new HttpHeaders();
+
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(false);
+        when(cachePolicyConfiguration.getTimeToLiveSeconds()).thenReturn(60L);
+        when(cachePolicyConfiguration.getStaleWhileRevalidateSeconds()).thenReturn(30L);
+        when(cachePolicyConfiguration.getStaleIfErrorSeconds()).thenReturn(300L);
+        FrameMetadata metadata = cacheInvoker.resolveMetadata(httpHeaders, 200);
+
+        Assert.assertEquals(60, metadata.getSoftTimeToLive());
+        Assert.assertEquals(360, metadata.getHardTimeToLive());
+        Assert.assertEquals(30, metadata.getStaleWhileRevalidate());
+        Assert.assertEquals(300, metadata.getStaleIfError());
+    }
+
+    @Test
+    public void should_keep_upstream_etag_in_metadata() {
+        final var httpHeaders = new HttpHeaders();
+        httpHeaders.add(HttpHeaderNames.ETAG, "\"33a64df5\"");
+
+        when(cachePolicyConfiguration.getTimeToLiveSeconds()).thenReturn(60L);
+        FrameMetadata metadata = cacheInvoker.resolveMetadata(httpHeaders, 200);
+
+        Assert.assertEquals("\"33a64df5\"", metadata.getEtag());
+    }
+
+    @Test
+    public void should_keep_upstream_last_modified_in_metadata() {
+        final var httpHeaders = new HttpHeaders();
+        httpHeaders.add(HttpHeaderNames.LAST_MODIFIED, "Sun, 06 Nov 1994 08:49:37 GMT");
+
+        when(cachePolicyConfiguration.getTimeToLiveSeconds()).thenReturn(60L);
+        FrameMetadata metadata = cacheInvoker.resolveMetadata(httpHeaders, 200);
+
+        Assert.assertEquals(784111777L, metadata.getLastModified());
+        assertTrue(metadata.hasValidators());
+    }
+
+    @Test
+    public void should_not_store_no_store_or_private_response() {
+        var headers = mock(io.gravitee.gateway.api.http.HttpHeaders.class);
+
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(true);
+        when(headers.getFirst(HttpHeaderNames.CACHE_CONTROL)).thenReturn("no-store", "private, max-age=60", "public, max-age=60", null);
+
+        assertFalse(cacheInvoker.isStorable(headers));
+        assertFalse(cacheInvoker.isStorable(headers));
+        assertTrue(cacheInvoker.isStorable(headers));
+        assertTrue(cacheInvoker.isStorable(headers));
+    }
+
+    @Test
+    public void should_store_no_store_response_when_response_cache_headers_are_not_used() {
+        var headers = mock(io.gravitee.gateway.api.http.HttpHeaders.class);
+
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(false);
+
+        assertTrue(cacheInvoker.isStorable(headers));
+    }
+
+    @Test
+    public void should_store_no_cache_response_as_stale() {
+        final var httpHeaders = new HttpHeaders();
+        httpHeaders.add(HttpHeaderNames.CACHE_CONTROL, "no-cache, stale-while-revalidate=30, stale-if-error=300");
+
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(true);
+        when(cachePolicyConfiguration.getTimeToLiveSeconds()).thenReturn(60L);
+        when(cachePolicyConfiguration.getStaleIfErrorSeconds()).thenReturn(600L);
+        FrameMetadata metadata = cacheInvoker.resolveMetadata(httpHeaders, 200);
+
+        Assert.assertEquals(0, metadata.getSoftTimeToLive());
+        Assert.assertEquals(360, metadata.getHardTimeToLive());
+        Assert.assertEquals(0, metadata.getStaleWhileRevalidate());
+        assertTrue(metadata.isStale(metadata.getStoredAt()));
+    }
+
+    @Test
+    public void should_cap_upstream_stale_if_error_at_the_configured_value() {
+        final var httpHeaders = new HttpHeaders();
+        httpHeaders.add(HttpHeaderNames.CACHE_CONTROL, "max-age=60, stale-if-error=31536000");
+
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(true);
+        when(cachePolicyConfiguration.getStaleIfErrorSeconds()).thenReturn(300L, 0L);
+
+        Assert.assertEquals(300, cacheInvoker.resolveStaleIfError(httpHeaders));
+        Assert.assertEquals(0, cacheInvoker.resolveStaleIfError(httpHeaders));
+    }
+
+    @Test
+    public void should_shorten_stale_if_error_from_upstream() {
+        final var httpHeaders = new HttpHeaders();
+        httpHeaders.add(HttpHeaderNames.CACHE_CONTROL, "max-age=60, stale-if-error=30");
+
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(true);
+        when(cachePolicyConfiguration.getStaleIfErrorSeconds()).thenReturn(300L);
+
+        Assert.assertEquals(30, cacheInvoker.resolveStaleIfError(httpHeaders));
+    }
+
+    @Test
+    public void should_bound_hard_ttl_of_large_stale_if_error_to_the_cache_resource_range() {
+        final var httpHeaders = new HttpHeaders();
+        httpHeaders.add(HttpHeaderNames.CACHE_CONTROL, "max-age=60, stale-if-error=2147483648");
+
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(true);
+        when(cachePolicyConfiguration.getTimeToLiveSeconds()).thenReturn(60L);
+        when(cachePolicyConfiguration.getStaleIfErrorSeconds()).thenReturn(2147483648L);
+        when(cache.putBinaryAsync(any())).thenReturn(Future.succeededFuture());
+        FrameMetadata metadata = cacheInvoker.resolveMetadata(httpHeaders, 200);
+
+        ReflectionTestUtils.invokeMethod(cacheInvoker, "putElement", "key", new byte[0], metadata.getHardTimeToLive());
+
+        ArgumentCaptor<Element> element = ArgumentCaptor.forClass(Element.class);
+        verify(cache).putBinaryAsync(element.capture());
+        Assert.assertEquals(2147483708L, metadata.getHardTimeToLive());
+        Assert.assertEquals(Integer.MAX_VALUE, element.getValue().timeToLive());
+    }
+
     @Test
     public void shouldTrueIfEvaluateWithNoCondition() {
         var response = mock(Response.class);
@@ -214,4 +391,292 @@ public class CacheInvokerTest {
 
         assertNotEquals(hash2, hash3);
     }
+
+    @Test
+    public void shouldHashKeyIgnoringExcludedQueryParameters() {
+        final MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
+
+        ResourceManager resourceManager = mock(ResourceManager.class);
+        when(httpExecutionContext.getComponent(ResourceManager.class)).thenReturn(resourceManager);
+        when(resourceManager.getResource(any(), eq(CacheResource.class))).thenReturn(mock(CacheResource.class));
+        when(cachePolicyConfiguration.getScope()).thenReturn(CacheScope.API);
+        when(cachePolicyConfiguration.getKeyExcludeParams()).thenReturn(List.of("utm_*", "fbclid"));
+        when(httpExecutionContext.request()).thenReturn(request);
+        when(request.path()).thenReturn("/test");
+        when(request.parameters()).thenReturn(queryParams);
+
+        queryParams.add("page", "1");
+
+        String hash1 = cacheInvoker.hash(httpExecutionContext);
+
+        queryParams.add("utm_source", "newsletter");
+        queryParams.add("fbclid", "abc");
+
+        String hash2 = cacheInvoker.hash(httpExecutionContext);
+
+        assertEquals(hash1, hash2);
+
+        queryParams.add("page", "2");
+
+        String hash3 = cacheInvoker.hash(httpExecutionContext);
+
+        assertNotEquals(hash2, hash3);
+    }
+
+    @Test
+    public void should_use_status_ttl() {
+        final var httpHeaders = new HttpHeaders();
+        httpHeaders.add(HttpHeaderNames.CACHE_CONTROL, "max-age=600");
+
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(true);
+        when(cachePolicyConfiguration.getTimeToLiveSeconds()).thenReturn(3600L);
+        when(cachePolicyConfiguration.getCacheableStatuses()).thenReturn(List.of(new CacheableStatus(404, 30)));
+
+        Assert.assertEquals(30, cacheInvoker.resolveTimeToLive(httpHeaders, 404));
+        Assert.assertEquals(600, cacheInvoker.resolveTimeToLive(httpHeaders, 200));
+    }
+
+    @Test
+    public void should_only_cache_configured_statuses() {
+        when(cachePolicyConfiguration.getCacheableStatuses()).thenReturn(
+            List.of(new CacheableStatus(200, 0), new CacheableStatus(404, 30))
+        );
+        Response response = mock(Response.class);
+        var executionContext = mock(ExecutionContext.class);
+
+        when(response.status()).thenReturn(404);
+        Boolean notFound = ReflectionTestUtils.invokeMethod(cacheInvoker, "evaluate", executionContext, response, "");
+        when(response.status()).thenReturn(201);
+        Boolean created = ReflectionTestUtils.invokeMethod(cacheInvoker, "evaluate", executionContext, response, "");
+
+        assertTrue(notFound);
+        assertFalse(created);
+    }
+
+    @Test
+    public void should_not_serve_stale_response_instead_of_a_client_error_or_not_modified() {
+        for (int status : List.of(404, 304)) {
+            Response response = backendResponse(status);
+
+            storeInCacheEvaluation(response, staleResponse()).test().assertComplete();
+
+            verify(response, never()).status(anyInt());
+        }
+    }
+
+    @Test
+    public void should_serve_stale_response_instead_of_a_server_error() {
+        Response response = backendResponse(503);
+
+        storeInCacheEvaluation(response, staleResponse()).test().assertComplete();
+
+        verify(response).status(200);
+    }
+
+    @Test
+    public void should_not_count_error_key_when_the_error_is_too_large_to_cache() {
+        when(cachePolicyConfiguration.getServerErrorTimeToLiveSeconds()).thenReturn(5L);
+        when(cachePolicyConfiguration.getMaxErrorKeys()).thenReturn(10);
+        when(cachePolicyConfiguration.getMaxBodySizeBytes()).thenReturn(100L);
+        Response response = backendResponse(503);
+        when(response.headers().getFirst(HttpHeaderNames.CONTENT_LENGTH)).thenReturn("1000");
+
+        storeInCacheEvaluation(response, null).test().assertComplete();
+
+        assertEquals(0, ErrorKeyBudget.of(cachePolicyConfiguration).size());
+    }
+
+    @Test
+    public void should_report_why_the_response_is_not_put_in_cache() {
+        when(cachePolicyConfiguration.getMaxBodySizeBytes()).thenReturn(100L);
+        Response response = backendResponse(200);
+        when(response.headers().getFirst(HttpHeaderNames.CONTENT_LENGTH)).thenReturn("1000");
+        ExecutionContext executionContext = mock(ExecutionContext.class);
+
+        storeInCacheEvaluation(executionContext, response, null).test().assertComplete();
+
+        verify(executionContext).setAttribute(CacheMetrics.ATTR_NOT_CACHED, CacheMetrics.Reason.BODY_TOO_LARGE.name());
+    }
+
+    @Test
+    public void should_answer_range_from_the_whole_body_not_put_in_cache() {
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(true);
+        ReflectionTestUtils.setField(
+            cacheInvoker,
+            "range",
+            io.gravitee.gateway.api.http.HttpHeaders.create().add(HttpHeaderNames.RANGE, "bytes=0-4")
+        );
+        Response response = mock(Response.class);
+        when(response.status()).thenReturn(200);
+        var headers = io.gravitee.gateway.api.http.HttpHeaders.create().add(HttpHeaderNames.CACHE_CONTROL, "no-store");
+        when(response.headers()).thenReturn(headers);
+        ArgumentCaptor<MaybeTransformer<Buffer, Buffer>> onBody = ArgumentCaptor.forClass(MaybeTransformer.class);
+        when(response.onBody(onBody.capture())).thenReturn(Completable.complete());
+
+        storeInCacheEvaluation(response, null).test().assertComplete();
+        Buffer body = Maybe.just(Buffer.buffer("0123456789")).compose(onBody.getValue()).blockingGet();
+
+        assertEquals("01234", body.toString());
+        verify(response).status(206);
+        assertEquals("bytes 0-4/10", headers.get(HttpHeaderNames.CONTENT_RANGE));
+        assertEquals("5", headers.get(HttpHeaderNames.CONTENT_LENGTH));
+    }
+
+    @Test
+    public void should_not_cache_partial_content() {
+        Response response = mock(Response.class);
+        when(response.status()).thenReturn(206);
+
+        Boolean partialContent = ReflectionTestUtils.invokeMethod(cacheInvoker, "evaluate", mock(ExecutionContext.class), response, "");
+
+        assertFalse(partialContent);
+    }
+
+    @Test
+    public void should_switch_head_request_back_once_the_backend_filled_the_cache() {
+        when(cachePolicyConfiguration.isFillOnHeadMiss()).thenReturn(true);
+        Request headRequest = mock(Request.class);
+        when(headRequest.method()).thenReturn(HttpMethod.HEAD);
+        ExecutionContext executionContext = mock(ExecutionContext.class);
+        when(executionContext.request()).thenReturn(headRequest);
+        when(delegateInvoker.invoke(executionContext)).thenReturn(Completable.complete());
+        Response response = backendResponse(404);
+
+        Completable invocation = ReflectionTestUtils.invokeMethod(
+            cacheInvoker,
+            "invokeBackend",
+            executionContext,
+            "key",
+            response,
+            null,
+            null
+        );
+        invocation.test().assertComplete();
+
+        InOrder inOrder = inOrder(headRequest, delegateInvoker);
+        inOrder.verify(headRequest).method(HttpMethod.GET);
+        inOrder.verify(delegateInvoker).invoke(executionContext);
+        inOrder.verify(headRequest).method(HttpMethod.HEAD);
+    }
+
+    @Test
+    public void should_stream_every_chunk_and_cache_the_body_within_the_max_size() {
+        when(cachePolicyConfiguration.isStreamResponseBody()).thenReturn(true);
+        when(cachePolicyConfiguration.getMaxBodySizeBytes()).thenReturn(10L);
+        when(cache.putBinaryAsync(any())).thenReturn(Future.succeededFuture());
+        ArgumentCaptor<FlowableTransformer<Buffer, Buffer>> onChunks = ArgumentCaptor.forClass(FlowableTransformer.class);
+        Response response = streamedResponse(onChunks);
+
+        storeInCacheEvaluation(response, null).test().assertComplete();
+        Flowable.just(Buffer.buffer("01234"), Buffer.buffer("56789"))
+            .compose(onChunks.getValue())
+            .map(Buffer::toString)
+            .test()
+            .assertValues("01234", "56789");
+
+        ArgumentCaptor<Element> element = ArgumentCaptor.forClass(Element.class);
+        verify(cache).putBinaryAsync(element.capture());
+        assertEquals("0123456789", CacheFrame.decode((byte[]) element.getValue().value()).body().toString());
+    }
+
+    @Test
+    public void should_stream_every_chunk_without_caching_the_body_over_the_max_size() {
+        when(cachePolicyConfiguration.isStreamResponseBody()).thenReturn(true);
+        when(cachePolicyConfiguration.getMaxBodySizeBytes()).thenReturn(8L);
+        ArgumentCaptor<FlowableTransformer<Buffer, Buffer>> onChunks = ArgumentCaptor.forClass(FlowableTransformer.class);
+        Response response = streamedResponse(onChunks);
+
+        storeInCacheEvaluation(response, null).test().assertComplete();
+        Flowable.just(Buffer.buffer("01234"), Buffer.buffer("56789"), Buffer.buffer("abcde"))
+            .compose(onChunks.getValue())
+            .map(Buffer::toString)
+            .test()
+            .assertValues("01234", "56789", "abcde");
+
+        verify(cache, never()).putBinaryAsync(any());
+    }
+
+    @Test
+    public void should_serve_and_store_the_headers_of_the_not_modified_response() {
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(true);
+        when(cachePolicyConfiguration.getTimeToLiveSeconds()).thenReturn(3600L);
+        when(cache.putBinaryAsync(any())).thenReturn(Future.succeededFuture());
+        final var storedHeaders = new HttpHeaders();
+        storedHeaders.add(HttpHeaderNames.CONTENT_TYPE, "text/plain");
+        storedHeaders.add(HttpHeaderNames.CACHE_CONTROL, "max-age=60");
+        storedHeaders.add(HttpHeaderNames.ETAG, "\"1\"");
+        FrameMetadata storedMetadata = new FrameMetadata(0, 60, 60);
+        storedMetadata.setEtag("\"1\"");
+        byte[] frame = CacheFrame.encode(new CachedResponse(200, storedHeaders, Buffer.buffer("stale"), storedMetadata));
+        Request getRequest = mock(Request.class);
+        when(getRequest.method()).thenReturn(HttpMethod.GET);
+        when(getRequest.headers()).thenReturn(io.gravitee.gateway.api.http.HttpHeaders.create());
+        ExecutionContext executionContext = mock(ExecutionContext.class);
+        when(executionContext.request()).thenReturn(getRequest);
+        Response response = mock(Response.class);
+        when(response.status()).thenReturn(304);
+        var headers = io.gravitee.gateway.api.http.HttpHeaders.create()
+            .add(HttpHeaderNames.CACHE_CONTROL, "max-age=600")
+            .add(HttpHeaderNames.ETAG, "\"1\"");
+        when(response.headers()).thenReturn(headers);
+        when(response.onBody(any())).thenReturn(Completable.complete());
+
+        Completable evaluation = ReflectionTestUtils.invokeMethod(
+            cacheInvoker,
+            "storeInCacheEvaluation",
+            executionContext,
+            "key",
+            response,
+            null,
+            null,
+            new StaleEntry(frame, CacheFrame.decode(frame))
+        );
+        evaluation.test().assertComplete();
+
+        verify(response).status(200);
+        assertEquals("max-age=600", headers.get(HttpHeaderNames.CACHE_CONTROL));
+        assertEquals("text/plain", headers.get(HttpHeaderNames.CONTENT_TYPE));
+        ArgumentCaptor<Element> element = ArgumentCaptor.forClass(Element.class);
+        verify(cache).putBinaryAsync(element.capture());
+        CachedResponse stored = CacheFrame.decode((byte[]) element.getValue().value());
+        assertEquals(List.of("max-age=600"), stored.headers().get(HttpHeaderNames.CACHE_CONTROL));
+        assertEquals(600, stored.metadata().getSoftTimeToLive());
+    }
+
+    private static Response backendResponse(int status) {
+        Response response = mock(Response.class);
+        when(response.status()).thenReturn(status);
+        when(response.headers()).thenReturn(mock(io.gravitee.gateway.api.http.HttpHeaders.class));
+        when(response.onBody(any())).thenReturn(Completable.complete());
+        return response;
+    }
+
+    private static Response streamedResponse(ArgumentCaptor<FlowableTransformer<Buffer, Buffer>> onChunks) {
+        Response response = mock(Response.class);
+        when(response.status()).thenReturn(200);
+        when(response.headers()).thenReturn(io.gravitee.gateway.api.http.HttpHeaders.create());
+        when(response.onChunks(onChunks.capture())).thenReturn(Completable.complete());
+        return response;
+    }
+
+    private static CachedResponse staleResponse() {
+        return new CachedResponse(200, new HttpHeaders(), Buffer.buffer("stale"), new FrameMetadata(0, 60, 360));
+    }
+
+    private Completable storeInCacheEvaluation(Response response, CachedResponse fallback) {
+        return storeInCacheEvaluation(mock(ExecutionContext.class), response, fallback);
+    }
+
+    private Completable storeInCacheEvaluation(ExecutionContext executionContext, Response response, CachedResponse fallback) {
+        return ReflectionTestUtils.invokeMethod(
+            cacheInvoker,
+            "storeInCacheEvaluation",
+            executionContext,
+            "key",
+            response,
+            null,
+            fallback,
+            null
+        );
+    }
 }
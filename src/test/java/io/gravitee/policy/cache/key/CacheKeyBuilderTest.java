@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.key;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.gravitee.common.util.LinkedMultiValueMap;
+import io.gravitee.common.util.MultiValueMap;
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+
+class CacheKeyBuilderTest {
+
+    @Test
+    void builds_fixed_length_keys() {
+        assertThat(CacheKeyBuilder.start().build()).hasSize(32);
+        assertThat(CacheKeyBuilder.start().append("/products").build()).hasSize(32).matches("[0-9a-f]{32}");
+        assertThat(CacheKeyBuilder.start().append("x".repeat(100_000)).build()).hasSize(32);
+    }
+
+    @Test
+    void builds_same_key_for_same_components() {
+        String key1 = CacheKeyBuilder.start().append("api").append("/products").append("key").build();
+        String key2 = CacheKeyBuilder.start().append("api").append("/products").append("key").build();
+
+        assertThat(key1).isEqualTo(key2);
+    }
+
+    @Test
+    void does_not_confuse_component_boundaries() {
+        String key1 = CacheKeyBuilder.start().append("ab").append("c").build();
+        String key2 = CacheKeyBuilder.start().append("a").append("bc").build();
+
+        assertThat(key1).isNotEqualTo(key2);
+    }
+
+    @Test
+    void distinguishes_null_from_empty_component() {
+        String key1 = CacheKeyBuilder.start().append("/products").append((String) null).build();
+        String key2 = CacheKeyBuilder.start().append("/products").append("").build();
+
+        assertThat(key1).isNotEqualTo(key2);
+    }
+
+    @Test
+    void distinguishes_paths_with_colliding_string_hash_codes() {
+        // "Aa" and "BB" have the same String#hashCode
+        assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+
+        assertThat(CacheKeyBuilder.start().append("/Aa").build()).isNotEqualTo(CacheKeyBuilder.start().append("/BB").build());
+    }
+
+    @Test
+    void hashes_non_ascii_components() {
+        String key1 = CacheKeyBuilder.start().append("/café/日本/😀").build();
+        String key2 = CacheKeyBuilder.start().append("/cafe/日本/😀").build();
+
+        assertThat(key1).isNotEqualTo(key2);
+    }
+
+    @Test
+    void builds_same_key_for_parameters_in_any_order() {
+        MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+        parameters.add("foo", "a");
+        parameters.add("foo", "b");
+        parameters.add("bar", "c");
+        String key1 = CacheKeyBuilder.start().appendParameters(parameters).build();
+
+        parameters.clear();
+        parameters.add("bar", "c");
+        parameters.add("foo", "b");
+        parameters.add("foo", "a");
+        String key2 = CacheKeyBuilder.start().appendParameters(parameters).build();
+
+        assertThat(key1).isEqualTo(key2);
+    }
+
+    @Test
+    void distinguishes_parameter_names_from_values() {
+        MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+        parameters.add("a", "b");
+        String key1 = CacheKeyBuilder.start().appendParameters(parameters).build();
+
+        parameters.clear();
+        parameters.add("ab", "");
+        String key2 = CacheKeyBuilder.start().appendParameters(parameters).build();
+
+        assertThat(key1).isNotEqualTo(key2);
+    }
+
+    @Test
+    void does_not_reorder_parameter_values() {
+        MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+        parameters.add("foo", "b");
+        parameters.add("foo", "a");
+
+        CacheKeyBuilder.start().appendParameters(parameters).build();
+
+        assertThat(parameters.get("foo")).containsExactly("b", "a");
+    }
+
+    @Test
+    void distinguishes_repeated_parameters() {
+        MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+        parameters.add("foo", "a");
+        String key1 = CacheKeyBuilder.start().appendParameters(parameters).build();
+
+        parameters.add("foo", "a");
+        String key2 = CacheKeyBuilder.start().appendParameters(parameters).build();
+
+        assertThat(key1).isNotEqualTo(key2);
+    }
+
+    @Test
+    void distinguishes_values_swapped_between_parameters() {
+        MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+        parameters.add("a", "1");
+        parameters.add("b", "2");
+        String key1 = CacheKeyBuilder.start().appendParameters(parameters).build();
+
+        parameters.clear();
+        parameters.add("a", "2");
+        parameters.add("b", "1");
+        String key2 = CacheKeyBuilder.start().appendParameters(parameters).build();
+
+        assertThat(key1).isNotEqualTo(key2);
+    }
+
+    @Test
+    void distinguishes_parameter_without_value_from_no_parameter() {
+        MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+        String key1 = CacheKeyBuilder.start().appendParameters(parameters).build();
+
+        parameters.put("foo", new ArrayList<>());
+        String key2 = CacheKeyBuilder.start().appendParameters(parameters).build();
+
+        assertThat(key1).isNotEqualTo(key2);
+    }
+
+    @Test
+    void leaves_filtered_out_parameters_out_of_the_key() {
+        MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+        parameters.add("page", "1");
+        String key1 = CacheKeyBuilder.start().appendParameters(parameters).build();
+
+        parameters.add("utm_source", "newsletter");
+        String key2 = CacheKeyBuilder.start().appendParameters(parameters, name -> !name.startsWith("utm_")).build();
+
+        assertThat(key1).isEqualTo(key2);
+        assertThat(CacheKeyBuilder.start().appendParameters(parameters, name -> false).build()).isEqualTo(
+            CacheKeyBuilder.start().appendParameters(null).build()
+        );
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.key;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CacheKeyRulesTest {
+
+    @Test
+    void includes_every_parameter_without_rules() {
+        CacheKeyRules rules = new CacheKeyRules(null, List.of(), null, false, false, false);
+
+        assertThat(rules.filtersParameters()).isFalse();
+        assertThat(rules.includesParameter("utm_source")).isTrue();
+    }
+
+    @Test
+    void excludes_parameters_by_name_and_prefix() {
+        CacheKeyRules rules = new CacheKeyRules(null, List.of("utm_*", "fbclid"), null, false, false, false);
+
+        assertThat(rules.filtersParameters()).isTrue();
+        assertThat(rules.includesParameter("utm_source")).isFalse();
+        assertThat(rules.includesParameter("utm_")).isFalse();
+        assertThat(rules.includesParameter("fbclid")).isFalse();
+        assertThat(rules.includesParameter("fbclid2")).isTrue();
+        assertThat(rules.includesParameter("page")).isTrue();
+    }
+
+    @Test
+    void only_includes_listed_parameters_minus_excluded_ones() {
+        CacheKeyRules rules = new CacheKeyRules(List.of("page", "filter_*"), List.of("filter_debug"), null, false, false, false);
+
+        assertThat(rules.includesParameter("page")).isTrue();
+        assertThat(rules.includesParameter("filter_color")).isTrue();
+        assertThat(rules.includesParameter("filter_debug")).isFalse();
+        assertThat(rules.includesParameter("sort")).isFalse();
+    }
+
+    @Test
+    void lower_cases_header_names() {
+        CacheKeyRules rules = new CacheKeyRules(null, null, List.of("Accept-Language", " X-Tenant ", ""), false, false, false);
+
+        assertThat(rules.headers()).containsExactly("accept-language", "x-tenant");
+    }
+
+    @Test
+    void keeps_path_without_normalization() {
+        CacheKeyRules rules = new CacheKeyRules(null, null, null, false, false, false);
+        String path = "/Products/%7e/";
+
+        assertThat(rules.normalizePath(path)).isSameAs(path);
+    }
+
+    @Test
+    void ignores_path_case() {
+        CacheKeyRules rules = new CacheKeyRules(null, null, null, true, false, false);
+
+        assertThat(rules.normalizePath("/Products/ABC")).isEqualTo("/products/abc");
+    }
+
+    @Test
+    void ignores_trailing_slashes() {
+        CacheKeyRules rules = new CacheKeyRules(null, null, null, false, true, false);
+
+        assertThat(rules.normalizePath("/products//")).isEqualTo("/products");
+        assertThat(rules.normalizePath("/")).isEqualTo("/");
+    }
+
+    @Test
+    void normalizes_percent_encoding() {
+        CacheKeyRules rules = new CacheKeyRules(null, null, null, false, false, true);
+
+        assertThat(rules.normalizePath("/%7euser/%41")).isEqualTo("/~user/A");
+        assertThat(rules.normalizePath("/a%2fb")).isEqualTo("/a%2Fb");
+        assertThat(rules.normalizePath("/100%")).isEqualTo("/100%");
+        assertThat(rules.normalizePath("/%zz")).isEqualTo("/%zz");
+    }
+
+    @Test
+    void combines_normalizations() {
+        CacheKeyRules rules = new CacheKeyRules(null, null, null, true, true, true);
+
+        assertThat(rules.normalizePath("/Products/%2f%7E/")).isEqualTo(rules.normalizePath("/products/%2F~"));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.key;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.gravitee.el.TemplateEngine;
+import org.junit.jupiter.api.Test;
+
+class KeyTemplateTest {
+
+    @Test
+    void renders_nothing_without_key() {
+        assertThat(KeyTemplate.parse(null).render(() -> null)).isNull();
+        assertThat(KeyTemplate.parse("").render(() -> null)).isNull();
+    }
+
+    @Test
+    void renders_literal_key_without_template_engine() {
+        KeyTemplate template = KeyTemplate.parse("products");
+
+        assertThat(template.isDynamic()).isFalse();
+        assertThat(template.render(() -> {
+            throw new AssertionError("template engine must not be used");
+        })).isEqualTo("products");
+    }
+
+    @Test
+    void only_converts_expression_segments() {
+        TemplateEngine templateEngine = mock(TemplateEngine.class);
+        when(templateEngine.convert(anyString())).thenAnswer(invocation -> "<" + invocation.getArgument(0) + ">");
+        KeyTemplate template = KeyTemplate.parse("{#properties['siteID']}-{#request.params['productId']}");
+
+        assertThat(template.isDynamic()).isTrue();
+        assertThat(template.render(() -> templateEngine)).isEqualTo("<{#properties['siteID']}>-<{#request.params['productId']}>");
+        verify(templateEngine).convert("{#properties['siteID']}");
+        verify(templateEngine).convert("{#request.params['productId']}");
+    }
+
+    @Test
+    void keeps_braces_inside_quotes_and_nested_braces_in_the_expression() {
+        TemplateEngine templateEngine = mock(TemplateEngine.class);
+        when(templateEngine.convert(anyString())).thenAnswer(invocation -> "<" + invocation.getArgument(0) + ">");
+
+        assertThat(KeyTemplate.parse("a{#request.headers['}'] + {1}}b").render(() -> templateEngine)).isEqualTo(
+            "a<{#request.headers['}'] + {1}}>b"
+        );
+    }
+
+    @Test
+    void hands_unbalanced_key_to_template_engine_as_is() {
+        TemplateEngine templateEngine = mock(TemplateEngine.class);
+        when(templateEngine.convert("a{#b")).thenReturn("converted");
+
+        assertThat(KeyTemplate.parse("a{#b").render(() -> templateEngine)).isEqualTo("converted");
+    }
+}
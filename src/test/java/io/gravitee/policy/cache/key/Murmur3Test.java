@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.key;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class Murmur3Test {
+
+    @Test
+    void hashes_empty_input_to_zero() {
+        assertThat(Murmur3.hash128(new byte[0], 0, 0)).containsExactly(0L, 0L);
+    }
+
+    @Test
+    void matches_reference_implementation() {
+        byte[] fox = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+        byte[] hello = "hello".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(Murmur3.hash128(fox, 0, fox.length)).containsExactly(0xe34bbc7bbc071b6cL, 0x7a433ca9c49a9347L);
+        assertThat(Murmur3.hash128(hello, 0, hello.length)).containsExactly(0xcbd8a7b341bd9b02L, 0x5b1e906a48ae1d19L);
+    }
+
+    @Test
+    void hashes_only_the_given_range() {
+        byte[] padded = "__hello__".getBytes(StandardCharsets.UTF_8);
+        byte[] hello = "hello".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(Murmur3.hash128(padded, 2, 5)).containsExactly(Murmur3.hash128(hello, 0, hello.length));
+    }
+}
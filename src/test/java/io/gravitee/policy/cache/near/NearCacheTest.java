@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.near;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class NearCacheTest {
+
+    private static final long NOW = 1_000_000L;
+
+    @Test
+    void returns_stored_frame() {
+        NearCache nearCache = new NearCache(1024 * 1024, 5);
+        byte[] frame = new byte[] { 0x02, 0x00, (byte) 0xC8 };
+
+        nearCache.put("key", frame, NOW, Long.MAX_VALUE);
+
+        assertThat(nearCache.get("key", NOW)).isSameAs(frame);
+    }
+
+    @Test
+    void expires_after_local_time_to_live() {
+        NearCache nearCache = new NearCache(1024 * 1024, 5);
+        nearCache.put("key", new byte[10], NOW, Long.MAX_VALUE);
+
+        assertThat(nearCache.get("key", NOW + 4_999)).isNotNull();
+        assertThat(nearCache.get("key", NOW + 5_000)).isNull();
+    }
+
+    @Test
+    void never_outlives_the_remote_entry() {
+        NearCache nearCache = new NearCache(1024 * 1024, 5);
+        nearCache.put("key", new byte[10], NOW, NOW + 1_000);
+
+        assertThat(nearCache.get("key", NOW + 1_000)).isNull();
+    }
+
+    @Test
+    void does_not_store_already_expired_entry() {
+        NearCache nearCache = new NearCache(1024 * 1024, 5);
+        nearCache.put("key", new byte[10], NOW, NOW);
+
+        assertThat(nearCache.weight()).isZero();
+    }
+
+    @Test
+    void invalidates_entry() {
+        NearCache nearCache = new NearCache(1024 * 1024, 5);
+        nearCache.put("key", new byte[10], NOW, Long.MAX_VALUE);
+
+        nearCache.invalidate("key");
+
+        assertThat(nearCache.get("key", NOW)).isNull();
+        assertThat(nearCache.weight()).isZero();
+    }
+
+    @Test
+    void stays_within_byte_budget() {
+        NearCache nearCache = new NearCache(100_000, 60);
+
+        for (int i = 0; i < 1_000; i++) {
+            nearCache.put("key-" + i, new byte[1_000], NOW, Long.MAX_VALUE);
+        }
+
+        assertThat(nearCache.weight()).isLessThanOrEqualTo(100_000);
+    }
+
+    @Test
+    void keeps_frequently_accessed_entries_over_one_hit_wonders() {
+        NearCache nearCache = new NearCache(100_000, 60);
+        for (int i = 0; i < 50; i++) {
+            nearCache.put("hot-" + i, new byte[1_000], NOW, Long.MAX_VALUE);
+        }
+        for (int round = 0; round < 15; round++) {
+            for (int i = 0; i < 50; i++) {
+                nearCache.get("hot-" + i, NOW);
+            }
+        }
+
+        for (int i = 0; i < 1_000; i++) {
+            nearCache.put("cold-" + i, new byte[1_000], NOW, Long.MAX_VALUE);
+        }
+
+        int hotHits = 0;
+        for (int i = 0; i < 50; i++) {
+            if (nearCache.get("hot-" + i, NOW) != null) {
+                hotHits++;
+            }
+        }
+        assertThat(hotHits).isEqualTo(50);
+    }
+
+    @Test
+    void splits_large_caches_into_segments_within_the_byte_budget() {
+        NearCache nearCache = new NearCache(16 * 1024 * 1024, 60);
+
+        for (int i = 0; i < 10_000; i++) {
+            nearCache.put("key-" + i, new byte[4_096], NOW, Long.MAX_VALUE);
+        }
+
+        assertThat(nearCache.segments()).isEqualTo(16);
+        assertThat(new NearCache(100_000, 60).segments()).isEqualTo(1);
+        assertThat(nearCache.weight()).isLessThanOrEqualTo(16 * 1024 * 1024);
+    }
+
+    @Test
+    void serves_concurrent_hits() throws Exception {
+        NearCache nearCache = new NearCache(16 * 1024 * 1024, 60);
+        for (int i = 0; i < 64; i++) {
+            nearCache.put("key-" + i, new byte[1_000], NOW, Long.MAX_VALUE);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> misses = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                misses.add(
+                    executor.submit(() -> {
+                        int count = 0;
+                        for (int round = 0; round < 1_000; round++) {
+                            for (int i = 0; i < 64; i++) {
+                                if (nearCache.get("key-" + i, NOW) == null) {
+                                    count++;
+                                }
+                            }
+                        }
+                        return count;
+                    })
+                );
+            }
+            for (Future<Integer> miss : misses) {
+                assertThat(miss.get(10, TimeUnit.SECONDS)).isZero();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
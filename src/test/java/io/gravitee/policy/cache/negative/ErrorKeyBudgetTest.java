@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.negative;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class ErrorKeyBudgetTest {
+
+    private static final long NOW = 1_000_000L;
+
+    @Test
+    void refuses_new_keys_once_exhausted() {
+        ErrorKeyBudget budget = new ErrorKeyBudget(2);
+
+        assertThat(budget.tryAcquire("a", NOW, NOW + 1_000)).isTrue();
+        assertThat(budget.tryAcquire("b", NOW, NOW + 1_000)).isTrue();
+        assertThat(budget.tryAcquire("c", NOW, NOW + 1_000)).isFalse();
+        assertThat(budget.size()).isEqualTo(2);
+    }
+
+    @Test
+    void renews_keys_already_counted() {
+        ErrorKeyBudget budget = new ErrorKeyBudget(1);
+        budget.tryAcquire("a", NOW, NOW + 1_000);
+
+        assertThat(budget.tryAcquire("a", NOW, NOW + 2_000)).isTrue();
+    }
+
+    @Test
+    void frees_expired_keys() {
+        ErrorKeyBudget budget = new ErrorKeyBudget(2);
+        budget.tryAcquire("a", NOW, NOW + 1_000);
+        budget.tryAcquire("b", NOW, NOW + 5_000);
+
+        assertThat(budget.tryAcquire("c", NOW + 999, NOW + 2_000)).isFalse();
+        assertThat(budget.tryAcquire("c", NOW + 1_000, NOW + 2_000)).isTrue();
+        assertThat(budget.size()).isEqualTo(2);
+    }
+
+    @Test
+    void frees_released_keys() {
+        ErrorKeyBudget budget = new ErrorKeyBudget(1);
+        budget.tryAcquire("a", NOW, NOW + 1_000);
+
+        budget.release("a");
+
+        assertThat(budget.tryAcquire("b", NOW, NOW + 1_000)).isTrue();
+    }
+}
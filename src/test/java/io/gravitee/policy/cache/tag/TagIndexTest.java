@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.tag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class TagIndexTest {
+
+    @Test
+    void parses_space_and_comma_separated_tags() {
+        assertThat(TagIndex.parseTags(List.of("product-1 catalog", "catalog,  product-2 ,"))).containsExactly(
+            "product-1",
+            "catalog",
+            "product-2"
+        );
+        assertThat(TagIndex.parseTags(List.of(" , "))).isEmpty();
+        assertThat(TagIndex.parseTags(null)).isEmpty();
+    }
+
+    @Test
+    void ignores_tags_beyond_the_limit() {
+        String tags = IntStream.range(0, TagIndex.MAX_TAGS + 5).mapToObj(i -> "tag-" + i).collect(Collectors.joining(" "));
+
+        assertThat(TagIndex.parseTags(List.of(tags))).hasSize(TagIndex.MAX_TAGS).endsWith("tag-" + (TagIndex.MAX_TAGS - 1));
+    }
+
+    @Test
+    void derives_keys_from_the_prefix_and_the_tag() {
+        String key = TagIndex.key("api:", "catalog");
+
+        assertThat(key).startsWith("api:").isEqualTo(TagIndex.key("api:", "catalog"));
+        assertThat(TagIndex.key("api:", "product-1")).isNotEqualTo(key);
+        assertThat(TagIndex.key("other:", "catalog")).isNotEqualTo(key);
+    }
+
+    @Test
+    void encodes_and_decodes_index() {
+        TagIndex index = new TagIndex();
+        index.add("api:0123456789abcdef0123456789abcdef", 2_000L);
+        index.add("api:fedcba9876543210fedcba9876543210", 1_000L);
+        index.add("api:0123456789abcdef0123456789abcdef", 1_500L);
+
+        byte[] encoded = index.encode();
+        TagIndex decoded = TagIndex.decode(encoded);
+
+        assertThat(TagIndex.isIndex(encoded)).isTrue();
+        assertThat(decoded.keys()).containsExactly("api:fedcba9876543210fedcba9876543210", "api:0123456789abcdef0123456789abcdef");
+        assertThat(decoded.expiresAt()).isEqualTo(2_000L);
+    }
+
+    @Test
+    void drops_the_oldest_keys_beyond_the_limit() {
+        TagIndex index = new TagIndex();
+        for (int i = 0; i <= TagIndex.MAX_KEYS; i++) {
+            index.add("key-" + i, i);
+        }
+
+        assertThat(index.keys()).hasSize(TagIndex.MAX_KEYS).doesNotContain("key-0").contains("key-1", "key-" + TagIndex.MAX_KEYS);
+        assertThat(index.expiresAt()).isEqualTo(TagIndex.MAX_KEYS);
+    }
+
+    @Test
+    void rejects_malformed_index() {
+        byte[] encoded = new TagIndex().encode();
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 1);
+        byte[] trailing = Arrays.copyOf(encoded, encoded.length + 1);
+
+        assertThat(TagIndex.isIndex(new byte[] { 0x01 })).isFalse();
+        assertThat(TagIndex.isIndex(null)).isFalse();
+        assertThatThrownBy(() -> TagIndex.decode(truncated)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TagIndex.decode(trailing)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TagIndex.decode(new byte[] { 0x01 })).isInstanceOf(IllegalArgumentException.class);
+    }
+}
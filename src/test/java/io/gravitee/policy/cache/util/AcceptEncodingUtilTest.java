@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class AcceptEncodingUtilTest {
+
+    @Test
+    public void shouldAcceptListedCoding() {
+        assertThat(AcceptEncodingUtil.accepts("gzip, deflate, br", "gzip")).isTrue();
+        assertThat(AcceptEncodingUtil.accepts("deflate,GZIP", "gzip")).isTrue();
+    }
+
+    @Test
+    public void shouldNotAcceptUnlistedCoding() {
+        assertThat(AcceptEncodingUtil.accepts("br, deflate", "gzip")).isFalse();
+        assertThat(AcceptEncodingUtil.accepts("", "gzip")).isFalse();
+        assertThat(AcceptEncodingUtil.accepts(null, "gzip")).isFalse();
+    }
+
+    @Test
+    public void shouldHonorQuality() {
+        assertThat(AcceptEncodingUtil.accepts("gzip;q=0.5, br;q=1.0", "gzip")).isTrue();
+        assertThat(AcceptEncodingUtil.accepts("gzip;q=0, br", "gzip")).isFalse();
+        assertThat(AcceptEncodingUtil.accepts("gzip ; Q=0.0", "gzip")).isFalse();
+        assertThat(AcceptEncodingUtil.accepts("gzip;q=invalid", "gzip")).isFalse();
+    }
+
+    @Test
+    public void shouldAcceptWildcard() {
+        assertThat(AcceptEncodingUtil.accepts("br, *;q=0.1", "gzip")).isTrue();
+        assertThat(AcceptEncodingUtil.accepts("*;q=0", "gzip")).isFalse();
+        assertThat(AcceptEncodingUtil.accepts("gzip;q=0, *", "gzip")).isFalse();
+    }
+}
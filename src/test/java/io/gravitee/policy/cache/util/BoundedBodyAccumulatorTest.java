@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+class BoundedBodyAccumulatorTest {
+
+    @Test
+    void accumulates_chunks_in_order() {
+        BoundedBodyAccumulator accumulator = new BoundedBodyAccumulator(1024);
+
+        accumulator.append(Buffer.buffer("{\"items\":"));
+        accumulator.append(Buffer.buffer("[1,2,3]"));
+        accumulator.append(Buffer.buffer("}"));
+
+        assertThat(accumulator.isOverflowed()).isFalse();
+        assertThat(accumulator.body().toString()).isEqualTo("{\"items\":[1,2,3]}");
+    }
+
+    @Test
+    void accepts_body_of_exactly_max_size() {
+        BoundedBodyAccumulator accumulator = new BoundedBodyAccumulator(10);
+
+        accumulator.append(Buffer.buffer("01234"));
+        accumulator.append(Buffer.buffer("56789"));
+
+        assertThat(accumulator.isOverflowed()).isFalse();
+        assertThat(accumulator.body().length()).isEqualTo(10);
+    }
+
+    @Test
+    void overflows_when_body_exceeds_max_size() {
+        BoundedBodyAccumulator accumulator = new BoundedBodyAccumulator(10);
+
+        accumulator.append(Buffer.buffer("01234"));
+        accumulator.append(Buffer.buffer("567890"));
+        accumulator.append(Buffer.buffer("1"));
+
+        assertThat(accumulator.isOverflowed()).isTrue();
+        assertThat(accumulator.body()).isNull();
+    }
+
+    @Test
+    void returns_empty_body_when_nothing_was_streamed() {
+        BoundedBodyAccumulator accumulator = new BoundedBodyAccumulator(10);
+
+        assertThat(accumulator.body().length()).isZero();
+    }
+
+    @Test
+    void does_not_limit_body_when_max_size_is_zero() {
+        BoundedBodyAccumulator accumulator = new BoundedBodyAccumulator(0);
+
+        accumulator.append(Buffer.buffer(new byte[4096]));
+
+        assertThat(accumulator.isOverflowed()).isFalse();
+        assertThat(accumulator.body().length()).isEqualTo(4096);
+    }
+
+    @Test
+    void detects_content_length_above_max_size() {
+        assertThat(BoundedBodyAccumulator.exceedsMaxSize("1025", 1024)).isTrue();
+        assertThat(BoundedBodyAccumulator.exceedsMaxSize("1024", 1024)).isFalse();
+        assertThat(BoundedBodyAccumulator.exceedsMaxSize(" 2048 ", 1024)).isTrue();
+    }
+
+    @Test
+    void ignores_missing_or_invalid_content_length() {
+        assertThat(BoundedBodyAccumulator.exceedsMaxSize(null, 1024)).isFalse();
+        assertThat(BoundedBodyAccumulator.exceedsMaxSize("invalid", 1024)).isFalse();
+        assertThat(BoundedBodyAccumulator.exceedsMaxSize("1048576", 0)).isFalse();
+    }
+}
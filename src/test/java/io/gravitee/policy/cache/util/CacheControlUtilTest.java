@@ -40,4 +40,81 @@ public class CacheControlUtilTest {
         Assert.assertTrue(cacheControl.isNoTransform());
         Assert.assertTrue(cacheControl.isPublic());
     }
+
+    @Test
+    public void shouldExtractStaleWhileRevalidate() {
+        CacheControl cacheControl = CacheControlUtil.parseCacheControl("max-age=60, stale-while-revalidate=30");
+        Assert.assertEquals(60, cacheControl.getMaxAge());
+        Assert.assertEquals(30, cacheControl.getStaleWhileRevalidate());
+    }
+
+    @Test
+    public void shouldExtractStaleIfError() {
+        CacheControl cacheControl = CacheControlUtil.parseCacheControl("max-age=60, stale-if-error=86400");
+        Assert.assertEquals(86400, cacheControl.getStaleIfError());
+        Assert.assertEquals(-1, cacheControl.getStaleWhileRevalidate());
+    }
+
+    @Test
+    public void shouldExtractStorageDirectives() {
+        CacheControl cacheControl = CacheControlUtil.parseCacheControl("private, must-revalidate, proxy-revalidate, no-store");
+        Assert.assertTrue(cacheControl.isPrivate());
+        Assert.assertTrue(cacheControl.isMustRevalidate());
+        Assert.assertTrue(cacheControl.isProxyRevalidate());
+        Assert.assertTrue(cacheControl.isNoStore());
+        Assert.assertFalse(cacheControl.isNoCache());
+        Assert.assertFalse(cacheControl.isPublic());
+    }
+
+    @Test
+    public void shouldExtractRequestDirectives() {
+        CacheControl cacheControl = CacheControlUtil.parseCacheControl("max-stale, min-fresh=10, only-if-cached");
+        Assert.assertEquals(Long.MAX_VALUE, cacheControl.getMaxStale());
+        Assert.assertEquals(10, cacheControl.getMinFresh());
+        Assert.assertTrue(cacheControl.isOnlyIfCached());
+        Assert.assertEquals(-1, cacheControl.getMaxAge());
+    }
+
+    @Test
+    public void shouldIgnoreCaseOfDirectives() {
+        CacheControl cacheControl = CacheControlUtil.parseCacheControl("Max-Age=60, NO-CACHE, Immutable");
+        Assert.assertEquals(60, cacheControl.getMaxAge());
+        Assert.assertTrue(cacheControl.isNoCache());
+        Assert.assertTrue(cacheControl.isImmutable());
+    }
+
+    @Test
+    public void shouldExtractQuotedValues() {
+        CacheControl cacheControl = CacheControlUtil.parseCacheControl("private=\"Set-Cookie, X-Token\", max-age=\"120\", public");
+        Assert.assertTrue(cacheControl.isPrivate());
+        Assert.assertEquals(120, cacheControl.getMaxAge());
+        Assert.assertTrue(cacheControl.isPublic());
+    }
+
+    @Test
+    public void shouldSkipMalformedDirectives() {
+        CacheControl cacheControl = CacheControlUtil.parseCacheControl("max-age=abc, ;;, s-maxage 30, =5, no-cache=\"unterminated, x");
+        Assert.assertEquals(-1, cacheControl.getMaxAge());
+        Assert.assertEquals(-1, cacheControl.getSMaxAge());
+        Assert.assertTrue(cacheControl.isNoCache());
+    }
+
+    @Test
+    public void shouldIgnoreUnknownDirectives() {
+        CacheControl cacheControl = CacheControlUtil.parseCacheControl("community=\"UCI\", max-age=5, ext");
+        Assert.assertEquals(5, cacheControl.getMaxAge());
+    }
+
+    @Test
+    public void shouldCapHugeDeltaSeconds() {
+        CacheControl cacheControl = CacheControlUtil.parseCacheControl("max-age=99999999999999999999999");
+        Assert.assertEquals(2147483648L, cacheControl.getMaxAge());
+    }
+
+    @Test
+    public void shouldParseEmptyHeader() {
+        CacheControl cacheControl = CacheControlUtil.parseCacheControl(" , ");
+        Assert.assertEquals(-1, cacheControl.getMaxAge());
+        Assert.assertFalse(cacheControl.isNoStore());
+    }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.gravitee.common.http.HttpMethod;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.gateway.api.http.HttpHeaders;
+import io.gravitee.policy.cache.CachedResponse;
+import io.gravitee.policy.cache.frame.FrameMetadata;
+import org.junit.jupiter.api.Test;
+
+class ConditionalRequestUtilTest {
+
+    @Test
+    void adds_validators_of_the_entry() {
+        FrameMetadata metadata = new FrameMetadata(1L, 60, 90);
+        metadata.setEtag("\"33a64df5\"");
+        metadata.setLastModified(784_111_777L);
+        HttpHeaders headers = HttpHeaders.create();
+
+        assertThat(ConditionalRequestUtil.addValidators(HttpMethod.GET, headers, metadata)).isTrue();
+        assertThat(headers.get(HttpHeaderNames.IF_NONE_MATCH)).isEqualTo("\"33a64df5\"");
+        assertThat(headers.get(HttpHeaderNames.IF_MODIFIED_SINCE)).isEqualTo("Sun, 06 Nov 1994 08:49:37 GMT");
+    }
+
+    @Test
+    void does_not_add_validators_to_a_request_with_preconditions() {
+        FrameMetadata metadata = new FrameMetadata(1L, 60, 90);
+        metadata.setEtag("\"33a64df5\"");
+        HttpHeaders headers = HttpHeaders.create().add(HttpHeaderNames.IF_NONE_MATCH, "\"client\"");
+
+        assertThat(ConditionalRequestUtil.addValidators(HttpMethod.GET, headers, metadata)).isFalse();
+        assertThat(headers.getAll(HttpHeaderNames.IF_NONE_MATCH)).containsExactly("\"client\"");
+    }
+
+    @Test
+    void does_not_add_validators_without_validators_or_for_unsafe_method() {
+        FrameMetadata metadata = new FrameMetadata(1L, 60, 90);
+        HttpHeaders headers = HttpHeaders.create();
+
+        assertThat(ConditionalRequestUtil.addValidators(HttpMethod.GET, headers, metadata)).isFalse();
+        metadata.setEtag("\"33a64df5\"");
+        assertThat(ConditionalRequestUtil.addValidators(HttpMethod.POST, headers, metadata)).isFalse();
+        assertThat(ConditionalRequestUtil.addValidators(HttpMethod.GET, headers, null)).isFalse();
+        assertThat(headers.contains(HttpHeaderNames.IF_NONE_MATCH)).isFalse();
+    }
+
+    @Test
+    void parses_last_modified() {
+        assertThat(ConditionalRequestUtil.lastModified("Sun, 06 Nov 1994 08:49:37 GMT")).isEqualTo(784_111_777L);
+        assertThat(ConditionalRequestUtil.lastModified("yesterday")).isEqualTo(-1);
+        assertThat(ConditionalRequestUtil.lastModified(null)).isEqualTo(-1);
+    }
+
+    @Test
+    void matches_entity_tags_with_weak_comparison() {
+        assertThat(ConditionalRequestUtil.matches("\"33a64df5\"", "\"33a64df5\"")).isTrue();
+        assertThat(ConditionalRequestUtil.matches("W/\"33a64df5\"", "\"33a64df5\"")).isTrue();
+        assertThat(ConditionalRequestUtil.matches("\"33a64df5\"", "W/\"33a64df5\"")).isTrue();
+        assertThat(ConditionalRequestUtil.matches("\"other\", \"33a64df5\"", "\"33a64df5\"")).isTrue();
+        assertThat(ConditionalRequestUtil.matches("\"a,b\"", "\"a,b\"")).isTrue();
+        assertThat(ConditionalRequestUtil.matches("*", null)).isTrue();
+        assertThat(ConditionalRequestUtil.matches("\"33a64df5\"", "\"33a64df\"")).isFalse();
+        assertThat(ConditionalRequestUtil.matches("33a64df5, \"other\"", "\"33a64df5\"")).isFalse();
+        assertThat(ConditionalRequestUtil.matches("\"33a64df5\"", null)).isFalse();
+    }
+
+    @Test
+    void is_not_modified_when_client_holds_the_cached_response() {
+        FrameMetadata metadata = new FrameMetadata(1L, 60, 90);
+        metadata.setEtag("\"33a64df5\"");
+        metadata.setLastModified(784_111_777L);
+        CachedResponse cached = new CachedResponse(200, new io.gravitee.common.http.HttpHeaders(), Buffer.buffer("payload"), metadata);
+
+        HttpHeaders matchingEtag = HttpHeaders.create().add(HttpHeaderNames.IF_NONE_MATCH, "\"33a64df5\"");
+        HttpHeaders otherEtag = HttpHeaders.create()
+            .add(HttpHeaderNames.IF_NONE_MATCH, "\"other\"")
+            .add(HttpHeaderNames.IF_MODIFIED_SINCE, "Sun, 06 Nov 1994 08:49:37 GMT");
+        HttpHeaders sameDate = HttpHeaders.create().add(HttpHeaderNames.IF_MODIFIED_SINCE, "Sun, 06 Nov 1994 08:49:37 GMT");
+        HttpHeaders earlierDate = HttpHeaders.create().add(HttpHeaderNames.IF_MODIFIED_SINCE, "Sat, 05 Nov 1994 08:49:37 GMT");
+
+        assertThat(ConditionalRequestUtil.isNotModified(HttpMethod.GET, matchingEtag, cached)).isTrue();
+        assertThat(ConditionalRequestUtil.isNotModified(HttpMethod.GET, otherEtag, cached)).isFalse();
+        assertThat(ConditionalRequestUtil.isNotModified(HttpMethod.GET, sameDate, cached)).isTrue();
+        assertThat(ConditionalRequestUtil.isNotModified(HttpMethod.GET, earlierDate, cached)).isFalse();
+        assertThat(ConditionalRequestUtil.isNotModified(HttpMethod.POST, matchingEtag, cached)).isFalse();
+        assertThat(ConditionalRequestUtil.isNotModified(HttpMethod.GET, HttpHeaders.create(), cached)).isFalse();
+    }
+
+    @Test
+    void answers_not_modified_without_body_nor_representation_headers() {
+        io.gravitee.common.http.HttpHeaders headers = new io.gravitee.common.http.HttpHeaders();
+        headers.add("ETag", "\"33a64df5\"");
+        headers.add("Cache-Control", "max-age=60");
+        headers.add("Content-Type", "application/json");
+        headers.add("Content-Length", "7");
+        CachedResponse cached = new CachedResponse(200, headers, Buffer.buffer("payload"), new FrameMetadata(1L, 60, 90));
+
+        CachedResponse notModified = ConditionalRequestUtil.notModified(cached);
+
+        assertThat(notModified.status()).isEqualTo(304);
+        assertThat(notModified.body()).isNull();
+        assertThat(notModified.headers().keySet()).containsExactlyInAnyOrder("ETag", "Cache-Control");
+    }
+
+    @Test
+    void updates_stored_headers_with_those_of_not_modified_response() {
+        io.gravitee.common.http.HttpHeaders stored = new io.gravitee.common.http.HttpHeaders();
+        stored.add("ETag", "\"33a64df5\"");
+        stored.add("Cache-Control", "max-age=60");
+        stored.add("Content-Type", "application/json");
+        stored.add("Content-Length", "7");
+        HttpHeaders notModified = HttpHeaders.create()
+            .add(HttpHeaderNames.CACHE_CONTROL, "max-age=600")
+            .add("Date", "Sun, 06 Nov 1994 08:49:37 GMT")
+            .add(HttpHeaderNames.CONTENT_LENGTH, "0");
+
+        io.gravitee.common.http.HttpHeaders updated = ConditionalRequestUtil.updateHeaders(stored, notModified);
+
+        assertThat(updated.get("Cache-Control")).containsExactly("max-age=600");
+        assertThat(updated.get("Date")).containsExactly("Sun, 06 Nov 1994 08:49:37 GMT");
+        assertThat(updated.get("ETag")).containsExactly("\"33a64df5\"");
+        assertThat(updated.get("Content-Type")).containsExactly("application/json");
+        assertThat(updated.get("Content-Length")).containsExactly("7");
+    }
+
+    @Test
+    void generates_weak_entity_tag_from_the_body() {
+        io.gravitee.common.http.HttpHeaders headers = new io.gravitee.common.http.HttpHeaders();
+        FrameMetadata metadata = new FrameMetadata(1L, 60, 90);
+
+        ConditionalRequestUtil.ensureEntityTag(200, headers, metadata, Buffer.buffer("payload"));
+
+        assertThat(metadata.getEtag()).isNull();
+        assertThat(metadata.getGeneratedEtag()).matches("W/\"[0-9a-f]{32}\"");
+        assertThat(metadata.entityTag()).isEqualTo(metadata.getGeneratedEtag());
+        assertThat(headers.getFirst("ETag")).isEqualTo(metadata.getGeneratedEtag());
+        assertThat(ConditionalRequestUtil.entityTag(Buffer.buffer("payload"))).isEqualTo(metadata.getGeneratedEtag());
+        assertThat(ConditionalRequestUtil.entityTag(Buffer.buffer("payloaD"))).isNotEqualTo(metadata.getGeneratedEtag());
+    }
+
+    @Test
+    void keeps_upstream_entity_tag() {
+        io.gravitee.common.http.HttpHeaders headers = new io.gravitee.common.http.HttpHeaders();
+        FrameMetadata metadata = new FrameMetadata(1L, 60, 90);
+        metadata.setEtag("\"33a64df5\"");
+
+        ConditionalRequestUtil.ensureEntityTag(200, headers, metadata, Buffer.buffer("payload"));
+        ConditionalRequestUtil.ensureEntityTag(404, headers, new FrameMetadata(1L, 60, 90), Buffer.buffer("payload"));
+
+        assertThat(metadata.getGeneratedEtag()).isNull();
+        assertThat(headers.containsKey("ETag")).isFalse();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import org.junit.Test;
+
+public class HttpDateUtilTest {
+
+    private static final Instant EXPECTED = Instant.parse("1994-11-06T08:49:37Z");
+
+    @Test
+    public void shouldParseImfFixdate() {
+        assertThat(HttpDateUtil.parse("Sun, 06 Nov 1994 08:49:37 GMT")).isEqualTo(EXPECTED);
+    }
+
+    @Test
+    public void shouldParseRfc850Date() {
+        assertThat(HttpDateUtil.parse("Sunday, 06-Nov-94 08:49:37 GMT")).isEqualTo(EXPECTED);
+    }
+
+    @Test
+    public void shouldParseAsctimeDate() {
+        assertThat(HttpDateUtil.parse("Sun Nov  6 08:49:37 1994")).isEqualTo(EXPECTED);
+        assertThat(HttpDateUtil.parse("Sun Nov 16 08:49:37 1994")).isEqualTo(Instant.parse("1994-11-16T08:49:37Z"));
+    }
+
+    @Test
+    public void shouldParseLeapDay() {
+        assertThat(HttpDateUtil.parse("Thu, 29 Feb 2024 23:59:59 GMT")).isEqualTo(Instant.parse("2024-02-29T23:59:59Z"));
+        assertThat(HttpDateUtil.parse("Thu, 01 Jan 1970 00:00:00 GMT")).isEqualTo(Instant.EPOCH);
+    }
+
+    @Test
+    public void shouldNotParseInvalidDates() {
+        assertThat(HttpDateUtil.parse(null)).isNull();
+        assertThat(HttpDateUtil.parse("")).isNull();
+        assertThat(HttpDateUtil.parse("0")).isNull();
+        assertThat(HttpDateUtil.parse("Sun, 06 Nvo 1994 08:49:37 GMT")).isNull();
+        assertThat(HttpDateUtil.parse("Fri, 29 Feb 2019 08:49:37 GMT")).isNull();
+        assertThat(HttpDateUtil.parse("Sun, 06 Nov 1994 24:49:37 GMT")).isNull();
+        assertThat(HttpDateUtil.parse("Sun, 06 Nov 1994 08:49:37 CET")).isNull();
+        assertThat(HttpDateUtil.parse("Sun, 06 Nov 1994 08-49-37 GMT")).isNull();
+        assertThat(HttpDateUtil.parse("Sunday, 06-Nov-9x 08:49:37 GMT")).isNull();
+    }
+
+    @Test
+    public void shouldReuseLastParsedDate() {
+        Instant first = HttpDateUtil.parse("Mon, 07 Nov 1994 08:49:37 GMT");
+        Instant second = HttpDateUtil.parse("Mon, 07 Nov 1994 08:49:37 GMT");
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void shouldFormatImfFixdate() {
+        assertThat(HttpDateUtil.format(EXPECTED.getEpochSecond())).isEqualTo("Sun, 06 Nov 1994 08:49:37 GMT");
+        assertThat(HttpDateUtil.parse(HttpDateUtil.format(1700000000L))).isEqualTo(Instant.ofEpochSecond(1700000000L));
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.gravitee.common.http.HttpMethod;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.http.HttpHeaderNames;
+import io.gravitee.gateway.api.http.HttpHeaders;
+import io.gravitee.policy.cache.CachedResponse;
+import io.gravitee.policy.cache.frame.BodyEncoding;
+import io.gravitee.policy.cache.frame.CacheFrame;
+import io.gravitee.policy.cache.frame.FrameMetadata;
+import org.junit.jupiter.api.Test;
+
+class RangeUtilTest {
+
+    private static final String BODY = "0123456789abcdefghij";
+
+    @Test
+    void parses_range_sets() {
+        assertThat(RangeUtil.parse("bytes=0-4", 20)).containsExactly(0, 4);
+        assertThat(RangeUtil.parse("BYTES=5-", 20)).containsExactly(5, 19);
+        assertThat(RangeUtil.parse("bytes=-5", 20)).containsExactly(15, 19);
+        assertThat(RangeUtil.parse("bytes=-50", 20)).containsExactly(0, 19);
+        assertThat(RangeUtil.parse("bytes=10-100", 20)).containsExactly(10, 19);
+        assertThat(RangeUtil.parse("bytes=0-1, 4-5,", 20)).containsExactly(0, 1, 4, 5);
+        assertThat(RangeUtil.parse("bytes=20-, -0", 20)).isEmpty();
+    }
+
+    @Test
+    void rejects_invalid_range_sets() {
+        assertThat(RangeUtil.parse(null, 20)).isNull();
+        assertThat(RangeUtil.parse("items=0-4", 20)).isNull();
+        assertThat(RangeUtil.parse("bytes=", 20)).isNull();
+        assertThat(RangeUtil.parse("bytes=4-0", 20)).isNull();
+        assertThat(RangeUtil.parse("bytes=a-4", 20)).isNull();
+        assertThat(RangeUtil.parse("bytes=4", 20)).isNull();
+        assertThat(RangeUtil.parse("bytes=0-0" + ",0-0".repeat(RangeUtil.MAX_RANGES), 20)).isNull();
+    }
+
+    @Test
+    void serves_a_single_range() {
+        CachedResponse partial = RangeUtil.partial(HttpMethod.GET, range("bytes=2-5"), cached());
+
+        assertThat(partial.status()).isEqualTo(206);
+        assertThat(partial.headers().getFirst(HttpHeaderNames.CONTENT_RANGE)).isEqualTo("bytes 2-5/20");
+        assertThat(partial.headers().getFirst(HttpHeaderNames.CONTENT_LENGTH)).isEqualTo("4");
+        assertThat(partial.headers().getFirst(HttpHeaderNames.CONTENT_TYPE)).isEqualTo("text/plain");
+        assertThat(partial.body().toString()).isEqualTo("2345");
+    }
+
+    @Test
+    void serves_multiple_ranges_as_multipart() {
+        CachedResponse partial = RangeUtil.partial(HttpMethod.GET, range("bytes=0-1,-2"), cached());
+
+        String contentType = partial.headers().getFirst(HttpHeaderNames.CONTENT_TYPE);
+        assertThat(contentType).startsWith("multipart/byteranges; boundary=");
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        assertThat(partial.status()).isEqualTo(206);
+        assertThat(partial.body().toString()).isEqualTo(
+            "\r\n--" +
+            boundary +
+            "\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-1/20\r\n\r\n01" +
+            "\r\n--" +
+            boundary +
+            "\r\nContent-Type: text/plain\r\nContent-Range: bytes 18-19/20\r\n\r\nij" +
+            "\r\n--" +
+            boundary +
+            "--\r\n"
+        );
+        assertThat(partial.headers().getFirst(HttpHeaderNames.CONTENT_LENGTH)).isEqualTo(Integer.toString(partial.body().length()));
+    }
+
+    @Test
+    void answers_unsatisfiable_ranges_with_416() {
+        CachedResponse partial = RangeUtil.partial(HttpMethod.GET, range("bytes=20-30"), cached());
+
+        assertThat(partial.status()).isEqualTo(416);
+        assertThat(partial.headers().getFirst(HttpHeaderNames.CONTENT_RANGE)).isEqualTo("bytes */20");
+        assertThat(partial.body()).isNull();
+    }
+
+    @Test
+    void does_not_serve_ranges_of_the_uncompressed_body_to_a_client_holding_the_compressed_one() {
+        io.gravitee.common.http.HttpHeaders headers = headers();
+        FrameMetadata metadata = new FrameMetadata(1L, 60, 90);
+        Buffer body = Buffer.buffer(BODY.repeat(10));
+        ConditionalRequestUtil.ensureEntityTag(200, headers, metadata, body);
+        byte[] generated = CacheFrame.encode(new CachedResponse(200, headers, body, metadata), BodyEncoding.GZIP, 6, 0);
+        io.gravitee.common.http.HttpHeaders upstreamHeaders = headers();
+        upstreamHeaders.add(HttpHeaderNames.ETAG, "\"33a64df5\"");
+        FrameMetadata upstreamMetadata = new FrameMetadata(1L, 60, 90);
+        upstreamMetadata.setEtag("\"33a64df5\"");
+        byte[] upstream = CacheFrame.encode(new CachedResponse(200, upstreamHeaders, body, upstreamMetadata), BodyEncoding.GZIP, 6, 0);
+
+        for (byte[] frame : new byte[][] { generated, upstream }) {
+            // The tag the client got along with the compressed body
+            String etag = CacheFrame.decodeFor(frame, "gzip").headers().get(HttpHeaderNames.ETAG).get(0);
+            // Range requests are served from the uncompressed body
+            CachedResponse identity = CacheFrame.decodeFor(frame, null);
+
+            assertThat(etag).startsWith("W/");
+            assertThat(RangeUtil.partial(HttpMethod.GET, range("bytes=0-4").add(HttpHeaderNames.IF_RANGE, etag), identity)).isNull();
+        }
+        // Clients holding the uncompressed body still resume it
+        CachedResponse identity = CacheFrame.decodeFor(upstream, null);
+        assertThat(
+            RangeUtil.partial(HttpMethod.GET, range("bytes=0-4").add(HttpHeaderNames.IF_RANGE, "\"33a64df5\""), identity)
+        ).isNotNull();
+    }
+
+    @Test
+    void serves_the_whole_response_when_ranges_do_not_apply() {
+        assertThat(RangeUtil.partial(HttpMethod.GET, HttpHeaders.create(), cached())).isNull();
+        assertThat(RangeUtil.partial(HttpMethod.POST, range("bytes=0-4"), cached())).isNull();
+        assertThat(RangeUtil.partial(HttpMethod.GET, range("bytes=4-0"), cached())).isNull();
+        CachedResponse notFound = new CachedResponse(404, headers(), Buffer.buffer(BODY), new FrameMetadata(1L, 60, 90));
+        assertThat(RangeUtil.partial(HttpMethod.GET, range("bytes=0-4"), notFound)).isNull();
+    }
+
+    @Test
+    void serves_ranges_only_if_the_if_range_validator_matches() {
+        CachedResponse cached = cached();
+        cached.metadata().setEtag("\"33a64df5\"");
+        cached.metadata().setLastModified(784_111_777L);
+
+        assertThat(RangeUtil.partial(HttpMethod.GET, range("bytes=0-4").add(HttpHeaderNames.IF_RANGE, "\"33a64df5\""), cached)).isNotNull();
+        assertThat(RangeUtil.partial(HttpMethod.GET, range("bytes=0-4").add(HttpHeaderNames.IF_RANGE, "W/\"33a64df5\""), cached)).isNull();
+        assertThat(RangeUtil.partial(HttpMethod.GET, range("bytes=0-4").add(HttpHeaderNames.IF_RANGE, "\"other\""), cached)).isNull();
+        assertThat(
+            RangeUtil.partial(HttpMethod.GET, range("bytes=0-4").add(HttpHeaderNames.IF_RANGE, "Sun, 06 Nov 1994 08:49:37 GMT"), cached)
+        ).isNotNull();
+        assertThat(
+            RangeUtil.partial(HttpMethod.GET, range("bytes=0-4").add(HttpHeaderNames.IF_RANGE, "Sun, 06 Nov 1994 08:49:38 GMT"), cached)
+        ).isNull();
+    }
+
+    @Test
+    void removes_range_headers() {
+        HttpHeaders headers = range("bytes=0-4").add(HttpHeaderNames.IF_RANGE, "\"33a64df5\"");
+
+        HttpHeaders removed = RangeUtil.removeRange(HttpMethod.GET, headers);
+
+        assertThat(headers.contains(HttpHeaderNames.RANGE)).isFalse();
+        assertThat(headers.contains(HttpHeaderNames.IF_RANGE)).isFalse();
+        assertThat(removed.get(HttpHeaderNames.RANGE)).isEqualTo("bytes=0-4");
+        assertThat(removed.get(HttpHeaderNames.IF_RANGE)).isEqualTo("\"33a64df5\"");
+    }
+
+    @Test
+    void removes_nothing_from_request_without_range() {
+        assertThat(RangeUtil.removeRange(HttpMethod.GET, HttpHeaders.create())).isNull();
+        assertThat(RangeUtil.removeRange(HttpMethod.HEAD, range("bytes=0-4"))).isNull();
+    }
+
+    private static HttpHeaders range(String range) {
+        return HttpHeaders.create().add(HttpHeaderNames.RANGE, range);
+    }
+
+    private static io.gravitee.common.http.HttpHeaders headers() {
+        io.gravitee.common.http.HttpHeaders headers = new io.gravitee.common.http.HttpHeaders();
+        headers.add(HttpHeaderNames.CONTENT_TYPE, "text/plain");
+        headers.add(HttpHeaderNames.CONTENT_LENGTH, "20");
+        return headers;
+    }
+
+    private static CachedResponse cached() {
+        return new CachedResponse(200, headers(), Buffer.buffer(BODY), new FrameMetadata(1L, 60, 90));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.vary;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.gravitee.gateway.api.http.HttpHeaders;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class VariantIndexTest {
+
+    @Test
+    void parses_vary_headers() {
+        assertThat(VariantIndex.varyHeaders(List.of("Accept-Language, Accept", "accept,  X-Tenant"))).containsExactly(
+            "accept",
+            "accept-language",
+            "x-tenant"
+        );
+        assertThat(VariantIndex.varyHeaders(List.of(" , "))).isEmpty();
+        assertThat(VariantIndex.varyHeaders(null)).isEmpty();
+        assertThat(VariantIndex.varyHeaders(List.of("*"))).containsExactly(VariantIndex.ANY);
+    }
+
+    @Test
+    void identifies_variants_by_the_values_of_the_vary_headers() {
+        VariantIndex index = new VariantIndex(List.of("accept", "accept-language"));
+
+        String french = index.variant(HttpHeaders.create().add("Accept", "text/html").add("Accept-Language", "fr"));
+        String english = index.variant(HttpHeaders.create().add("Accept", "text/html").add("Accept-Language", "en"));
+        String frenchAgain = index.variant(HttpHeaders.create().add("Accept-Language", "fr").add("Accept", "text/html").add("X-Id", "1"));
+        String none = index.variant(HttpHeaders.create().add("Accept", "text/html"));
+        String empty = index.variant(HttpHeaders.create().add("Accept", "text/html").add("Accept-Language", ""));
+
+        assertThat(french).isEqualTo(frenchAgain).isNotEqualTo(english);
+        assertThat(none).isNotEqualTo(empty);
+        assertThat(VariantIndex.key("api:base", ":", french)).isEqualTo("api:base:" + french);
+    }
+
+    @Test
+    void encodes_and_decodes_index() {
+        VariantIndex index = new VariantIndex(List.of("accept", "accept-language"));
+        index.add("0123456789abcdef0123456789abcdef", 2_000);
+        index.add("fedcba9876543210fedcba9876543210", 5_000);
+        index.add("0123456789abcdef0123456789abcdef", 3_000);
+
+        byte[] value = index.encode();
+        VariantIndex decoded = VariantIndex.decode(value);
+
+        assertThat(VariantIndex.isIndex(value)).isTrue();
+        assertThat(decoded.headers()).containsExactly("accept", "accept-language");
+        assertThat(decoded.size()).isEqualTo(2);
+        assertThat(decoded.contains("fedcba9876543210fedcba9876543210")).isTrue();
+        assertThat(decoded.expiresAt()).isEqualTo(5_000);
+    }
+
+    @Test
+    void expires_with_its_last_variant() {
+        VariantIndex index = new VariantIndex(List.of("accept"));
+        index.add("0123456789abcdef0123456789abcdef", 61_000);
+        index.add("fedcba9876543210fedcba9876543210", 11_000);
+
+        assertThat(index.timeToLive(1_000)).isEqualTo(60);
+        assertThat(index.timeToLive(60_500)).isEqualTo(1);
+        assertThat(index.timeToLive(70_000)).isEqualTo(1);
+    }
+
+    @Test
+    void rejects_frames_and_malformed_index() {
+        byte[] value = new VariantIndex(List.of("accept")).encode();
+
+        assertThat(VariantIndex.isIndex(new byte[] { 0x02, 0x00 })).isFalse();
+        assertThat(VariantIndex.isIndex(null)).isFalse();
+        assertThatThrownBy(() -> VariantIndex.decode(Arrays.copyOf(value, value.length - 1))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> VariantIndex.decode(Arrays.copyOf(value, value.length + 1))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> VariantIndex.decode(new byte[] { 0x02 })).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -30,6 +30,11 @@ import io.gravitee.policy.cache.CachePolicyV4EmulationEngineIntegrationTest;
         "/io/gravitee/policy/cache/integration/cacheV3.json",
         "/io/gravitee/policy/cache/integration/cacheV3NoResponseCondition.json",
         "/io/gravitee/policy/cache/integration/cacheV3RefreshDisabled.json",
+        "/io/gravitee/policy/cache/integration/cacheV3Coalescing.json",
+        "/io/gravitee/policy/cache/integration/cacheV3StaleWhileRevalidate.json",
+        "/io/gravitee/policy/cache/integration/cacheV3Vary.json",
+        "/io/gravitee/policy/cache/integration/cacheV3Purge.json",
+        "/io/gravitee/policy/cache/integration/cacheV3PurgeDisabled.json",
     }
 )
 class CachePolicyV3IntegrationTest extends CachePolicyV4EmulationEngineIntegrationTest {}
@@ -24,6 +24,7 @@ import io.gravitee.common.util.MultiValueMap;
 import io.gravitee.el.TemplateContext;
 import io.gravitee.el.TemplateEngine;
 import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.gateway.api.Invoker;
 import io.gravitee.gateway.api.Request;
 import io.gravitee.gateway.api.Response;
 import io.gravitee.gateway.api.http.HttpHeaderNames;
@@ -32,11 +33,19 @@ import io.gravitee.gateway.api.proxy.ProxyResponse;
 import io.gravitee.policy.api.PolicyChain;
 import io.gravitee.policy.cache.CacheAction;
 import io.gravitee.policy.cache.configuration.CachePolicyConfiguration;
+import io.gravitee.policy.cache.configuration.CacheableStatus;
 import io.gravitee.policy.cache.configuration.CacheScope;
 import io.gravitee.resource.api.ResourceManager;
 import io.gravitee.resource.cache.api.Cache;
 import io.gravitee.resource.cache.api.CacheResource;
+import io.vertx.core.Future;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -89,6 +98,22 @@ public class CachePolicyV3Test {
         Assert.assertEquals(300, timeToLive);
     }
 
+    @Test
+    public void should_not_store_no_store_response() {
+        when(proxyResponse.headers()).thenReturn(HttpHeaders.create().add(HttpHeaderNames.CACHE_CONTROL, "no-store"));
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(true);
+
+        Assert.assertFalse(new CachePolicyV3(cachePolicyConfiguration).isStorable(proxyResponse));
+    }
+
+    @Test
+    public void should_not_store_response_varying_on_anything() {
+        when(proxyResponse.headers()).thenReturn(HttpHeaders.create().add(HttpHeaderNames.VARY, "Accept, *"));
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(true);
+
+        Assert.assertFalse(new CachePolicyV3(cachePolicyConfiguration).isStorable(proxyResponse));
+    }
+
     @Test
     public void should_usecachecontrol_maxage() {
         final HttpHeaders headers = HttpHeaders.create()
@@ -101,6 +126,47 @@ public class CachePolicyV3Test {
         Assert.assertEquals(600, timeToLive);
     }
 
+    @Test
+    public void should_use_status_ttl() {
+        when(proxyResponse.headers()).thenReturn(HttpHeaders.create().add(HttpHeaderNames.CACHE_CONTROL, "max-age=600"));
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(true);
+        when(cachePolicyConfiguration.getTimeToLiveSeconds()).thenReturn(60L);
+        when(cachePolicyConfiguration.getCacheableStatuses()).thenReturn(
+            List.of(new CacheableStatus(200, 3600), new CacheableStatus(404, 30))
+        );
+        CachePolicyV3 cachePolicyV3 = new CachePolicyV3(cachePolicyConfiguration);
+
+        assertEquals(30, cachePolicyV3.resolveTimeToLive(proxyResponse, 404));
+        assertEquals(600, cachePolicyV3.resolveTimeToLive(proxyResponse, 200));
+        assertEquals(600, cachePolicyV3.resolveMetadata(proxyResponse, 200).getSoftTimeToLive());
+    }
+
+    @Test
+    public void should_cap_upstream_stale_if_error_at_the_configured_value() {
+        when(proxyResponse.headers()).thenReturn(
+            HttpHeaders.create().add(HttpHeaderNames.CACHE_CONTROL, "max-age=60, stale-if-error=31536000")
+        );
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(true);
+        when(cachePolicyConfiguration.getStaleIfErrorSeconds()).thenReturn(300L, 0L);
+        CachePolicyV3 cachePolicyV3 = new CachePolicyV3(cachePolicyConfiguration);
+
+        assertEquals(300, cachePolicyV3.resolveStaleIfError(proxyResponse));
+        assertEquals(0, cachePolicyV3.resolveStaleIfError(proxyResponse));
+    }
+
+    @Test
+    public void should_cap_upstream_stale_while_revalidate_at_the_configured_value() {
+        when(proxyResponse.headers()).thenReturn(
+            HttpHeaders.create().add(HttpHeaderNames.CACHE_CONTROL, "max-age=60, stale-while-revalidate=31536000")
+        );
+        when(cachePolicyConfiguration.isUseResponseCacheHeaders()).thenReturn(true);
+        when(cachePolicyConfiguration.getStaleWhileRevalidateSeconds()).thenReturn(30L, 0L);
+        CachePolicyV3 cachePolicyV3 = new CachePolicyV3(cachePolicyConfiguration);
+
+        assertEquals(30, cachePolicyV3.resolveStaleWhileRevalidate(proxyResponse));
+        assertEquals(0, cachePolicyV3.resolveStaleWhileRevalidate(proxyResponse));
+    }
+
     @Test
     public void should_usecachecontrol_expires_past() {
         final HttpHeaders headers = HttpHeaders.create()
@@ -293,13 +359,13 @@ public class CachePolicyV3Test {
 
     @Test
     public void shouldHashKeyUsingQueryParametersInAnyOrder() {
-        final CachePolicyV3 cachePolicyV3 = new CachePolicyV3(cachePolicyConfiguration);
         final MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
 
         ResourceManager resourceManager = mock(ResourceManager.class);
         when(executionContext.getComponent(ResourceManager.class)).thenReturn(resourceManager);
         when(resourceManager.getResource(any(), eq(CacheResource.class))).thenReturn(mock(CacheResource.class));
         when(cachePolicyConfiguration.getScope()).thenReturn(CacheScope.API);
+        final CachePolicyV3 cachePolicyV3 = new CachePolicyV3(cachePolicyConfiguration);
         when(executionContext.request()).thenReturn(request);
         when(request.path()).thenReturn("/test");
         when(request.parameters()).thenReturn(queryParams);
@@ -327,4 +393,65 @@ public class CachePolicyV3Test {
 
         assertNotEquals(hash2, hash3);
     }
+
+    @Test
+    public void should_release_coalesced_requests_when_leader_backend_call_fails() throws Exception {
+        when(cachePolicyConfiguration.isCoalesceRequests()).thenReturn(true);
+        when(cachePolicyConfiguration.getCoalesceTimeoutMillis()).thenReturn(10_000L);
+        when(cachePolicyConfiguration.getScope()).thenReturn(CacheScope.API);
+        ResourceManager resourceManager = mock(ResourceManager.class);
+        when(executionContext.getComponent(ResourceManager.class)).thenReturn(resourceManager);
+        when(resourceManager.getResource(any(), eq(CacheResource.class))).thenReturn(mock(CacheResource.class));
+        when(executionContext.request()).thenReturn(request);
+        when(request.method()).thenReturn(HttpMethod.GET);
+        when(request.path()).thenReturn("/coalesced-failure");
+        when(request.parameters()).thenReturn(new LinkedMultiValueMap<>());
+        when(request.headers()).thenReturn(HttpHeaders.create());
+        Cache cache = mock(Cache.class);
+        when(cache.getName()).thenReturn("coalescing");
+        when(cache.getBinaryAsync(any())).thenReturn(Future.succeededFuture());
+
+        CountDownLatch leaderInFlight = new CountDownLatch(1);
+        CountDownLatch followersJoined = new CountDownLatch(1);
+        CountDownLatch followersInvoked = new CountDownLatch(4);
+        AtomicBoolean leader = new AtomicBoolean(true);
+        Invoker backend = mock(Invoker.class);
+        doAnswer(invocation -> {
+            if (leader.getAndSet(false)) {
+                leaderInFlight.countDown();
+                followersJoined.await(1, TimeUnit.SECONDS);
+                throw new IllegalStateException("Connection refused");
+            }
+            followersInvoked.countDown();
+            return null;
+        })
+            .when(backend)
+            .invoke(any(), any(), any());
+
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            executor.submit(() -> invoker(cache, backend).invoke(executionContext, null, connection -> {}));
+            assertTrue(leaderInFlight.await(1, TimeUnit.SECONDS));
+            CountDownLatch joined = new CountDownLatch(4);
+            for (int i = 0; i < 4; i++) {
+                executor.submit(() -> {
+                    invoker(cache, backend).invoke(executionContext, null, connection -> {});
+                    joined.countDown();
+                });
+            }
+            assertTrue(joined.await(1, TimeUnit.SECONDS));
+            followersJoined.countDown();
+
+            // Far below the coalescing timeout: the followers did not wait for the flight to expire
+            assertTrue(followersInvoked.await(2, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private CachePolicyV3.CacheInvoker invoker(Cache cache, Invoker backend) {
+        CachePolicyV3 cachePolicyV3 = new CachePolicyV3(cachePolicyConfiguration);
+        cachePolicyV3.cache = cache;
+        return cachePolicyV3.new CacheInvoker(backend);
+    }
 }